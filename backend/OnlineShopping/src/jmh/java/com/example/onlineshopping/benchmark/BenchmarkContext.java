@@ -0,0 +1,87 @@
+package com.example.onlineshopping.benchmark;
+
+import com.example.onlineshopping.OnlineShoppingApplication;
+import com.example.onlineshopping.entity.Category;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.repository.CategoryRepository;
+import com.example.onlineshopping.repository.ProductRepository;
+import com.example.onlineshopping.repository.UserRepository;
+import com.example.onlineshopping.service.CategoryTree;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的应用上下文：H2 内存库 + 按规模生成的数据，随机种子固定，每次运行数据相同
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(OnlineShoppingApplication.class)
+                .profiles("h2")
+                .properties(
+                        "server.port=0",
+                        "spring.h2.console.enabled=false",
+                        "seed.enabled=false",
+                        "logging.level.root=WARN",
+                        "logging.level.com.example=WARN")
+                .run();
+    }
+
+    /**
+     * 生成分类树：每个分类的父分类是编号在它之前的某个分类，约四分之一是根分类
+     */
+    static List<Category> seedCategories(ConfigurableApplicationContext context, int count) {
+        CategoryRepository repository = context.getBean(CategoryRepository.class);
+        Random random = new Random(42);
+        List<Category> categories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Category category = new Category();
+            category.setName("分类-" + i);
+            category.setDescription("基准测试分类 " + i);
+            category.setStatus(true);
+            category.setCreateTime(LocalDateTime.now());
+            if (i > 0 && random.nextInt(4) != 0) {
+                category.setParent(categories.get(random.nextInt(i)));
+            }
+            categories.add(repository.save(category));
+        }
+        context.getBean(CategoryTree.class).rebuild();
+        return categories;
+    }
+
+    static List<Product> seedProducts(ConfigurableApplicationContext context, int count, List<Category> categories) {
+        Random random = new Random(7);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setName("商品 " + i);
+            product.setDescription("基准测试商品 " + i);
+            product.setPrice(BigDecimal.valueOf(1 + random.nextInt(100_000), 2));
+            // 库存足够大，下单基准测试不会卖完
+            product.setStock(1_000_000_000);
+            product.setStatus(true);
+            product.setCategory(categories.isEmpty() ? null : categories.get(random.nextInt(categories.size())));
+            products.add(product);
+        }
+        return context.getBean(ProductRepository.class).saveAll(products);
+    }
+
+    static User seedUser(ConfigurableApplicationContext context, String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("benchmark");
+        user.setEmail(username + "@example.com");
+        user.setRole(User.UserRole.ROLE_USER);
+        return context.getBean(UserRepository.class).save(user);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.onlineshopping.benchmark;
+
+import com.example.onlineshopping.dto.CartItemDto;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.service.CartService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查看购物车（H2）：购物车存储和商品目录缓存都已预热时的稳态开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartServiceBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int cartSize;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private Long userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        cartService = context.getBean(CartService.class);
+        List<Product> products = BenchmarkContext.seedProducts(context, Math.max(cartSize, 100),
+                BenchmarkContext.seedCategories(context, 20));
+        userId = BenchmarkContext.seedUser(context, "cart-benchmark").getId();
+        for (int i = 0; i < cartSize; i++) {
+            cartService.addToCart(userId, products.get(i).getId(), 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<CartItemDto> getCartItems() {
+        return cartService.getCartItems(userId);
+    }
+}
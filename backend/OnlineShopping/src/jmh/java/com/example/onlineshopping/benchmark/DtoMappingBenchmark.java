@@ -0,0 +1,105 @@
+package com.example.onlineshopping.benchmark;
+
+import com.example.onlineshopping.dto.OrderDto;
+import com.example.onlineshopping.dto.ProductDto;
+import com.example.onlineshopping.entity.Category;
+import com.example.onlineshopping.entity.Order;
+import com.example.onlineshopping.entity.OrderItem;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体到 DTO 的转换：商品列表和订单详情接口的主要开销之一
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoMappingBenchmark {
+
+    /**
+     * 商品列表长度，也是订单的订单项数
+     */
+    @Param({"1", "20", "200"})
+    public int size;
+
+    private List<Product> products;
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("电子产品");
+
+        products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Product product = new Product();
+            product.setId((long) i + 1);
+            product.setName("商品 " + i);
+            product.setDescription("描述 " + i);
+            product.setPrice(BigDecimal.valueOf(1999, 2));
+            product.setStock(100);
+            product.setImageUrl("/uploads/products/" + i + ".jpg");
+            product.setCategory(category);
+            products.add(product);
+        }
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("user");
+
+        order = new Order();
+        order.setId(1L);
+        order.setOrderNumber("ORD-BENCHMARK");
+        order.setUser(user);
+        order.setStatus(Order.OrderStatus.PAID);
+        order.setCreateTime(LocalDateTime.now());
+        BigDecimal total = BigDecimal.ZERO;
+        for (Product product : products) {
+            OrderItem item = new OrderItem();
+            item.setId(product.getId());
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(2);
+            item.setPrice(product.getPrice());
+            item.setSubtotal(product.getPrice().multiply(BigDecimal.valueOf(2)));
+            order.getOrderItems().add(item);
+            total = total.add(item.getSubtotal());
+        }
+        order.setTotalAmount(total);
+    }
+
+    @Benchmark
+    public List<ProductDto> productDtoFromEntity() {
+        List<ProductDto> result = new ArrayList<>(products.size());
+        for (Product product : products) {
+            result.add(ProductDto.fromEntity(product));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public OrderDto orderDtoFromEntity() {
+        return OrderDto.fromEntity(order);
+    }
+}
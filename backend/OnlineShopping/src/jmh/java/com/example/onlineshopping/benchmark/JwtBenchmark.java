@@ -0,0 +1,73 @@
+package com.example.onlineshopping.benchmark;
+
+import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.security.AuthenticatedUser;
+import com.example.onlineshopping.security.JwtUtil;
+import com.example.onlineshopping.security.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 校验：每个需要登录的请求都要经过，对比完整校验与已验证令牌缓存命中两条路径
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private JwtUtil jwtUtil;
+    private VerifiedTokenCache verifiedTokenCache;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "benchmarkSecretKeyThatIsLongEnoughForHmacSha256Signing");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3_600_000L);
+        jwtUtil.init();
+        verifiedTokenCache = new VerifiedTokenCache(jwtUtil, new SimpleMeterRegistry(), 10_000);
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("user");
+        user.setRole(User.UserRole.ROLE_USER);
+        token = jwtUtil.generateToken(user);
+        userDetails = new AuthenticatedUser(1L, "user", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        verifiedTokenCache.verify(token);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, userDetails);
+    }
+
+    @Benchmark
+    public Claims parseToken() {
+        return jwtUtil.parseToken(token);
+    }
+
+    @Benchmark
+    public Claims verifyCached() {
+        return verifiedTokenCache.verify(token);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.onlineshopping.benchmark;
+
+import com.example.onlineshopping.entity.Order;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.service.CartService;
+import com.example.onlineshopping.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单（H2）：读取购物车、批量加载商品、写入订单和订单项、扣减库存
+ *
+ * 每次调用前重新装满购物车（Level.Invocation），单次下单是毫秒级，这部分准备开销可以忽略
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderServiceBenchmark {
+
+    @Param({"1000"})
+    public int productCount;
+
+    /**
+     * 每个订单的商品种类数
+     */
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private CartService cartService;
+    private List<Product> products;
+    private Long userId;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        orderService = context.getBean(OrderService.class);
+        cartService = context.getBean(CartService.class);
+        products = BenchmarkContext.seedProducts(context, productCount,
+                BenchmarkContext.seedCategories(context, 20));
+        userId = BenchmarkContext.seedUser(context, "order-benchmark").getId();
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCart() {
+        for (int i = 0; i < lines; i++) {
+            cartService.addToCart(userId, products.get(next++ % products.size()).getId(), 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        return orderService.createOrder(userId, "基准测试地址", "ALIPAY");
+    }
+}
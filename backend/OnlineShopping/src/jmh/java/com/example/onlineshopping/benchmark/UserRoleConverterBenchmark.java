@@ -0,0 +1,43 @@
+package com.example.onlineshopping.benchmark;
+
+import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.entity.converter.UserRoleConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 角色转换：加载每个用户行时都会执行，覆盖标准值、旧格式和非法值
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRoleConverterBenchmark {
+
+    @Param({"ROLE_ADMIN", " user ", "unknown"})
+    public String dbData;
+
+    private final UserRoleConverter converter = new UserRoleConverter();
+
+    @Benchmark
+    public User.UserRole toEntityAttribute() {
+        return converter.convertToEntityAttribute(dbData);
+    }
+
+    @Benchmark
+    public String toDatabaseColumn() {
+        return converter.convertToDatabaseColumn(User.UserRole.ROLE_ADMIN);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.onlineshopping.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个接口的请求统计：次数、错误数和全部延迟样本（微秒）
+ *
+ * 每个虚拟用户各自记录，结束后合并，记录时没有线程间竞争
+ */
+final class EndpointStats {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long latencyMicros, boolean error) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyMicros;
+        if (error) {
+            errors++;
+        }
+    }
+
+    void merge(EndpointStats other) {
+        if (count + other.count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+        }
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        errors += other.errors;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * 汇总为报告中的一行，延迟单位为毫秒
+     */
+    Map<String, Object> summarize(double seconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("requests", count);
+        row.put("errors", errors);
+        row.put("errorRate", count == 0 ? 0 : (double) errors / count);
+        row.put("throughput", seconds <= 0 ? 0 : count / seconds);
+        row.put("p50", percentile(sorted, 0.50));
+        row.put("p90", percentile(sorted, 0.90));
+        row.put("p95", percentile(sorted, 0.95));
+        row.put("p99", percentile(sorted, 0.99));
+        row.put("max", sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+        return row;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+}
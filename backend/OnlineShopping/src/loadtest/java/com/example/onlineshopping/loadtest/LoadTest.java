@@ -0,0 +1,175 @@
+package com.example.onlineshopping.loadtest;
+
+import com.example.onlineshopping.OnlineShoppingApplication;
+import com.example.onlineshopping.config.SyntheticDataSeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 端到端压测
+ *
+ * 默认在本进程内以 h2 profile 启动应用（带合成数据），也可以用 --target 压测已经启动的实例。
+ * 每个虚拟用户以一个合成用户登录，按场景权重混合执行浏览、搜索、加购、下单、支付和后台统计，
+ * 结束后按接口输出吞吐量、延迟百分位和错误率。
+ *
+ * 参数（均可省略）：
+ * <pre>
+ *   --users=50                 并发虚拟用户数（不超过合成用户数 seed.users）
+ *   --duration=60s             计入结果的压测时长
+ *   --warmup=15s               预热时长，期间的请求不计入结果
+ *   --mix=browse:50,search:20,cart:15,checkout:8,pay:5,admin:2
+ *   --target=http://host:8080  压测外部实例，不启动应用
+ *   --password=password123     合成用户的密码
+ *   --admin=admin:admin123     管理员账号，admin 场景使用
+ *   --report=target/loadtest.json  结果另存为 JSON
+ *   --spring.profiles.active=h2,virtual  其余以 --spring. 或 --seed. 开头的参数传给应用
+ * </pre>
+ */
+public class LoadTest {
+
+    private static final String DEFAULT_MIX = "browse:50,search:20,cart:15,checkout:8,pay:5,admin:2";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--spring.") || arg.startsWith("--seed.")) {
+                appArgs.add(arg);
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+        }
+
+        int users = Integer.parseInt(options.getOrDefault("users", "50"));
+        Duration duration = parseDuration(options.getOrDefault("duration", "60s"));
+        Duration warmup = parseDuration(options.getOrDefault("warmup", "15s"));
+        VirtualUser.Mix mix = new VirtualUser.Mix(options.getOrDefault("mix", DEFAULT_MIX));
+        String password = options.getOrDefault("password", "password123");
+        String[] admin = options.getOrDefault("admin", "admin:admin123").split(":", 2);
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.get("target");
+        if (baseUrl == null) {
+            context = new SpringApplicationBuilder(OnlineShoppingApplication.class)
+                    .profiles("h2")
+                    .properties(
+                            "server.port=0",
+                            "seed.users=" + Math.max(users, 200),
+                            "logging.level.com.example=WARN")
+                    .run(appArgs.toArray(new String[0]));
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            baseUrl = "http://localhost:" + port;
+        }
+
+        try {
+            run(baseUrl, users, duration, warmup, mix, password, admin, options.get("report"));
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(String baseUrl, int users, Duration duration, Duration warmup, VirtualUser.Mix mix,
+                            String password, String[] admin, String reportPath) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        String adminToken = VirtualUser.login(client, baseUrl, admin[0], admin.length > 1 ? admin[1] : "");
+        if (adminToken == null) {
+            System.out.println("管理员登录失败，admin 场景改为浏览");
+        }
+
+        System.out.printf("压测 %s：%d 个虚拟用户，预热 %ds，持续 %ds，场景 %s%n",
+                baseUrl, users, warmup.toSeconds(), duration.toSeconds(), mix);
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long deadline = measureFrom + duration.toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        List<VirtualUser> virtualUsers = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            VirtualUser user = new VirtualUser(client, baseUrl, SyntheticDataSeeder.USERNAME_PREFIX + i, password,
+                    adminToken, mix, measureFrom, deadline, i);
+            virtualUsers.add(user);
+            futures.add(executor.submit(user));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // 合并各虚拟用户的统计
+        Map<String, EndpointStats> merged = new TreeMap<>();
+        for (VirtualUser user : virtualUsers) {
+            user.stats().forEach((endpoint, stats) ->
+                    merged.computeIfAbsent(endpoint, key -> new EndpointStats()).merge(stats));
+        }
+        EndpointStats total = new EndpointStats();
+        merged.values().forEach(total::merge);
+
+        double seconds = duration.toMillis() / 1000.0;
+        Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+        merged.forEach((endpoint, stats) -> rows.put(endpoint, stats.summarize(seconds)));
+        rows.put("TOTAL", total.summarize(seconds));
+        print(rows);
+
+        if (reportPath != null) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("time", LocalDateTime.now().toString());
+            report.put("target", baseUrl);
+            report.put("users", users);
+            report.put("durationSeconds", seconds);
+            report.put("mix", mix.toString());
+            report.put("endpoints", rows);
+            File file = new File(reportPath);
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+            System.out.println("结果已保存到 " + file.getAbsolutePath());
+        }
+    }
+
+    private static void print(Map<String, Map<String, Object>> rows) {
+        System.out.printf("%n%-40s %9s %7s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50(ms)", "p90(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+        rows.forEach((endpoint, row) -> System.out.printf("%-40s %9d %7d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint, row.get("requests"), row.get("errors"), row.get("throughput"),
+                row.get("p50"), row.get("p90"), row.get("p95"), row.get("p99"), row.get("max")));
+    }
+
+    /**
+     * 支持 30s、5m 这样的写法，也支持 ISO-8601（PT30S）
+     */
+    private static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.parse(value);
+    }
+}
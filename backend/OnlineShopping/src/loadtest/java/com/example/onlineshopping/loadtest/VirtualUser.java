@@ -0,0 +1,264 @@
+package com.example.onlineshopping.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 一个虚拟用户：登录后在截止时间前循环执行按权重随机选出的场景
+ *
+ * 场景：browse 浏览、search 搜索、cart 加购、checkout 下单、pay 支付、admin 管理后台统计。
+ * 接口按路径模板统计（如 GET /api/products/{id}），不会因为ID不同拆成很多行。
+ */
+final class VirtualUser implements Runnable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] KEYWORDS = {"手机", "电脑", "耳机", "phone", "laptop", "watch", "商品 1", "键盘"};
+    private static final String[] SORTS = {"createTime", "price", "sales"};
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String username;
+    private final String password;
+    private final String adminToken;
+    private final Mix mix;
+    private final long measureFrom;
+    private final long deadline;
+    private final Random random;
+
+    private final Map<String, EndpointStats> stats = new HashMap<>();
+    private final List<Long> productIds = new ArrayList<>();
+    private final Deque<Long> unpaidOrders = new ArrayDeque<>();
+    private String token;
+    private int cartLines;
+
+    VirtualUser(HttpClient client, String baseUrl, String username, String password, String adminToken,
+                Mix mix, long measureFrom, long deadline, long seed) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.username = username;
+        this.password = password;
+        this.adminToken = adminToken;
+        this.mix = mix;
+        this.measureFrom = measureFrom;
+        this.deadline = deadline;
+        this.random = new Random(seed);
+    }
+
+    Map<String, EndpointStats> stats() {
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        token = login();
+        if (token == null) {
+            return;
+        }
+        while (System.nanoTime() < deadline) {
+            switch (mix.pick(random)) {
+                case "browse" -> browse();
+                case "search" -> search();
+                case "cart" -> addToCart();
+                case "checkout" -> checkout();
+                case "pay" -> pay();
+                case "admin" -> admin();
+                default -> throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * 单独登录一个账号（如管理员）并返回令牌，不计入统计；失败时返回 null
+     */
+    static String login(HttpClient client, String baseUrl, String username, String password) {
+        return new VirtualUser(client, baseUrl, username, password, null, null, Long.MAX_VALUE, 0, 0).login();
+    }
+
+    private String login() {
+        try {
+            String body = MAPPER.writeValueAsString(Map.of("username", username, "password", password));
+            JsonNode response = call("POST /api/auth/login", "POST", "/api/auth/login", body, null);
+            return response != null && response.hasNonNull("token") ? response.get("token").asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void browse() {
+        String sort = SORTS[random.nextInt(SORTS.length)];
+        JsonNode page = call("GET /api/products/page", "GET",
+                "/api/products/page?size=20&sort=" + sort + "&direction=" + (random.nextBoolean() ? "asc" : "desc"),
+                null, null);
+        if (page != null && page.has("items")) {
+            productIds.clear();
+            page.get("items").forEach(item -> productIds.add(item.get("id").asLong()));
+        }
+        if (!productIds.isEmpty()) {
+            call("GET /api/products/{id}", "GET", "/api/products/" + randomProduct(), null, null);
+        }
+        call("GET /api/categories", "GET", "/api/categories", null, null);
+    }
+
+    private void search() {
+        String keyword = KEYWORDS[random.nextInt(KEYWORDS.length)];
+        call("GET /api/products/suggest", "GET", "/api/products/suggest?prefix=" + encode(keyword.substring(0, 1)), null, null);
+        call("GET /api/products/search", "GET", "/api/products/search?keyword=" + encode(keyword), null, null);
+    }
+
+    private void addToCart() {
+        if (productIds.isEmpty()) {
+            browse();
+            return;
+        }
+        JsonNode added = call("POST /api/cart/items", "POST",
+                "/api/cart/items?productId=" + randomProduct() + "&quantity=1", null, token);
+        if (added != null) {
+            cartLines++;
+        }
+        call("GET /api/cart/items", "GET", "/api/cart/items", null, token);
+    }
+
+    private void checkout() {
+        if (cartLines == 0) {
+            addToCart();
+            return;
+        }
+        JsonNode order = call("POST /api/orders", "POST",
+                "/api/orders?shippingAddress=" + encode("压测地址") + "&paymentMethod=ALIPAY", null, token);
+        if (order != null && order.hasNonNull("id")) {
+            cartLines = 0;
+            unpaidOrders.add(order.get("id").asLong());
+        }
+    }
+
+    private void pay() {
+        Long orderId = unpaidOrders.poll();
+        if (orderId == null) {
+            checkout();
+            return;
+        }
+        call("POST /api/orders/{id}/pay", "POST", "/api/orders/" + orderId + "/pay", null, token);
+    }
+
+    private void admin() {
+        if (adminToken == null) {
+            browse();
+            return;
+        }
+        call("GET /api/statistics/sales-trend", "GET", "/api/statistics/sales-trend", null, adminToken);
+        call("GET /api/statistics/order-status", "GET", "/api/statistics/order-status", null, adminToken);
+        call("GET /api/admin/dashboard/top-products", "GET", "/api/admin/dashboard/top-products", null, adminToken);
+    }
+
+    private long randomProduct() {
+        return productIds.get(random.nextInt(productIds.size()));
+    }
+
+    /**
+     * 发送请求并记录延迟，返回解析后的 JSON；出错或响应不是 JSON 时返回 null
+     */
+    private JsonNode call(String endpoint, String method, String path, String body, String bearer) {
+        long start = System.nanoTime();
+        boolean error = true;
+        JsonNode json = null;
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .method(method, body == null
+                            ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+            if (body != null) {
+                request.header("Content-Type", "application/json");
+            }
+            if (bearer != null) {
+                request.header("Authorization", "Bearer " + bearer);
+            }
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            error = response.statusCode() >= 400;
+            if (!error && response.body() != null && !response.body().isEmpty()) {
+                try {
+                    json = MAPPER.readTree(response.body());
+                } catch (Exception e) {
+                    // 非 JSON 响应体，只记录延迟
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 连接失败、超时等都计为错误
+        } finally {
+            long end = System.nanoTime();
+            // 预热期间的请求不计入结果
+            if (start >= measureFrom) {
+                stats.computeIfAbsent(endpoint, key -> new EndpointStats()).record((end - start) / 1000, error);
+            }
+        }
+        return error ? null : json;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 场景权重，如 browse:50,search:20,cart:15,checkout:8,pay:5,admin:2
+     */
+    static final class Mix {
+        private static final Set<String> SCENARIOS = Set.of("browse", "search", "cart", "checkout", "pay", "admin");
+
+        private final String spec;
+        private final String[] names;
+        private final int[] cumulative;
+
+        Mix(String spec) {
+            this.spec = spec;
+            String[] parts = spec.split(",");
+            names = new String[parts.length];
+            cumulative = new int[parts.length];
+            int total = 0;
+            for (int i = 0; i < parts.length; i++) {
+                String[] pair = parts[i].trim().split(":");
+                names[i] = pair[0].trim();
+                if (!SCENARIOS.contains(names[i])) {
+                    throw new IllegalArgumentException("未知场景: " + names[i] + "，可选: " + SCENARIOS);
+                }
+                total += Integer.parseInt(pair[1].trim());
+                cumulative[i] = total;
+            }
+            if (total <= 0) {
+                throw new IllegalArgumentException("场景权重之和必须大于0: " + spec);
+            }
+        }
+
+        String pick(Random random) {
+            int value = random.nextInt(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (value < cumulative[i]) {
+                    return names[i];
+                }
+            }
+            return names[names.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+}
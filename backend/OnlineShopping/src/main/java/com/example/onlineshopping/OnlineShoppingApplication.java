@@ -2,8 +2,10 @@ package com.example.onlineshopping;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class OnlineShoppingApplication {
     public static void main(String[] args) {
         SpringApplication.run(OnlineShoppingApplication.class, args);
@@ -16,54 +16,48 @@ public class DataInitializer implements CommandLineRunner {
 
     @Override
     public void run(String... args) {
-        // 初始化或更新管理员用户
-        User admin = userRepository.findByUsername("admin").orElse(null);
-        if (admin == null) {
-            admin = new User();
-            admin.setUsername("admin");
-            admin.setEmail("admin@example.com");
-            admin.setPhone("13800138000");
-            System.out.println("创建管理员用户: admin/admin123");
-        } else {
-            System.out.println("更新管理员密码为加密格式");
-        }
-        // 强制更新角色和密码
-        admin.setRole(User.UserRole.ROLE_ADMIN);
-        admin.setPassword(passwordEncoder.encode("admin123"));
-        userRepository.save(admin);
+        // 只创建缺少的内置用户；已存在的用户只修正角色，密码仅在仍是明文时加密，
+        // 不在每次启动时重新计算 BCrypt（也不会覆盖用户自己修改过的密码）
+        initUser("admin", "admin123", "admin@example.com", "13800138000", User.UserRole.ROLE_ADMIN);
+        initUser("user1", "user123", "user1@example.com", "13800138001", User.UserRole.ROLE_USER);
+        initUser("user", "user123", "user@example.com", "13800138002", User.UserRole.ROLE_USER);
 
-        // 初始化或更新普通用户 user1
-        User user1 = userRepository.findByUsername("user1").orElse(null);
-        if (user1 == null) {
-            user1 = new User();
-            user1.setUsername("user1");
-            user1.setEmail("user1@example.com");
-            user1.setPhone("13800138001");
-            System.out.println("创建普通用户: user1/user123");
-        } else {
-            System.out.println("更新user1密码为加密格式");
-        }
-        // 强制更新角色和密码
-        user1.setRole(User.UserRole.ROLE_USER);
-        user1.setPassword(passwordEncoder.encode("user123"));
-        userRepository.save(user1);
-        
-        // 初始化或更新普通用户 user
-        User user = userRepository.findByUsername("user").orElse(null);
+        System.out.println("数据初始化完成");
+    }
+
+    private void initUser(String username, String rawPassword, String email, String phone, User.UserRole role) {
+        User user = userRepository.findByUsername(username).orElse(null);
         if (user == null) {
             user = new User();
-            user.setUsername("user");
-            user.setEmail("user@example.com");
-            user.setPhone("13800138002");
-            System.out.println("创建普通用户: user/user123");
-        } else {
-            System.out.println("更新user密码为加密格式");
+            user.setUsername(username);
+            user.setEmail(email);
+            user.setPhone(phone);
+            user.setRole(role);
+            user.setPassword(passwordEncoder.encode(rawPassword));
+            userRepository.save(user);
+            System.out.println("创建用户: " + username + "/" + rawPassword);
+            return;
         }
-        // 强制更新角色和密码
-        user.setRole(User.UserRole.ROLE_USER);
-        user.setPassword(passwordEncoder.encode("user123"));
-        userRepository.save(user);
 
-        System.out.println("数据初始化完成 - 所有密码已更新为BCrypt加密格式");
+        boolean changed = false;
+        if (user.getRole() != role) {
+            user.setRole(role);
+            changed = true;
+        }
+        if (user.getPassword() == null || !isEncoded(user.getPassword())) {
+            user.setPassword(passwordEncoder.encode(user.getPassword() != null ? user.getPassword() : rawPassword));
+            System.out.println("用户 " + username + " 的密码已更新为加密格式");
+            changed = true;
+        }
+        if (changed) {
+            userRepository.save(user);
+        }
+    }
+
+    /**
+     * 带 {id} 前缀的哈希，或历史数据中没有前缀的 BCrypt 哈希
+     */
+    private static boolean isEncoded(String password) {
+        return password.startsWith("{") || password.matches("^\\$2[aby]?\\$\\d\\d\\$.{53}$");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.example.onlineshopping.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 虚拟线程模式下的并发请求上限
+ *
+ * 平台线程模式靠 Tomcat 线程数限制并发；换成虚拟线程后每个请求一个线程，不再有这个上限，
+ * 数据库变慢时请求会无限堆积在连接池上。这里按连接池大小限制同时处理的请求数，
+ * 超出的请求最多等待 acquire-timeout，仍拿不到许可就返回 503，而不是等到连接池超时。
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class InFlightRequestLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+
+    public InFlightRequestLimitFilter(@Value("${virtual-threads.max-in-flight:200}") int maxInFlight,
+                                      @Value("${virtual-threads.acquire-timeout:1s}") Duration acquireTimeout) {
+        this.permits = new Semaphore(maxInFlight);
+        this.acquireTimeout = acquireTimeout;
+        log.info("虚拟线程模式已启用，并发请求上限: {}", maxInFlight);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("服务器繁忙，请稍后重试");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.onlineshopping.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 指标相关配置
+ *
+ * 接口延迟（http.server.requests）、连接池等待（hikaricp.connections.acquire）由 Actuator 自动采集；
+ * 这里把数据源包装成统计 SQL 语句数的 SqlCountingDataSource，按请求统计语句数见 SqlStatementMetricsFilter。
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 静态方法注册，避免提前初始化配置类；包装后的数据源仍可以 unwrap 出连接池（连接池指标照常采集）
+     */
+    @Bean
+    public static BeanPostProcessor sqlCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof SqlCountingDataSource)
+                        ? new SqlCountingDataSource(dataSource) : bean;
+            }
+        };
+    }
+}
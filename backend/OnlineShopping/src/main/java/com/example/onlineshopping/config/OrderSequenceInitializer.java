@@ -0,0 +1,89 @@
+package com.example.onlineshopping.config;
+
+import com.example.onlineshopping.entity.Order;
+import com.example.onlineshopping.entity.OrderItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 启动时校正订单/订单项的ID序列
+ *
+ * 订单ID原先是自增列，改为 pooled 序列后序列必须从已有最大ID之后开始。data.sql 会初始化序列表，
+ * 但如果升级后的应用先于脚本启动，ddl-auto 建出的序列从 1 开始，脚本又会因为已有数据跳过初始化，
+ * 新订单的ID就会和旧订单冲突。这里在实体管理器（及 ddl-auto）初始化之后、开始接收请求之前检查一次，
+ * 下一个分配块会与已有ID重叠时把序列推进到最大ID之后。
+ */
+@Slf4j
+@Component
+public class OrderSequenceInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 依赖实体管理器，确保 ddl-auto 已经建好序列
+     */
+    public OrderSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        boolean h2 = isH2();
+        for (Class<?> entity : List.of(Order.class, OrderItem.class)) {
+            SequenceGenerator generator = sequenceGenerator(entity);
+            String table = entity.getAnnotation(Table.class).name();
+            ensureAfterMaxId(table, generator.sequenceName(), generator.allocationSize(), h2);
+        }
+    }
+
+    private void ensureAfterMaxId(String table, String sequence, int allocationSize, boolean h2) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        if (max == null) {
+            return;
+        }
+        // pooled 优化器取到序列值 v 后使用 (v - allocationSize, v] 之间的ID
+        long required = max + allocationSize;
+        long target = max + allocationSize + 1;
+
+        Long next = h2
+                ? jdbcTemplate.queryForObject("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?",
+                Long.class, sequence)
+                : jdbcTemplate.query("SELECT next_val FROM " + sequence,
+                rs -> rs.next() ? rs.getLong(1) : null);
+        if (next != null && next >= required) {
+            return;
+        }
+
+        if (h2) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + target);
+        } else if (next == null) {
+            jdbcTemplate.update("INSERT INTO " + sequence + " (next_val) VALUES (?)", target);
+        } else {
+            // 条件更新，多个实例同时启动时不会把序列往回调
+            jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ? WHERE next_val < ?", target, required);
+        }
+        log.warn("序列 {} 的下一个值 {} 与 {} 表已有ID（最大 {}）重叠，已推进到 {}", sequence, next, table, max, target);
+    }
+
+    private boolean isH2() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "H2".equalsIgnoreCase(product);
+    }
+
+    private static SequenceGenerator sequenceGenerator(Class<?> entity) {
+        try {
+            return entity.getDeclaredField("id").getAnnotation(SequenceGenerator.class);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(entity.getSimpleName() + " 没有 id 字段", e);
+        }
+    }
+}
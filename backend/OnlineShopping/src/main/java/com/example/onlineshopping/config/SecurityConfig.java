@@ -2,6 +2,7 @@ package com.example.onlineshopping.config;
 
 import com.example.onlineshopping.security.JwtAuthenticationFilter;
 import com.example.onlineshopping.service.UserService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -38,6 +39,9 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // 流式响应结束时的异步分派，原请求已经鉴权过
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // 公开访问的端点
                         .requestMatchers(
                                 "/api/auth/**",
@@ -49,8 +53,12 @@ public class SecurityConfig {
                                 "/error"
                         ).permitAll()
 
+                        // 健康检查和 Prometheus 抓取不带令牌，生产环境应在网络层限制访问
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+
                         // 管理员专用端点
                         .requestMatchers("/api/admin/**").hasAuthority("ROLE_ADMIN")
+                        .requestMatchers("/actuator/**").hasAuthority("ROLE_ADMIN")
 
                         // 用户和管理员都可以访问的端点
                         .requestMatchers("/api/users/**", "/api/orders/**", "/api/cart/**").hasAnyAuthority("ROLE_USER", "ROLE_ADMIN")
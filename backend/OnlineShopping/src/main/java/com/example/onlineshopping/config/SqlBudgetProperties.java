@@ -0,0 +1,77 @@
+package com.example.onlineshopping.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 每个请求的 SQL 语句预算
+ *
+ * 超过预算，或同一条语句重复执行超过 repeat-threshold 次（疑似 N+1）时记录告警日志和指标。
+ * 单个接口的预算用 "方法 路径模板" 配置，例如：
+ * <pre>
+ * sql:
+ *   budget:
+ *     endpoints:
+ *       "[GET /api/products/page]": 3
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "sql.budget")
+public class SqlBudgetProperties {
+    private boolean enabled = true;
+    private int maxStatements = 30;
+    private int repeatThreshold = 10;
+    private Duration logInterval = Duration.ofMinutes(1);
+    private Map<String, Integer> endpoints = new HashMap<>();
+
+    /**
+     * 接口的语句预算，没有单独配置时取 maxStatements
+     */
+    public int limitFor(String endpoint) {
+        return endpoints.getOrDefault(endpoint, maxStatements);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+
+    public void setMaxStatements(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    public int getRepeatThreshold() {
+        return repeatThreshold;
+    }
+
+    public void setRepeatThreshold(int repeatThreshold) {
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    public Duration getLogInterval() {
+        return logInterval;
+    }
+
+    public void setLogInterval(Duration logInterval) {
+        this.logInterval = logInterval;
+    }
+
+    public Map<String, Integer> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Integer> endpoints) {
+        this.endpoints = endpoints;
+    }
+}
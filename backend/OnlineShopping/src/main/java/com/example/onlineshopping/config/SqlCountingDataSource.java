@@ -0,0 +1,87 @@
+package com.example.onlineshopping.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * 统计 SQL 语句的数据源包装
+ *
+ * Hibernate、JdbcTemplate 和直接使用 DataSource 的代码（库存扣减、购物车回写、统计汇总、批量导入等）都经过这里。
+ * 连接上每准备一条语句（prepareStatement / prepareCall）计数一次，同一条 PreparedStatement 批量执行仍算一条；
+ * 普通 Statement 每次执行计数一次，executeBatch 算一条。计数写入当前线程的 SqlStatementCounter 记录。
+ */
+class SqlCountingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> PREPARE = Set.of("prepareStatement", "prepareCall");
+    private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+    private static final Set<String> EXECUTE_BATCH = Set.of("executeBatch", "executeLargeBatch");
+
+    SqlCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            if (PREPARE.contains(method.getName()) && args != null && args[0] instanceof String sql) {
+                SqlStatementCounter.record(sql);
+            }
+            Object result = invoke(connection, method, args);
+            return result instanceof Statement statement && "createStatement".equals(method.getName())
+                    ? wrap(statement) : result;
+        });
+    }
+
+    private static Statement wrap(Statement statement) {
+        return proxy(Statement.class, statement, (method, args) -> {
+            if (EXECUTE.contains(method.getName()) && args != null && args[0] instanceof String sql) {
+                SqlStatementCounter.record(sql);
+            } else if (EXECUTE_BATCH.contains(method.getName())) {
+                SqlStatementCounter.record("[batch]");
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler handler) {
+        return (T) Proxy.newProxyInstance(SqlCountingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    // 连接池和事务管理按对象比较连接，代理只等于它自己
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "SqlCounting[" + target + "]";
+                    default -> handler.handle(method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.onlineshopping.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 统计当前线程执行的 SQL 语句
+ *
+ * 计数来自包装后的数据源（SqlCountingDataSource），Hibernate 和 JdbcTemplate、直接使用连接的代码都计入：
+ * 每准备一条语句计数一次（批量写入的一个批次算一条），同时按 SQL 文本统计重复次数：
+ * 同一条语句在一个请求里执行很多次，通常是逐行懒加载（N+1）。
+ * 只有调用 start() 之后的线程才计数，其余线程只多一次 ThreadLocal 读取；在其他线程中执行的语句不计入。
+ *
+ * 测试中可以直接用来断言语句数，记录可以嵌套（例如包住 MockMvc 请求，请求过滤器里还有一层）：
+ * <pre>
+ * try (SqlStatementCounter.Recording sql = SqlStatementCounter.start()) {
+ *     productService.findPage(...);
+ *     sql.assertAtMost(2);
+ *     sql.assertNoRepeatsOver(1);
+ * }
+ * </pre>
+ */
+public final class SqlStatementCounter {
+
+    /**
+     * 每个记录最多按文本区分的语句数，超出后只计总数
+     */
+    private static final int MAX_DISTINCT_STATEMENTS = 256;
+
+    private static final ThreadLocal<Recording> CURRENT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    /**
+     * 记录一条语句，计入当前线程的记录及其所有外层记录
+     */
+    static void record(String sql) {
+        for (Recording recording = CURRENT.get(); recording != null; recording = recording.parent) {
+            recording.add(sql);
+        }
+    }
+
+    /**
+     * 开始为当前线程记录，已有的外层记录继续计数；用完必须 close()
+     */
+    public static Recording start() {
+        Recording recording = new Recording(CURRENT.get());
+        CURRENT.set(recording);
+        return recording;
+    }
+
+    /**
+     * 一次记录：语句总数和每条语句的执行次数
+     */
+    public static final class Recording implements AutoCloseable {
+        private final Recording parent;
+        private final Map<String, Integer> statements = new HashMap<>();
+        private int count;
+        private boolean closed;
+
+        private Recording(Recording parent) {
+            this.parent = parent;
+        }
+
+        private void add(String sql) {
+            count++;
+            if (statements.size() < MAX_DISTINCT_STATEMENTS || statements.containsKey(sql)) {
+                statements.merge(sql, 1, Integer::sum);
+            }
+        }
+
+        /**
+         * 语句总数
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * 执行次数最多的语句，没有执行过语句时返回 null
+         */
+        public Map.Entry<String, Integer> mostRepeated() {
+            return statements.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .orElse(null);
+        }
+
+        /**
+         * 语句总数超过 max 时抛出 AssertionError
+         */
+        public void assertAtMost(int max) {
+            if (count > max) {
+                throw new AssertionError("执行了 " + count + " 条 SQL，预期不超过 " + max + "：" + statements);
+            }
+        }
+
+        /**
+         * 任意一条语句执行次数超过 max 时抛出 AssertionError（用于发现 N+1）
+         */
+        public void assertNoRepeatsOver(int max) {
+            Map.Entry<String, Integer> top = mostRepeated();
+            if (top != null && top.getValue() > max) {
+                throw new AssertionError("SQL 重复执行了 " + top.getValue() + " 次，预期不超过 " + max + "：" + top.getKey());
+            }
+        }
+
+        /**
+         * 结束记录，恢复外层记录；只能由开始记录的线程调用
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (CURRENT.get() == this) {
+                    if (parent != null) {
+                        CURRENT.set(parent);
+                    } else {
+                        CURRENT.remove();
+                    }
+                }
+            }
+        }
+    }
+}
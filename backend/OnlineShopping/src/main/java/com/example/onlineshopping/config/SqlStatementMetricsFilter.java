@@ -0,0 +1,115 @@
+package com.example.onlineshopping.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按接口统计每个请求执行的 SQL 语句数（http.server.sql.statements），并检查语句预算
+ *
+ * 标签与 http.server.requests 一致，uri 取路径模板（如 /api/products/{id}），
+ * 没有匹配到控制器的请求记为 UNKNOWN，避免按实际路径产生大量时间序列。
+ * 包含 JWT 过滤器里的查询；流式响应在其他线程中执行的查询不计入。
+ *
+ * 超出预算（type=budget）或同一条语句重复执行过多（type=repeat，疑似 N+1）时累加
+ * http.server.sql.violations，并记录告警日志，同一接口同一类问题每个 log-interval 最多记录一次。
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class SqlStatementMetricsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final SqlBudgetProperties budget;
+
+    /**
+     * 每个接口、每类问题上次记录日志的时间
+     */
+    private final Map<String, Long> lastLogged = new ConcurrentHashMap<>();
+
+    public SqlStatementMetricsFilter(MeterRegistry meterRegistry, SqlBudgetProperties budget) {
+        this.meterRegistry = meterRegistry;
+        this.budget = budget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        SqlStatementCounter.Recording recording = SqlStatementCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            recording.close();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String method = request.getMethod();
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            DistributionSummary.builder("http.server.sql.statements")
+                    .description("每个请求执行的 SQL 语句数")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(1000.0)
+                    .register(meterRegistry)
+                    .record(recording.count());
+            if (budget.isEnabled() && recording.count() > 0) {
+                checkBudget(method, uri, recording);
+            }
+        }
+    }
+
+    private void checkBudget(String method, String uri, SqlStatementCounter.Recording recording) {
+        String endpoint = method + " " + uri;
+        int limit = budget.limitFor(endpoint);
+        if (recording.count() > limit) {
+            violation(method, uri, "budget");
+            if (shouldLog(endpoint + "#budget")) {
+                log.warn("SQL 语句超出预算：{} 执行了 {} 条，预算 {}", endpoint, recording.count(), limit);
+            }
+        }
+
+        Map.Entry<String, Integer> top = recording.mostRepeated();
+        if (top != null && top.getValue() >= budget.getRepeatThreshold()) {
+            violation(method, uri, "repeat");
+            if (shouldLog(endpoint + "#repeat")) {
+                log.warn("疑似 N+1 查询：{} 中同一条 SQL 执行了 {} 次：{}", endpoint, top.getValue(), top.getKey());
+            }
+        }
+    }
+
+    private void violation(String method, String uri, String type) {
+        Counter.builder("http.server.sql.violations")
+                .description("超出 SQL 语句预算或疑似 N+1 的请求数")
+                .tag("method", method)
+                .tag("uri", uri)
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private boolean shouldLog(String key) {
+        long now = System.currentTimeMillis();
+        long interval = budget.getLogInterval().toMillis();
+        Long previous = lastLogged.get(key);
+        if (previous != null && now - previous < interval) {
+            return false;
+        }
+        // 并发时只有一个线程记录
+        return previous == null
+                ? lastLogged.putIfAbsent(key, now) == null
+                : lastLogged.replace(key, previous, now);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.onlineshopping.config;
+
+import com.example.onlineshopping.entity.Category;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.repository.CategoryRepository;
+import com.example.onlineshopping.repository.ProductRepository;
+import com.example.onlineshopping.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 本地 H2 库的合成数据（压测用）：分类树、商品、用户和购物车
+ *
+ * 只在 h2 profile 且 seed.enabled=true 时运行，随机种子固定，每次启动数据相同。
+ * 生成的用户名为 load-user-0 ... load-user-{N-1}，密码都是 seed.password。
+ */
+@Slf4j
+@Component
+@Profile("h2")
+@ConditionalOnProperty(name = "seed.enabled", havingValue = "true")
+public class SyntheticDataSeeder implements CommandLineRunner {
+
+    public static final String USERNAME_PREFIX = "load-user-";
+
+    private static final String INSERT_CART_ITEM_SQL =
+            "INSERT INTO cart_items (user_id, product_id, quantity, create_time, update_time) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * 商品名称中的词，让搜索和搜索建议有可命中的内容
+     */
+    private static final String[] WORDS = {
+            "手机", "笔记本电脑", "耳机", "显示器", "键盘", "鼠标", "平板", "相机", "音箱", "手表",
+            "phone", "laptop", "headphones", "monitor", "keyboard", "mouse", "tablet", "camera", "speaker", "watch"
+    };
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int categoryCount;
+    private final int productCount;
+    private final int userCount;
+    private final int cartCount;
+    private final String password;
+
+    public SyntheticDataSeeder(CategoryRepository categoryRepository, ProductRepository productRepository,
+                               UserRepository userRepository, PasswordEncoder passwordEncoder, JdbcTemplate jdbcTemplate,
+                               @Value("${seed.categories:100}") int categoryCount,
+                               @Value("${seed.products:2000}") int productCount,
+                               @Value("${seed.users:200}") int userCount,
+                               @Value("${seed.carts:100}") int cartCount,
+                               @Value("${seed.password:password123}") String password) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.jdbcTemplate = jdbcTemplate;
+        this.categoryCount = categoryCount;
+        this.productCount = productCount;
+        this.userCount = userCount;
+        this.cartCount = cartCount;
+        this.password = password;
+    }
+
+    @Override
+    public void run(String... args) {
+        long start = System.currentTimeMillis();
+        Random random = new Random(20240101L);
+
+        // 分类树：每个分类的父分类是之前生成的某个分类，约五分之一是根分类
+        List<Category> categories = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) {
+            Category category = new Category();
+            category.setName("分类" + i);
+            category.setDescription("合成分类 " + i);
+            category.setStatus(true);
+            category.setCreateTime(LocalDateTime.now());
+            if (i > 0 && random.nextInt(5) != 0) {
+                category.setParent(categories.get(random.nextInt(i)));
+            }
+            categories.add(categoryRepository.save(category));
+        }
+
+        // 商品：价格和销量都是长尾分布
+        List<Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            Product product = new Product();
+            product.setName("商品 " + i + " " + WORDS[random.nextInt(WORDS.length)]);
+            product.setDescription("合成商品 " + i + "，" + WORDS[random.nextInt(WORDS.length)]);
+            product.setPrice(BigDecimal.valueOf((long) (100 * Math.exp(random.nextDouble() * 9)), 2));
+            product.setStock(1_000_000);
+            product.setSales((int) (Math.exp(random.nextDouble() * 8)) - 1);
+            product.setStatus(true);
+            product.setCategory(categories.isEmpty() ? null : categories.get(random.nextInt(categories.size())));
+            products.add(product);
+        }
+        products = productRepository.saveAll(products);
+
+        // 用户：所有用户共用同一个密码哈希，只计算一次
+        String encoded = passwordEncoder.encode(password);
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User user = new User();
+            user.setUsername(USERNAME_PREFIX + i);
+            user.setPassword(encoded);
+            user.setEmail(USERNAME_PREFIX + i + "@example.com");
+            user.setRole(User.UserRole.ROLE_USER);
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        // 购物车：前 seed.carts 个用户各放入 1~5 件不同商品
+        List<Object[]> cartArgs = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int i = 0; i < Math.min(cartCount, users.size()) && !products.isEmpty(); i++) {
+            int lines = 1 + random.nextInt(5);
+            int first = random.nextInt(products.size());
+            for (int j = 0; j < lines && j < products.size(); j++) {
+                Product product = products.get((first + j) % products.size());
+                cartArgs.add(new Object[]{users.get(i).getId(), product.getId(), 1 + random.nextInt(3), now, now});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_CART_ITEM_SQL, cartArgs);
+
+        log.info("合成数据生成完成：分类 {}，商品 {}，用户 {}，购物车项 {}，耗时 {} ms",
+                categories.size(), products.size(), users.size(), cartArgs.size(), System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,459 @@
+package com.example.onlineshopping.config;
+
+import com.example.onlineshopping.service.ImageProcessingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 上传文件（/uploads/**）的静态访问
+ *
+ * 放在所有过滤器最前面直接处理，不经过 Spring Security、JWT 校验和 DispatcherServlet，图片请求不占用接口的处理时间。
+ * - 以内容摘要命名的文件内容不会变：强 ETag 取文件名，Cache-Control 为 immutable，浏览器和 CDN 可以长期缓存；
+ *   旧的随机文件名用大小和修改时间作 ETag，只缓存 max-age
+ * - 支持 If-None-Match / If-Modified-Since 返回 304，单个字节范围（Range / If-Range）返回 206
+ * - 内容协商：请求 jpg/png 且 Accept 声明支持时，同目录下有 {名称}.avif / {名称}.webp 就返回它；
+ *   可压缩的类型按 Accept-Encoding 查找预压缩的 {文件名}.br / {文件名}.gz。这些文件由部署时的工具生成，没有时按原文件返回
+ * - 缩放版本还没生成完时返回原图，不缓存，生成后重新验证即可拿到缩放版本；没有在生成的（如上传时队列已满）重新安排生成
+ * - 大文件在 Tomcat 上交给 sendfile 由内核直接从页缓存发送，工作线程设置完响应头就返回；
+ *   其他容器或小文件用 FileChannel.transferTo 写出
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class UploadServingFilter extends OncePerRequestFilter {
+
+    private static final String URL_PREFIX = "/uploads/";
+    private static final Path ROOT = Paths.get("uploads").toAbsolutePath().normalize();
+
+    // Tomcat 的 sendfile 请求属性（org.apache.catalina.Globals），用字符串避免依赖具体容器
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 允许访问的路径：各级目录和文件名只含字母、数字、点、横线和下划线，不能以点开头（排除 .tmp 和 ..）
+     */
+    private static final Pattern SAFE_PATH = Pattern.compile("^(?:[A-Za-z0-9_-][A-Za-z0-9._-]*/)*[A-Za-z0-9_-][A-Za-z0-9._-]*$");
+    /**
+     * 以内容摘要命名的文件名（与 FileSystemBlobStore 一致）
+     */
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("^[0-9a-f]{64}[.-][a-z0-9.-]+$");
+    /**
+     * 缩放版本文件名 {hash}-{版本}.jpg
+     */
+    private static final Pattern VARIANT = Pattern.compile("^([0-9a-f]{64})-[a-z]+\\.jpg$");
+    private static final Pattern BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("png", "image/png"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("bmp", "image/bmp"),
+            Map.entry("wbmp", "image/vnd.wap.wbmp"),
+            Map.entry("tif", "image/tiff"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("avif", "image/avif"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("txt", "text/plain"),
+            Map.entry("csv", "text/csv"),
+            Map.entry("json", "application/json"));
+    private static final Map<String, String> ENCODINGS = Map.of("br", "br", "gz", "gzip");
+
+    private final MeterRegistry meterRegistry;
+    private final ImageProcessingService imageProcessingService;
+    private final String immutableCacheControl;
+    private final String defaultCacheControl;
+    private final long sendfileThreshold;
+    private final List<String> alternateFormats;
+    private final List<String> precompressed;
+
+    public UploadServingFilter(MeterRegistry meterRegistry, ImageProcessingService imageProcessingService,
+                               @Value("${uploads.serving.immutable-max-age:365d}") Duration immutableMaxAge,
+                               @Value("${uploads.serving.max-age:1h}") Duration maxAge,
+                               @Value("${uploads.serving.sendfile-threshold:48KB}") DataSize sendfileThreshold,
+                               @Value("${uploads.serving.alternate-formats:avif,webp}") List<String> alternateFormats,
+                               @Value("${uploads.serving.precompressed:br,gz}") List<String> precompressed) {
+        this.meterRegistry = meterRegistry;
+        this.imageProcessingService = imageProcessingService;
+        this.immutableCacheControl = "public, max-age=" + immutableMaxAge.toSeconds() + ", immutable";
+        this.defaultCacheControl = "public, max-age=" + maxAge.toSeconds();
+        this.sendfileThreshold = sendfileThreshold.toBytes();
+        this.alternateFormats = alternateFormats;
+        this.precompressed = precompressed;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + URL_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String method = request.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            response.setHeader("Allow", "GET, HEAD");
+            finish(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        Selected selected = select(request);
+        if (selected == null) {
+            finish(response, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader("ETag", selected.etag());
+        response.setDateHeader("Last-Modified", selected.lastModified());
+        response.setHeader("Cache-Control", selected.cacheControl());
+        if (selected.vary() != null) {
+            response.setHeader("Vary", selected.vary());
+        }
+        if (notModified(request, selected)) {
+            finish(response, HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(selected.contentType());
+        if (selected.encoding() != null) {
+            response.setHeader("Content-Encoding", selected.encoding());
+        }
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("Accept-Ranges", "bytes");
+
+        long start = 0;
+        long end = selected.length() - 1;
+        String range = request.getHeader("Range");
+        if (range != null && rangeApplies(request, selected)) {
+            long[] bounds = parseRange(range, selected.length());
+            if (bounds == null) {
+                response.setHeader("Content-Range", "bytes */" + selected.length());
+                finish(response, HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + selected.length());
+            }
+        }
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        count(response.getStatus());
+        if (head || length == 0) {
+            return;
+        }
+        transfer(request, response, selected.file(), start, length);
+    }
+
+    /**
+     * 选出要返回的文件（含内容协商和缩放版本回退），不存在时返回 null
+     */
+    private Selected select(HttpServletRequest request) throws IOException {
+        String relative = request.getRequestURI().substring(request.getContextPath().length() + URL_PREFIX.length());
+        if (!SAFE_PATH.matcher(relative).matches()) {
+            return null;
+        }
+        Path file = ROOT.resolve(relative).normalize();
+        if (!file.startsWith(ROOT)) {
+            return null;
+        }
+        String name = file.getFileName().toString();
+        String extension = extension(name);
+        boolean immutable = CONTENT_ADDRESSED.matcher(name).matches();
+
+        BasicFileAttributes attributes = attributes(file);
+        if (attributes == null) {
+            // 缩放版本还没生成：返回原图，要求每次重新验证
+            Matcher variant = VARIANT.matcher(name);
+            if (!variant.matches()) {
+                return null;
+            }
+            for (String originalExtension : ImageProcessingService.ORIGINAL_EXTENSIONS) {
+                Path original = file.resolveSibling(variant.group(1) + "." + originalExtension);
+                BasicFileAttributes originalAttributes = attributes(original);
+                if (originalAttributes != null) {
+                    imageProcessingService.generateMissing(original, variant.group(1));
+                    return new Selected(original, originalAttributes, contentType(originalExtension), null,
+                            etag(original.getFileName().toString(), originalAttributes, true), "no-cache", null);
+                }
+            }
+            return null;
+        }
+
+        String contentType = contentType(extension);
+        String cacheControl = immutable ? immutableCacheControl : defaultCacheControl;
+
+        // 其他图片格式
+        if (!alternateFormats.isEmpty() && ("jpg".equals(extension) || "png".equals(extension))) {
+            String accept = request.getHeader("Accept");
+            String base = name.substring(0, name.length() - extension.length());
+            for (String format : alternateFormats) {
+                String type = contentType(format);
+                if (accepts(accept, type)) {
+                    Path alternate = file.resolveSibling(base + format);
+                    BasicFileAttributes alternateAttributes = attributes(alternate);
+                    if (alternateAttributes != null) {
+                        return new Selected(alternate, alternateAttributes, type, null,
+                                etag(alternate.getFileName().toString(), alternateAttributes, immutable),
+                                cacheControl, "Accept");
+                    }
+                }
+            }
+            return new Selected(file, attributes, contentType, null, etag(name, attributes, immutable),
+                    cacheControl, "Accept");
+        }
+
+        // 预压缩文件
+        if (!precompressed.isEmpty() && compressible(contentType)) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            for (String suffix : precompressed) {
+                String encoding = ENCODINGS.get(suffix);
+                if (encoding != null && accepts(acceptEncoding, encoding)) {
+                    Path compressed = file.resolveSibling(name + "." + suffix);
+                    BasicFileAttributes compressedAttributes = attributes(compressed);
+                    if (compressedAttributes != null) {
+                        return new Selected(compressed, compressedAttributes, contentType, encoding,
+                                etag(compressed.getFileName().toString(), compressedAttributes, immutable),
+                                cacheControl, "Accept-Encoding");
+                    }
+                }
+            }
+            return new Selected(file, attributes, contentType, null, etag(name, attributes, immutable),
+                    cacheControl, "Accept-Encoding");
+        }
+
+        return new Selected(file, attributes, contentType, null, etag(name, attributes, immutable), cacheControl, null);
+    }
+
+    /**
+     * If-None-Match 优先；没有时才看 If-Modified-Since
+     */
+    private static boolean notModified(HttpServletRequest request, Selected selected) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if ("*".equals(candidate) || candidate.equals(selected.etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && selected.lastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * 没有 If-Range，或 If-Range 与当前文件一致（强比较）时才按 Range 返回部分内容
+     */
+    private static boolean rangeApplies(HttpServletRequest request, Selected selected) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(selected.etag());
+        }
+        long date = dateHeader(request, "If-Range");
+        return date >= 0 && selected.lastModified() / 1000 == date / 1000;
+    }
+
+    /**
+     * 解析单个字节范围：返回 {start, end}；不满足时返回 null；多个范围或格式不认识时返回空数组，按完整内容返回
+     */
+    private static long[] parseRange(String header, long length) {
+        Matcher matcher = BYTE_RANGE.matcher(header.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (matcher.group(1).isEmpty()) {
+                // bytes=-N：最后 N 个字节
+                long suffix = Long.parseLong(matcher.group(2));
+                if (suffix == 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(matcher.group(1));
+                end = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+                if (end < start) {
+                    return start >= length ? null : new long[0];
+                }
+            }
+            if (start >= length) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private void transfer(HttpServletRequest request, HttpServletResponse response, Path file,
+                          long start, long length) throws IOException {
+        if (length >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            bytes("sendfile", length);
+            return;
+        }
+        long position = start;
+        long remaining = length;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        } catch (IOException e) {
+            // 多数是客户端中途断开
+            log.debug("上传文件发送中断: {}", file, e);
+        } finally {
+            bytes("stream", length - remaining);
+        }
+    }
+
+    private void finish(HttpServletResponse response, int status) {
+        response.setStatus(status);
+        count(status);
+    }
+
+    private void count(int status) {
+        Counter.builder("uploads.responses")
+                .description("上传文件访问的响应数")
+                .tag("status", String.valueOf(status))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void bytes(String transfer, long bytes) {
+        Counter.builder("uploads.sent.bytes")
+                .description("上传文件发送的字节数")
+                .baseUnit("bytes")
+                .tag("transfer", transfer)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    private static BasicFileAttributes attributes(Path file) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按内容命名的文件直接用文件名（不同表示的文件名不同），其余用大小和修改时间
+     */
+    private static String etag(String name, BasicFileAttributes attributes, boolean contentAddressed) {
+        if (contentAddressed) {
+            return "\"" + name + "\"";
+        }
+        return "\"" + Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+    }
+
+    /**
+     * 请求头（Accept / Accept-Encoding）中是否列出了该值且 q 不为 0；image/* 和 * 这类通配不算，
+     * 否则对所有浏览器都会返回其他格式
+     */
+    private static boolean accepts(String header, String value) {
+        if (header == null) {
+            return false;
+        }
+        for (String item : header.split(",")) {
+            String[] parts = item.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase(value)) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.equals("image/svg+xml")
+                || contentType.equals("application/json");
+    }
+
+    private static String contentType(String extension) {
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+    }
+
+    /**
+     * 选中的文件及其响应头
+     */
+    private record Selected(Path file, long length, long lastModified, String contentType, String encoding,
+                            String etag, String cacheControl, String vary) {
+
+        Selected(Path file, BasicFileAttributes attributes, String contentType, String encoding,
+                 String etag, String cacheControl, String vary) {
+            this(file, attributes.size(), attributes.lastModifiedTime().toMillis(), contentType, encoding,
+                    etag, cacheControl, vary);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.onlineshopping.config;
 
+import com.example.onlineshopping.security.CurrentUserIdArgumentResolver;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     @Override
@@ -15,11 +18,12 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedHeaders("*")
                 .allowCredentials(true);
     }
-    
+
+    // 上传文件（/uploads/**）由 UploadServingFilter 直接返回，不经过 DispatcherServlet
+
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 配置头像上传目录的静态资源访问
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/");
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        // 控制器参数上的 @CurrentUserId 直接取当前登录用户的ID
+        resolvers.add(new CurrentUserIdArgumentResolver());
     }
-}
\ No newline at end of file
+}
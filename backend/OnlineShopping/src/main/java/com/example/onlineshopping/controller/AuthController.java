@@ -2,51 +2,52 @@ package com.example.onlineshopping.controller;
 
 import com.example.onlineshopping.dto.LoginRequest;
 import com.example.onlineshopping.entity.User;
-import com.example.onlineshopping.security.JwtUtil;
+import com.example.onlineshopping.service.LoginService;
 import com.example.onlineshopping.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 public class AuthController {
-    private final AuthenticationManager authenticationManager;
-    private final JwtUtil jwtUtil;
+    private final LoginService loginService;
     private final UserService userService;
 
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
         try {
-            // 使用Spring Security进行身份认证（会自动验证BCrypt加密的密码）
-            authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    loginRequest.getUsername(),
-                    loginRequest.getPassword()
-                )
-            );
-
-            // 加载用户详情并生成令牌
-            final UserDetails userDetails = userService.loadUserByUsername(loginRequest.getUsername());
-            final String jwt = jwtUtil.generateToken(userDetails);
+            // 查询一次用户，在哈希线程池中校验密码（必要时升级哈希），再签发令牌
+            LoginService.LoginResult result = loginService.login(loginRequest.getUsername(), loginRequest.getPassword());
+            final User user = result.user();
 
             // 返回响应
             Map<String, Object> response = new HashMap<>();
-            response.put("token", jwt);
-            response.put("username", userDetails.getUsername());
-            response.put("authorities", userDetails.getAuthorities());
+            response.put("token", result.token());
+            response.put("username", user.getUsername());
+            response.put("authorities", List.of(new SimpleGrantedAuthority(user.getRole().name())));
             response.put("message", "登录成功");
 
             return ResponseEntity.ok(response);
 
+        } catch (RejectedExecutionException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "登录繁忙");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(errorResponse);
         } catch (BadCredentialsException e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", "认证失败");
@@ -80,6 +81,15 @@ public class AuthController {
         }
     }
 
+    /**
+     * 登录各阶段耗时统计（管理员）
+     */
+    @GetMapping("/stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> loginStats() {
+        return ResponseEntity.ok(loginService.stats());
+    }
+
     @GetMapping("/check")
     public ResponseEntity<?> checkAuth() {
         Map<String, String> response = new HashMap<>();
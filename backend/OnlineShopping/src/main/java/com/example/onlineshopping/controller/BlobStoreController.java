@@ -0,0 +1,46 @@
+package com.example.onlineshopping.controller;
+
+import com.example.onlineshopping.service.BlobStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/blobs")
+@RequiredArgsConstructor
+public class BlobStoreController {
+
+    private final BlobStore blobStore;
+
+    /**
+     * 上次垃圾回收的结果
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(blobStore.stats());
+    }
+
+    /**
+     * 立即执行一次垃圾回收（正常由定时任务执行）
+     */
+    @PostMapping("/gc")
+    public ResponseEntity<?> collectGarbage() {
+        try {
+            return ResponseEntity.ok(blobStore.collectGarbage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            log.error("上传文件垃圾回收失败", e);
+            return ResponseEntity.status(500).body("垃圾回收失败：" + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.onlineshopping.controller;
+
+import com.example.onlineshopping.security.VerifiedTokenCache;
+import com.example.onlineshopping.service.ProductCatalogCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final ProductCatalogCache productCatalogCache;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    /**
+     * 获取缓存命中率等统计信息
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("catalog", productCatalogCache.stats());
+        result.put("jwt", verifiedTokenCache.stats());
+        return ResponseEntity.ok(result);
+    }
+}
@@ -1,14 +1,10 @@
 package com.example.onlineshopping.controller;
 
 import com.example.onlineshopping.dto.CartItemDto;
-import com.example.onlineshopping.entity.CartItem;
-import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.security.CurrentUserId;
 import com.example.onlineshopping.service.CartService;
-import com.example.onlineshopping.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
@@ -17,22 +13,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CartController {
     private final CartService cartService;
-    private final UserService userService;
 
     @GetMapping("/items")
-    public ResponseEntity<List<CartItemDto>> getCartItems(@AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = getUserIdFromUserDetails(userDetails);
+    public ResponseEntity<List<CartItemDto>> getCartItems(@CurrentUserId Long userId) {
         return ResponseEntity.ok(cartService.getCartItems(userId));
     }
 
     @PostMapping("/items")
     public ResponseEntity<?> addToCart(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @CurrentUserId Long userId,
             @RequestParam Long productId,
             @RequestParam Integer quantity) {
-        Long userId = getUserIdFromUserDetails(userDetails);
         try {
-            CartItem cartItem = cartService.addToCart(userId, productId, quantity);
+            CartItemDto cartItem = cartService.addToCart(userId, productId, quantity);
             return ResponseEntity.ok(cartItem);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -41,12 +34,11 @@ public class CartController {
 
     @PutMapping("/items")
     public ResponseEntity<?> updateCartItem(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @CurrentUserId Long userId,
             @RequestParam Long productId,
             @RequestParam Integer quantity) {
-        Long userId = getUserIdFromUserDetails(userDetails);
         try {
-            CartItem cartItem = cartService.updateCartItemQuantity(userId, productId, quantity);
+            CartItemDto cartItem = cartService.updateCartItemQuantity(userId, productId, quantity);
             return ResponseEntity.ok(cartItem);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -55,25 +47,15 @@ public class CartController {
 
     @DeleteMapping("/items/{productId}")
     public ResponseEntity<Void> removeFromCart(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @CurrentUserId Long userId,
             @PathVariable Long productId) {
-        Long userId = getUserIdFromUserDetails(userDetails);
         cartService.removeFromCart(userId, productId);
         return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/clear")
-    public ResponseEntity<Void> clearCart(@AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = getUserIdFromUserDetails(userDetails);
+    public ResponseEntity<Void> clearCart(@CurrentUserId Long userId) {
         cartService.clearCart(userId);
         return ResponseEntity.ok().build();
     }
-
-    private Long getUserIdFromUserDetails(UserDetails userDetails) {
-        System.out.println("[CartController] Resolving User ID for username: " + userDetails.getUsername());
-        User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found: " + userDetails.getUsername()));
-        System.out.println("[CartController] User ID resolved: " + user.getId());
-        return user.getId();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.example.onlineshopping.controller;
+
+import com.example.onlineshopping.service.SyntheticDataGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/data-generator")
+@RequiredArgsConstructor
+public class DataGeneratorController {
+
+    private final SyntheticDataGenerator generator;
+
+    /**
+     * 在后台开始批量生成合成数据，立即返回；进度通过 GET 查询
+     */
+    @PostMapping
+    public ResponseEntity<?> generate(@RequestParam(defaultValue = "100000") int users,
+                                      @RequestParam(defaultValue = "1000") int categories,
+                                      @RequestParam(defaultValue = "5") int categoryDepth,
+                                      @RequestParam(defaultValue = "200000") int products,
+                                      @RequestParam(defaultValue = "1000000") int orders,
+                                      @RequestParam(defaultValue = "8") int maxItemsPerOrder,
+                                      @RequestParam(defaultValue = "365") int days,
+                                      @RequestParam(defaultValue = "4") int threads,
+                                      @RequestParam(defaultValue = "42") long seed) {
+        try {
+            generator.start(new SyntheticDataGenerator.Spec(users, categories, categoryDepth, products, orders,
+                    maxItemsPerOrder, days, threads, seed));
+            return ResponseEntity.accepted().body(generator.status());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * 生成进度
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status() {
+        return ResponseEntity.ok(generator.status());
+    }
+}
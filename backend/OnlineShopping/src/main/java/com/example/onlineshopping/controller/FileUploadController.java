@@ -1,46 +1,40 @@
 package com.example.onlineshopping.controller;
 
-import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.security.CurrentUserId;
+import com.example.onlineshopping.service.BlobStore;
+import com.example.onlineshopping.service.ChunkedUploadService;
+import com.example.onlineshopping.service.ImageProcessingService;
 import com.example.onlineshopping.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/upload")
 public class FileUploadController {
     
     private final UserService userService;
-    private static final String AVATAR_UPLOAD_DIR = "uploads/avatars/";
-    private static final String PRODUCT_UPLOAD_DIR = "uploads/products/";
-    
-    public FileUploadController(UserService userService) {
+    private final ImageProcessingService imageProcessingService;
+    private final ChunkedUploadService chunkedUploadService;
+
+    public FileUploadController(UserService userService, ImageProcessingService imageProcessingService,
+                                ChunkedUploadService chunkedUploadService) {
         this.userService = userService;
-        // 确保上传目录存在
-        try {
-            Files.createDirectories(Paths.get(AVATAR_UPLOAD_DIR));
-            Files.createDirectories(Paths.get(PRODUCT_UPLOAD_DIR));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        this.imageProcessingService = imageProcessingService;
+        this.chunkedUploadService = chunkedUploadService;
     }
     
     @PostMapping("/avatar")
     public ResponseEntity<?> uploadAvatar(
             @RequestParam("file") MultipartFile file,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @CurrentUserId Long userId) {
         
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body("请选择文件");
@@ -58,50 +52,24 @@ public class FileUploadController {
         }
         
         try {
-            // 生成唯一文件名
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".") 
-                ? originalFilename.substring(originalFilename.lastIndexOf(".")) 
-                : ".jpg";
-            String filename = UUID.randomUUID().toString() + extension;
-            
-            // 保存文件
-            Path filePath = Paths.get(AVATAR_UPLOAD_DIR + filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            
-            // 生成访问URL
-            String avatarUrl = "/" + AVATAR_UPLOAD_DIR + filename;
-            // 统一路径分隔符
-            avatarUrl = avatarUrl.replace("\\", "/");
-            
-            // 更新用户头像
-            User user = userService.findByUsername(userDetails.getUsername())
-                    .orElseThrow(() -> new RuntimeException("用户不存在"));
-            
-            // 删除旧头像文件（如果存在）
-            if (user.getAvatarUrl() != null && !user.getAvatarUrl().isEmpty()) {
-                try {
-                    String oldUrl = user.getAvatarUrl();
-                    if (oldUrl.startsWith("/" + AVATAR_UPLOAD_DIR)) {
-                        String oldFilename = oldUrl.substring(oldUrl.lastIndexOf("/") + 1);
-                        Files.deleteIfExists(Paths.get(AVATAR_UPLOAD_DIR + oldFilename));
-                    }
-                } catch (Exception e) {
-                    // 忽略删除失败
-                }
-            }
-            
-            user.setAvatarUrl(avatarUrl);
-            userService.save(user);
-            
-            Map<String, String> response = new HashMap<>();
+            // 按内容保存原图，缩放版本在后台生成
+            ImageProcessingService.StoredImage image = imageProcessingService.store(file.getInputStream());
+            String avatarUrl = image.url();
+
+            // 更新用户头像；旧头像不再被引用后由上传文件存储的垃圾回收删除
+            userService.updateAvatar(userId, avatarUrl);
+
+            Map<String, Object> response = new HashMap<>();
             response.put("avatarUrl", avatarUrl);
+            response.put("avatarVariants", image.variants());
             response.put("message", "头像上传成功");
-            
+
             return ResponseEntity.ok(response);
-            
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (IOException e) {
-            e.printStackTrace();
+            log.error("头像上传失败", e);
             return ResponseEntity.status(500).body("文件上传失败：" + e.getMessage());
         }
     }
@@ -124,28 +92,103 @@ public class FileUploadController {
         }
 
         try {
-            // 生成唯一文件名
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".") 
-                ? originalFilename.substring(originalFilename.lastIndexOf(".")) 
-                : ".jpg";
-            String filename = UUID.randomUUID().toString() + extension;
-            
-            // 保存文件
-            Path filePath = Paths.get(PRODUCT_UPLOAD_DIR + filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            
-            // 生成访问URL
-            String fileUrl = "/" + PRODUCT_UPLOAD_DIR + filename;
-            fileUrl = fileUrl.replace("\\", "/");
-            
-            Map<String, String> response = new HashMap<>();
-            response.put("url", fileUrl);
-            
+            // 按内容保存原图，缩放版本在后台生成
+            ImageProcessingService.StoredImage image = imageProcessingService.store(file.getInputStream());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("url", image.url());
+            response.put("variants", image.variants());
+
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            log.error("商品图片上传失败", e);
+            return ResponseEntity.status(500).body("文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传商品图片：创建会话，size 为文件字节数，sha256 为整个文件的校验值（可选）
+     */
+    @PostMapping("/chunked")
+    public ResponseEntity<?> createChunkedUpload(@RequestParam long size,
+                                                 @RequestParam(required = false) String sha256,
+                                                 @CurrentUserId Long userId) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.create(userId, size, sha256));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            log.error("创建分片上传失败", e);
+            return ResponseEntity.status(500).body("文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 上传进度，断点续传时先查询缺少的分片
+     */
+    @GetMapping("/chunked/{id}")
+    public ResponseEntity<?> getChunkedUpload(@PathVariable String id, @CurrentUserId Long userId) {
+        return chunkedUploadService.status(userId, id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 上传一个分片：请求体为分片内容（application/octet-stream），X-Chunk-SHA256 为分片的校验值
+     */
+    @PutMapping("/chunked/{id}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String id,
+                                         @RequestParam long offset,
+                                         @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256,
+                                         @CurrentUserId Long userId,
+                                         HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.writeChunk(userId, id, offset, sha256, request.getInputStream()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            // 多数是客户端中途断开，该分片不会记为已收到
+            log.debug("分片上传中断: {}", id, e);
+            return ResponseEntity.status(500).body("文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 所有分片上传后完成上传，返回结果与 /product 相同
+     */
+    @PostMapping("/chunked/{id}/complete")
+    public ResponseEntity<?> completeChunkedUpload(@PathVariable String id, @CurrentUserId Long userId) {
+        try (BlobStore.StagedBlob staged = chunkedUploadService.complete(userId, id)) {
+            ImageProcessingService.StoredImage image = imageProcessingService.store(staged);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("url", image.url());
+            response.put("variants", image.variants());
+
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (IOException e) {
-            e.printStackTrace();
+            log.error("分片上传完成失败", e);
             return ResponseEntity.status(500).body("文件上传失败：" + e.getMessage());
         }
     }
+
+    /**
+     * 取消分片上传
+     */
+    @DeleteMapping("/chunked/{id}")
+    public ResponseEntity<?> abortChunkedUpload(@PathVariable String id, @CurrentUserId Long userId) {
+        try {
+            chunkedUploadService.abort(userId, id);
+            return ResponseEntity.ok().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            log.error("取消分片上传失败", e);
+            return ResponseEntity.status(500).body("取消上传失败：" + e.getMessage());
+        }
+    }
 }
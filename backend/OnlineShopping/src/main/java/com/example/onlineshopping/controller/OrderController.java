@@ -2,35 +2,43 @@ package com.example.onlineshopping.controller;
 
 import com.example.onlineshopping.dto.OrderDto;
 import com.example.onlineshopping.entity.Order;
-import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.security.CurrentUserId;
+import com.example.onlineshopping.service.OrderExportService;
 import com.example.onlineshopping.service.OrderService;
-import com.example.onlineshopping.service.UserService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 import java.util.stream.Collectors;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
     private final OrderService orderService;
-    private final UserService userService;
+    private final OrderExportService orderExportService;
 
-    public OrderController(OrderService orderService, UserService userService) {
+    public OrderController(OrderService orderService, OrderExportService orderExportService) {
         this.orderService = orderService;
-        this.userService = userService;
+        this.orderExportService = orderExportService;
     }
 
     @GetMapping
-    public ResponseEntity<List<OrderDto>> getUserOrders(@AuthenticationPrincipal UserDetails userDetails) {
-        System.out.println("Getting orders for user: " + userDetails.getUsername());
-        Long userId = getUserIdFromUserDetails(userDetails);
-        System.out.println("Resolved user ID: " + userId);
+    public ResponseEntity<List<OrderDto>> getUserOrders(@CurrentUserId Long userId) {
+        log.debug("Getting orders for user ID: {}", userId);
         List<Order> orders = orderService.findByUserId(userId);
-        System.out.println("Found " + orders.size() + " orders");
+        log.debug("Found {} orders", orders.size());
         return ResponseEntity.ok(orders.stream().map(OrderDto::fromEntity).collect(Collectors.toList()));
     }
 
@@ -40,16 +48,47 @@ public class OrderController {
         return ResponseEntity.ok(orders.stream().map(OrderDto::fromEntity).collect(Collectors.toList()));
     }
 
+    /**
+     * 流式导出订单（管理员），format 为 csv 或 ndjson，gzip=true 时下载压缩文件
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Order.OrderStatus status,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String filename = "orders-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+            orderExportService.export(exportFormat, from, to, status, target);
+            if (target instanceof GZIPOutputStream gzipOut) {
+                gzipOut.finish();
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, gzip ? "application/gzip" : exportFormat.getContentType() + ";charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
     @PostMapping
     public ResponseEntity<OrderDto> createOrder(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @CurrentUserId Long userId,
             @RequestParam String shippingAddress,
             @RequestParam String paymentMethod) {
-        System.out.println("Creating order for user: " + userDetails.getUsername());
-        Long userId = getUserIdFromUserDetails(userDetails);
-        System.out.println("Resolved user ID: " + userId);
+        log.debug("Creating order for user ID: {}", userId);
         Order order = orderService.createOrder(userId, shippingAddress, paymentMethod);
-        System.out.println("Order created with ID: " + order.getId());
+        log.debug("Order created with ID: {}", order.getId());
         return ResponseEntity.ok(OrderDto.fromEntity(order));
     }
 
@@ -64,18 +103,10 @@ public class OrderController {
     @PostMapping("/{id}/pay")
     public ResponseEntity<OrderDto> payOrder(
             @PathVariable Long id,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        System.out.println("User " + userDetails.getUsername() + " paying for order: " + id);
-        Long userId = getUserIdFromUserDetails(userDetails);
+            @CurrentUserId Long userId) {
+        log.debug("User ID {} paying for order: {}", userId, id);
         Order order = orderService.payOrder(id, userId);
-        System.out.println("Order " + id + " payment completed");
+        log.debug("Order {} payment completed", id);
         return ResponseEntity.ok(OrderDto.fromEntity(order));
     }
-
-    private Long getUserIdFromUserDetails(UserDetails userDetails) {
-        System.out.println("Resolving User ID for username: " + userDetails.getUsername());
-        User user = userService.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found: " + userDetails.getUsername()));
-        return user.getId();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.example.onlineshopping.controller;
+
+import com.example.onlineshopping.service.OrderExportService;
+import com.example.onlineshopping.service.ProductExportService;
+import com.example.onlineshopping.service.ProductImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 商品批量导入和导出（管理员）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/products")
+@RequiredArgsConstructor
+public class ProductBulkController {
+
+    private final ProductImportService productImportService;
+    private final ProductExportService productExportService;
+
+    /**
+     * 上传 CSV 或 NDJSON 文件（请求体为文件内容）并在后台开始导入，立即返回；进度通过 GET 查询
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importProducts(@RequestParam(defaultValue = "csv") String format,
+                                            @RequestParam(defaultValue = "false") boolean gzip,
+                                            @RequestParam(defaultValue = "false") boolean dryRun,
+                                            HttpServletRequest request) {
+        OrderExportService.Format importFormat;
+        try {
+            importFormat = OrderExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("不支持的格式：" + format);
+        }
+        try {
+            productImportService.start(request.getInputStream(), importFormat, gzip, dryRun);
+            return ResponseEntity.accepted().body(productImportService.status());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            log.error("保存导入文件失败", e);
+            return ResponseEntity.status(500).body("保存导入文件失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 导入进度和出错的行
+     */
+    @GetMapping("/import")
+    public ResponseEntity<Map<String, Object>> importStatus() {
+        return ResponseEntity.ok(productImportService.status());
+    }
+
+    /**
+     * 流式导出所有商品，format 为 csv 或 ndjson，gzip=true 时下载压缩文件；导出的文件可以直接再导入
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "csv") String format,
+                                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String filename = "products-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+            productExportService.export(exportFormat, target);
+            if (target instanceof GZIPOutputStream gzipOut) {
+                gzipOut.finish();
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, gzip ? "application/gzip" : exportFormat.getContentType() + ";charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+}
@@ -1,33 +1,64 @@
 package com.example.onlineshopping.controller;
 
 import com.example.onlineshopping.dto.ProductDto;
+import com.example.onlineshopping.dto.ProductPageDto;
+import com.example.onlineshopping.dto.SuggestionDto;
 import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.service.ProductCatalogCache;
 import com.example.onlineshopping.service.ProductService;
+import com.example.onlineshopping.service.ProductSort;
+import com.example.onlineshopping.service.SuggestionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.math.BigDecimal;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/products")
 @RequiredArgsConstructor
 public class ProductController {
     private final ProductService productService;
+    private final ProductCatalogCache productCatalogCache;
+    private final SuggestionService suggestionService;
 
     @GetMapping
     public ResponseEntity<List<ProductDto>> getAllProducts() {
-        List<Product> products = productService.findAll();
-        List<ProductDto> productDtos = products.stream()
-                .map(ProductDto::fromEntity)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(productDtos);
+        return ResponseEntity.ok(productCatalogCache.findAll());
+    }
+
+    /**
+     * 分页获取上架商品（键集分页），翻页时把上一页返回的 nextCursor 原样传回
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getProductPage(
+            @RequestParam(defaultValue = "createTime") String sort,
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(defaultValue = "false") boolean inStock,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        if (size <= 0 || size > 100) {
+            return ResponseEntity.badRequest().body("每页数量必须在1到100之间");
+        }
+        if (!"asc".equalsIgnoreCase(direction) && !"desc".equalsIgnoreCase(direction)) {
+            return ResponseEntity.badRequest().body("排序方向只能是 asc 或 desc");
+        }
+        try {
+            ProductPageDto page = productService.findPage(ProductSort.fromProperty(sort),
+                    "asc".equalsIgnoreCase(direction), minPrice, maxPrice, categoryId, inStock, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<ProductDto> getProductById(@PathVariable Long id) {
-        return productService.findById(id)
-                .map(ProductDto::fromEntity)
+        return productCatalogCache.findById(id)
+                .filter(product -> Boolean.TRUE.equals(product.getStatus()))
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -52,19 +83,27 @@ public class ProductController {
 
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<List<ProductDto>> getProductsByCategory(@PathVariable Long categoryId) {
-        List<Product> products = productService.findByCategoryId(categoryId);
-        List<ProductDto> productDtos = products.stream()
-                .map(ProductDto::fromEntity)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(productDtos);
+        return ResponseEntity.ok(productCatalogCache.findByCategoryId(categoryId));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<ProductDto>> searchProducts(@RequestParam String keyword) {
-        List<Product> products = productService.searchProducts(keyword);
-        List<ProductDto> productDtos = products.stream()
-                .map(ProductDto::fromEntity)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> searchProducts(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size <= 0 || size > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(productService.searchProducts(keyword, page, size));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0 || limit > SuggestionService.MAX_SUGGESTIONS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(suggestionService.suggest(prefix, limit));
     }
-}
\ No newline at end of file
+}
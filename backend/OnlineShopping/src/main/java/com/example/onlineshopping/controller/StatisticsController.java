@@ -1,12 +1,15 @@
 package com.example.onlineshopping.controller;
 
-import com.example.onlineshopping.repository.*;
+import com.example.onlineshopping.repository.ProductRepository;
+import com.example.onlineshopping.service.CategoryTree;
+import com.example.onlineshopping.service.SalesAnalyticsService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -15,76 +18,49 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class StatisticsController {
 
-    private final OrderRepository orderRepository;
+    private final SalesAnalyticsService salesAnalyticsService;
     private final ProductRepository productRepository;
-    private final UserRepository userRepository;
-    private final CategoryRepository categoryRepository;
+    private final CategoryTree categoryTree;
 
     /**
      * 获取最近30天的销售趋势数据
      */
     @GetMapping("/sales-trend")
     public ResponseEntity<?> getSalesTrend() {
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        
-        // 获取最近30天的订单
-        var orders = orderRepository.findAll().stream()
-                .filter(order -> order.getCreateTime() != null && order.getCreateTime().isAfter(thirtyDaysAgo))
-                .collect(Collectors.toList());
-        
-        // 按日期分组统计
-        Map<LocalDate, Double> salesByDate = new TreeMap<>();
-        for (int i = 0; i < 30; i++) {
-            LocalDate date = LocalDate.now().minusDays(29 - i);
-            salesByDate.put(date, 0.0);
-        }
-        
-        orders.forEach(order -> {
-            LocalDate date = order.getCreateTime().toLocalDate();
-            if (salesByDate.containsKey(date)) {
-                salesByDate.put(date, salesByDate.get(date) + order.getTotalAmount().doubleValue());
-            }
-        });
-        
+        LocalDate firstDay = LocalDate.now().minusDays(29);
+        Map<String, SalesAnalyticsService.Rollup> rollups =
+                salesAnalyticsService.rollups(SalesAnalyticsService.DAILY_SALES, firstDay.toString());
+
+        // 没有订单的日期补0
         List<String> dates = new ArrayList<>();
         List<Double> amounts = new ArrayList<>();
-        salesByDate.forEach((date, amount) -> {
-            dates.add(date.toString());
-            amounts.add(amount);
-        });
-        
+        for (int i = 0; i < 30; i++) {
+            String date = firstDay.plusDays(i).toString();
+            SalesAnalyticsService.Rollup rollup = rollups.get(date);
+            dates.add(date);
+            amounts.add(rollup != null ? rollup.amount().doubleValue() : 0.0);
+        }
+
         Map<String, Object> result = new HashMap<>();
         result.put("dates", dates);
         result.put("amounts", amounts);
-        
+
         return ResponseEntity.ok(result);
     }
 
     /**
-     * 获取分类销售占比
+     * 获取分类销售占比（按订单项统计，不含已取消的订单）
      */
     @GetMapping("/category-sales")
     public ResponseEntity<?> getCategorySales() {
-        var products = productRepository.findAll();
-        var categories = categoryRepository.findAll();
-        
         Map<String, Double> categorySales = new HashMap<>();
-        
-        // 初始化所有分类
-        categories.forEach(category -> {
-            categorySales.put(category.getName(), 0.0);
-        });
-        
-        // 统计每个分类的销售额（基于产品价格 * 库存变化作为简化）
-        products.forEach(product -> {
-            if (product.getCategory() != null) {
-                String categoryName = product.getCategory().getName();
-                // 这里简化处理，实际应该从订单项中统计
-                double sales = product.getPrice().doubleValue() * (100 - product.getStock());
-                categorySales.put(categoryName, categorySales.getOrDefault(categoryName, 0.0) + sales);
+        salesAnalyticsService.rollups(SalesAnalyticsService.CATEGORY_SALES, null).forEach((categoryId, rollup) -> {
+            String name = categoryTree.name(Long.valueOf(categoryId));
+            if (name != null) {
+                categorySales.merge(name, rollup.amount().doubleValue(), Double::sum);
             }
         });
-        
+
         List<Map<String, Object>> data = new ArrayList<>();
         categorySales.forEach((name, value) -> {
             if (value > 0) {
@@ -94,7 +70,7 @@ public class StatisticsController {
                 data.add(item);
             }
         });
-        
+
         return ResponseEntity.ok(data);
     }
 
@@ -103,37 +79,28 @@ public class StatisticsController {
      */
     @GetMapping("/user-growth")
     public ResponseEntity<?> getUserGrowth() {
-        var users = userRepository.findAll();
-        
-        // 按月统计用户注册数
-        Map<String, Long> usersByMonth = new TreeMap<>();
-        
-        users.forEach(user -> {
-            if (user.getCreateTime() != null) {
-                String month = user.getCreateTime().getYear() + "-" + 
-                              String.format("%02d", user.getCreateTime().getMonthValue());
-                usersByMonth.put(month, usersByMonth.getOrDefault(month, 0L) + 1);
-            }
-        });
-        
-        // 计算累计用户数
+        // 按月统计用户注册数，计算累计用户数
         List<String> months = new ArrayList<>();
         List<Long> newUsers = new ArrayList<>();
         List<Long> totalUsers = new ArrayList<>();
-        
+
         long cumulative = 0;
-        for (Map.Entry<String, Long> entry : usersByMonth.entrySet()) {
+        for (Map.Entry<String, SalesAnalyticsService.Rollup> entry
+                : salesAnalyticsService.rollups(SalesAnalyticsService.MONTHLY_USERS, null).entrySet()) {
+            if (entry.getValue().count() <= 0) {
+                continue;
+            }
             months.add(entry.getKey());
-            newUsers.add(entry.getValue());
-            cumulative += entry.getValue();
+            newUsers.add(entry.getValue().count());
+            cumulative += entry.getValue().count();
             totalUsers.add(cumulative);
         }
-        
+
         Map<String, Object> result = new HashMap<>();
         result.put("months", months);
         result.put("newUsers", newUsers);
         result.put("totalUsers", totalUsers);
-        
+
         return ResponseEntity.ok(result);
     }
 
@@ -142,20 +109,16 @@ public class StatisticsController {
      */
     @GetMapping("/top-products")
     public ResponseEntity<?> getTopProducts() {
-        var products = productRepository.findAll();
-        
-        // 根据销量（库存减少量）排序，这里简化处理
-        List<Map<String, Object>> topProducts = products.stream()
-                .sorted((p1, p2) -> Integer.compare(p2.getSales(), p1.getSales()))
-                .limit(10)
-                .map(product -> {
+        // 销量在下单时累加到商品上，直接按销量索引取前10
+        List<Map<String, Object>> topProducts = productRepository.findTopSelling(PageRequest.of(0, 10)).stream()
+                .map(row -> {
                     Map<String, Object> item = new HashMap<>();
-                    item.put("name", product.getName());
-                    item.put("sales", product.getSales());
+                    item.put("name", row[0]);
+                    item.put("sales", row[1]);
                     return item;
                 })
                 .collect(Collectors.toList());
-        
+
         return ResponseEntity.ok(topProducts);
     }
 
@@ -164,25 +127,29 @@ public class StatisticsController {
      */
     @GetMapping("/order-status")
     public ResponseEntity<?> getOrderStatus() {
-        var orders = orderRepository.findAll();
-        
-        Map<String, Long> statusCount = orders.stream()
-                .collect(Collectors.groupingBy(
-                    order -> order.getStatus().toString(),
-                    Collectors.counting()
-                ));
-        
         List<Map<String, Object>> data = new ArrayList<>();
-        statusCount.forEach((status, count) -> {
-            Map<String, Object> item = new HashMap<>();
-            item.put("name", getStatusName(status));
-            item.put("value", count);
-            data.add(item);
+        salesAnalyticsService.rollups(SalesAnalyticsService.ORDER_STATUS, null).forEach((status, rollup) -> {
+            if (rollup.count() > 0) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("name", getStatusName(status));
+                item.put("value", rollup.count());
+                data.add(item);
+            }
         });
-        
+
         return ResponseEntity.ok(data);
     }
-    
+
+    /**
+     * 从业务表全量重建统计汇总表（管理员人工校正用）
+     */
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Void> rebuild() {
+        salesAnalyticsService.rebuild();
+        return ResponseEntity.ok().build();
+    }
+
     private String getStatusName(String status) {
         switch (status) {
             case "PENDING": return "待处理";
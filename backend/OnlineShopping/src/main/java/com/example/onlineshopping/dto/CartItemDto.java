@@ -4,6 +4,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public class CartItemDto {
+    /**
+     * 购物车行标识：每个商品在购物车中只占一行，取商品ID
+     */
     private Long id;
     private Long productId;
     private String productName;
@@ -0,0 +1,60 @@
+package com.example.onlineshopping.dto;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 上传图片的缩放版本地址
+ *
+ * 上传的原图以内容的 SHA-256 命名（/uploads/blobs/ab/cd/{hash}.png），各版本在同一目录下命名为
+ * {hash}-thumb.jpg、{hash}-list.jpg、{hash}-detail.jpg，地址可以直接由原图地址推出，不需要额外存储。
+ * 外部图片地址和旧的随机文件名没有缩放版本。
+ */
+public record ImageVariants(String thumb, String list, String detail) {
+
+    /**
+     * 版本名和最长边（像素），按从小到大排列
+     */
+    public static final Map<String, Integer> SIZES;
+
+    static {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        sizes.put("thumb", 160);
+        sizes.put("list", 480);
+        sizes.put("detail", 1200);
+        SIZES = Collections.unmodifiableMap(sizes);
+    }
+
+    public static final String FORMAT = "jpg";
+
+    private static final String UPLOADS_PREFIX = "/uploads/";
+    private static final Pattern CONTENT_ADDRESSED =
+            Pattern.compile("^(/uploads/(?:blobs/[0-9a-f]{2}/[0-9a-f]{2}/|[a-z]+/))([0-9a-f]{64})\\.[a-z0-9]{1,5}$");
+
+    /**
+     * 由原图地址推出各版本地址，不是本站按内容命名的上传图片时返回 null
+     */
+    public static ImageVariants of(String url) {
+        if (url == null || !url.startsWith(UPLOADS_PREFIX)) {
+            return null;
+        }
+        Matcher matcher = CONTENT_ADDRESSED.matcher(url);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String directory = matcher.group(1);
+        String hash = matcher.group(2);
+        return new ImageVariants(directory + variantName(hash, "thumb"), directory + variantName(hash, "list"),
+                directory + variantName(hash, "detail"));
+    }
+
+    /**
+     * 某个版本的文件名，如 {hash}-thumb.jpg
+     */
+    public static String variantName(String hash, String variant) {
+        return hash + "-" + variant + "." + FORMAT;
+    }
+}
@@ -5,17 +5,21 @@ import java.math.BigDecimal;
 
 public class ProductDto {
     private Long id;
+    private String sku;
     private String name;
     private String description;
     private BigDecimal price;
     private Integer stock;
     private String imageUrl;
+    private ImageVariants imageVariants;
     private Long categoryId;
     private String categoryName;
     private Boolean status;
 
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
+    public String getSku() { return sku; }
+    public void setSku(String sku) { this.sku = sku; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
     public String getDescription() { return description; }
@@ -26,6 +30,8 @@ public class ProductDto {
     public void setStock(Integer stock) { this.stock = stock; }
     public String getImageUrl() { return imageUrl; }
     public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+    public ImageVariants getImageVariants() { return imageVariants; }
+    public void setImageVariants(ImageVariants imageVariants) { this.imageVariants = imageVariants; }
     public Long getCategoryId() { return categoryId; }
     public void setCategoryId(Long categoryId) { this.categoryId = categoryId; }
     public String getCategoryName() { return categoryName; }
@@ -36,11 +42,13 @@ public class ProductDto {
     public static ProductDto fromEntity(Product product) {
         ProductDto dto = new ProductDto();
         dto.setId(product.getId());
+        dto.setSku(product.getSku());
         dto.setName(product.getName());
         dto.setDescription(product.getDescription());
         dto.setPrice(product.getPrice());
         dto.setStock(product.getStock());
         dto.setImageUrl(product.getImageUrl());
+        dto.setImageVariants(ImageVariants.of(product.getImageUrl()));
         if (product.getCategory() != null) {
             dto.setCategoryId(product.getCategory().getId());
             dto.setCategoryName(product.getCategory().getName());
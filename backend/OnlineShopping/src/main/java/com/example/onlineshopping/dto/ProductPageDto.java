@@ -0,0 +1,16 @@
+package com.example.onlineshopping.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductPageDto {
+    private List<ProductDto> items;
+    // 下一页游标，没有下一页时为 null
+    private String nextCursor;
+    // 第一页查询时统计的符合条件的商品数，翻页期间不再重新统计
+    private Long totalEstimate;
+}
@@ -0,0 +1,13 @@
+package com.example.onlineshopping.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SuggestionDto {
+    private String type;   // product / category
+    private Long id;
+    private String text;
+    private Long weight;   // 商品销量，分类为其下商品销量之和
+}
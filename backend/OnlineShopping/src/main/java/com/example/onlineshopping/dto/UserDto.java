@@ -11,6 +11,7 @@ public class UserDto {
     private String phone;
     private String address;
     private String avatarUrl;
+    private ImageVariants avatarVariants;
     private User.UserRole role;
     private LocalDateTime createTime;
 
@@ -26,6 +27,8 @@ public class UserDto {
     public void setAddress(String address) { this.address = address; }
     public String getAvatarUrl() { return avatarUrl; }
     public void setAvatarUrl(String avatarUrl) { this.avatarUrl = avatarUrl; }
+    public ImageVariants getAvatarVariants() { return avatarVariants; }
+    public void setAvatarVariants(ImageVariants avatarVariants) { this.avatarVariants = avatarVariants; }
     public User.UserRole getRole() { return role; }
     public void setRole(User.UserRole role) { this.role = role; }
     public LocalDateTime getCreateTime() { return createTime; }
@@ -39,6 +42,7 @@ public class UserDto {
         dto.setPhone(user.getPhone());
         dto.setAddress(user.getAddress());
         dto.setAvatarUrl(user.getAvatarUrl());
+        dto.setAvatarVariants(ImageVariants.of(user.getAvatarUrl()));
         dto.setRole(user.getRole());
         dto.setCreateTime(user.getCreateTime());
         return dto;
@@ -0,0 +1,40 @@
+package com.example.onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * 统计汇总表：每个指标按桶（日期、月份、订单状态、分类ID）累计的数量和金额
+ * 由 SalesAnalyticsService 通过 JDBC 增量累加，这里只用于建表
+ */
+@Entity
+@Table(name = "analytics_rollups")
+@IdClass(AnalyticsRollup.Key.class)
+@Data
+public class AnalyticsRollup {
+    @Id
+    @Column(length = 32)
+    private String metric;
+
+    @Id
+    @Column(length = 32)
+    private String bucket;
+
+    @Column(name = "item_count", nullable = false)
+    private Long itemCount = 0L;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String metric;
+        private String bucket;
+    }
+}
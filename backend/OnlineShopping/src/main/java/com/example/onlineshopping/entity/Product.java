@@ -6,13 +6,26 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        // 键集分页：按 (排序字段, id) 顺序扫描上架商品
+        @Index(name = "idx_products_status_price", columnList = "status, price, id"),
+        @Index(name = "idx_products_status_sales", columnList = "status, sales, id"),
+        @Index(name = "idx_products_status_create_time", columnList = "status, create_time, id"),
+        // 热销排行
+        @Index(name = "idx_products_sales", columnList = "sales")
+}, uniqueConstraints = {
+        // 商品编码，批量导入时按它匹配已有商品；可以为空
+        @UniqueConstraint(name = "uk_products_sku", columnNames = "sku")
+})
 @Data
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(length = 64)
+    private String sku;
+
     @Column(nullable = false)
     private String name;
 
@@ -33,6 +46,8 @@ public class Product {
     private Category category;
 
     private Boolean status = true;
+
+    @Column(name = "create_time")
     private LocalDateTime createTime;
 
     @PrePersist
@@ -48,6 +63,14 @@ public class Product {
         this.id = id;
     }
 
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+
     public String getName() {
         return name;
     }
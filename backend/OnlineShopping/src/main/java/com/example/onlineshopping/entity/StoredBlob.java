@@ -0,0 +1,30 @@
+package com.example.onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 上传文件存储中的一个文件（按内容的 SHA-256 存一份）及其被商品图片、用户头像引用的次数
+ * 由 FileSystemBlobStore 通过 JDBC 读写，这里只用于建表
+ */
+@Entity
+@Table(name = "blobs")
+@Data
+public class StoredBlob {
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(name = "file_name", nullable = false, length = 80)
+    private String fileName;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+
+    @Column(name = "create_time")
+    private LocalDateTime createTime;
+}
@@ -32,6 +32,10 @@ public class User {
     @Column(nullable = false)
     private UserRole role = UserRole.ROLE_USER;  // 默认普通用户
 
+    // 令牌版本，递增后之前签发的令牌全部失效
+    @Column(name = "token_version", columnDefinition = "int default 0")
+    private Integer tokenVersion = 0;
+
     @Column(name = "create_time")
     private LocalDateTime createTime;
 
@@ -118,4 +122,12 @@ public class User {
     public void setAvatarUrl(String avatarUrl) {
         this.avatarUrl = avatarUrl;
     }
-}
\ No newline at end of file
+
+    public Integer getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(Integer tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.onlineshopping.repository;
 
 import com.example.onlineshopping.entity.CartItem;
+import com.example.onlineshopping.service.CartLine;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -14,6 +15,10 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     List<CartItem> findByUserId(Long userId);
     Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
 
+    @Query("SELECT new com.example.onlineshopping.service.CartLine(c.product.id, c.quantity, c.createTime, c.updateTime) " +
+           "FROM CartItem c WHERE c.user.id = :userId ORDER BY c.id")
+    List<CartLine> findLinesByUserId(@Param("userId") Long userId);
+
     @Modifying
     @Query("DELETE FROM CartItem c WHERE c.user.id = :userId")
     void deleteByUserId(@Param("userId") Long userId);
@@ -2,6 +2,7 @@ package com.example.onlineshopping.repository;
 
 import com.example.onlineshopping.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -12,4 +13,8 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     List<Category> findByParentIsNullAndStatusTrue();
     List<Category> findByParentIdAndStatusTrue(Long parentId);
     Optional<Category> findByName(String name);
+
+    // 分类树用：所有分类（包括禁用的）的 [id, parentId, name, status]
+    @Query("SELECT c.id, c.parent.id, c.name, c.status FROM Category c")
+    List<Object[]> findTreeRows();
 }
\ No newline at end of file
@@ -1,21 +1,45 @@
 package com.example.onlineshopping.repository;
 
 import com.example.onlineshopping.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductSeekRepository {
     List<Product> findByStatusTrue();
     List<Product> findByCategoryIdAndStatusTrue(Long categoryId);
 
-    @Query("SELECT p FROM Product p WHERE p.status = true AND " +
-            "(LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')))")
-    List<Product> searchProducts(@Param("keyword") String keyword);
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category")
+    List<Product> findAllWithCategory();
 
     List<Product> findByCategoryIdInAndStatusTrue(List<Long> categoryIds);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id FROM Product p WHERE p.status = true ORDER BY p.id")
+    List<Long> findActiveIds();
+
+    @Query("SELECT p.id FROM Product p WHERE p.status = true AND p.category.id = :categoryId ORDER BY p.id")
+    List<Long> findActiveIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+    // 搜索建议用：上架商品的 [id, name, sales]
+    @Query("SELECT p.id, p.name, COALESCE(p.sales, 0) FROM Product p WHERE p.status = true")
+    List<Object[]> findActiveNamesAndSales();
+
+    // 搜索建议用：每个分类下上架商品的 [categoryId, 销量之和]
+    @Query("SELECT p.category.id, SUM(COALESCE(p.sales, 0)) FROM Product p WHERE p.status = true AND p.category IS NOT NULL GROUP BY p.category.id")
+    List<Object[]> sumSalesByCategory();
+
+    // 热销商品：[name, sales]，按 idx_products_sales 倒序读取前几条
+    @Query("SELECT p.name, COALESCE(p.sales, 0) FROM Product p WHERE p.sales IS NOT NULL ORDER BY p.sales DESC")
+    List<Object[]> findTopSelling(Pageable pageable);
+
+    @Query("SELECT p.stock FROM Product p WHERE p.id = :id")
+    Integer findStockById(@Param("id") Long id);
 }
\ No newline at end of file
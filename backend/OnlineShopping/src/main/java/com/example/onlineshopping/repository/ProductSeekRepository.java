@@ -0,0 +1,23 @@
+package com.example.onlineshopping.repository;
+
+import com.example.onlineshopping.service.ProductFilter;
+import com.example.onlineshopping.service.ProductSort;
+
+import java.util.List;
+
+/**
+ * 商品列表的键集（seek）分页查询，条件是动态组合的，用 Criteria API 实现
+ */
+public interface ProductSeekRepository {
+
+    /**
+     * 查询排在 (afterKey, afterId) 之后的上架商品，返回 [id, 排序值]；afterKey 为 null 时从头开始
+     */
+    List<Object[]> seekActive(ProductFilter filter, ProductSort sort, boolean ascending,
+                              Comparable<?> afterKey, Long afterId, int limit);
+
+    /**
+     * 统计符合条件、可以按 sort 分页的上架商品数（与 seekActive 的条件相同）
+     */
+    long countActive(ProductFilter filter, ProductSort sort);
+}
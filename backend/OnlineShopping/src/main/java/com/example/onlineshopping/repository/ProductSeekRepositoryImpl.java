@@ -0,0 +1,82 @@
+package com.example.onlineshopping.repository;
+
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.service.ProductFilter;
+import com.example.onlineshopping.service.ProductSort;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductSeekRepositoryImpl implements ProductSeekRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Object[]> seekActive(ProductFilter filter, ProductSort sort, boolean ascending,
+                                     Comparable<?> afterKey, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Product> product = query.from(Product.class);
+        Path<Comparable> key = product.get(sort.getProperty());
+        Path<Long> id = product.get("id");
+
+        List<Predicate> predicates = filters(cb, product, filter, sort);
+        if (afterKey != null) {
+            Comparable value = afterKey;
+            // (key, id) > (value, afterId)，展开成 OR 以便按 (status, key, id) 索引范围扫描
+            predicates.add(ascending
+                    ? cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(id, afterId)))
+                    : cb.or(cb.lessThan(key, value), cb.and(cb.equal(key, value), cb.lessThan(id, afterId))));
+        }
+
+        query.multiselect(id, key)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(ascending
+                        ? List.of(cb.asc(key), cb.asc(id))
+                        : List.of(cb.desc(key), cb.desc(id)));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countActive(ProductFilter filter, ProductSort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(cb.count(product)).where(filters(cb, product, filter, sort).toArray(new Predicate[0]));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    /**
+     * 列表和计数共用的条件，保证总数与能翻到的商品一致
+     */
+    private static List<Predicate> filters(CriteriaBuilder cb, Root<Product> product, ProductFilter filter, ProductSort sort) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(product.get("status")));
+        // 排序值为空的商品无法定位，不参与分页列表（sales、create_time 在表结构中都有默认值）
+        predicates.add(cb.isNotNull(product.get(sort.getProperty())));
+        Path<BigDecimal> price = product.get("price");
+        if (filter.minPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(price, filter.minPrice()));
+        }
+        if (filter.maxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(price, filter.maxPrice()));
+        }
+        if (filter.categoryIds() != null) {
+            predicates.add(product.get("category").get("id").in(filter.categoryIds()));
+        }
+        if (filter.inStock()) {
+            predicates.add(cb.greaterThan(product.<Integer>get("stock"), 0));
+        }
+        return predicates;
+    }
+}
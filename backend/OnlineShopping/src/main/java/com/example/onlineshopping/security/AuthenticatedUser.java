@@ -0,0 +1,79 @@
+package com.example.onlineshopping.security;
+
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 已认证用户
+ *
+ * 除用户名和权限外还带有用户ID，由JWT过滤器根据令牌声明构造，
+ * 控制器通过 {@link CurrentUserId} 直接取得用户ID，不必再按用户名查询用户。
+ */
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+
+    private final Long userId;
+    private final String username;
+    private String password;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(Long userId, String username, String password,
+                             Collection<? extends GrantedAuthority> authorities) {
+        this.userId = userId;
+        this.username = username;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedUser[userId=" + userId + ", username=" + username + ", authorities=" + authorities + "]";
+    }
+}
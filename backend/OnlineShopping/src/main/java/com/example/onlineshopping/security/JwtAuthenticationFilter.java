@@ -1,16 +1,19 @@
 package com.example.onlineshopping.security;
 
 import com.example.onlineshopping.service.UserService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -19,30 +22,50 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final TokenVersionCache tokenVersionCache;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final Timer noneTimer;
+    private final Timer rejectedTimer;
+    private final Timer authenticatedTimer;
+
+    public JwtAuthenticationFilter(UserService userService, TokenVersionCache tokenVersionCache,
+                                   VerifiedTokenCache verifiedTokenCache, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.tokenVersionCache = tokenVersionCache;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.noneTimer = filterTimer(meterRegistry, "none");
+        this.rejectedTimer = filterTimer(meterRegistry, "rejected");
+        this.authenticatedTimer = filterTimer(meterRegistry, "authenticated");
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
+        long start = System.nanoTime();
+        // noneTimer：没有令牌；rejectedTimer：令牌无效或已失效；authenticatedTimer：认证成功
+        Timer outcome = noneTimer;
         try {
             String authHeader = request.getHeader("Authorization");
-            String username = null;
-            String jwtToken = null;
+            Claims claims = null;
 
-            // 提取JWT令牌
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                jwtToken = authHeader.substring(7);
+            // 提取JWT令牌，已验证过的令牌直接取缓存的声明，否则一次完成签名和过期校验
+            if (authHeader != null && authHeader.startsWith("Bearer ")
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                String jwtToken = authHeader.substring(7);
+                outcome = rejectedTimer;
                 try {
-                    username = jwtUtil.extractUsername(jwtToken);
+                    claims = verifiedTokenCache.verify(jwtToken);
                 } catch (ExpiredJwtException e) {
                     log.warn("JWT令牌已过期: {}", e.getMessage());
                 } catch (MalformedJwtException e) {
@@ -54,21 +77,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
             }
 
-            // 验证令牌并设置认证信息
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // 设置认证信息
+            if (claims != null && claims.getSubject() != null) {
                 try {
-                    UserDetails userDetails = userService.loadUserByUsername(username);
-
-                    if (jwtUtil.validateToken(jwtToken, userDetails)) {
+                    UserDetails userDetails = toUserDetails(claims);
+                    if (userDetails != null) {
                         UsernamePasswordAuthenticationToken authToken =
                                 new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                         authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         SecurityContextHolder.getContext().setAuthentication(authToken);
+                        outcome = authenticatedTimer;
 
-                        log.debug("用户 {} 认证成功，权限: {}", username, userDetails.getAuthorities());
+                        log.debug("用户 {} 认证成功，权限: {}", userDetails.getUsername(), userDetails.getAuthorities());
                     }
                 } catch (UsernameNotFoundException e) {
-                    log.warn("用户不存在: {}", username);
+                    log.warn("用户不存在: {}", claims.getSubject());
                 } catch (Exception e) {
                     log.error("用户认证失败: {}", e.getMessage());
                 }
@@ -77,6 +100,37 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             log.error("JWT过滤器处理异常: {}", e.getMessage());
         }
 
+        outcome.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private static Timer filterTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("security.jwt.filter")
+                .description("JWT 过滤器耗时（不含后续处理）")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 用令牌中的声明构造已认证用户，只在令牌版本缓存未命中时查询数据库；
+     * 旧版令牌没有用户ID，回退到按用户名查询用户
+     */
+    private UserDetails toUserDetails(Claims claims) {
+        String username = claims.getSubject();
+        Number userId = claims.get(JwtUtil.CLAIM_USER_ID, Number.class);
+        if (userId == null) {
+            return userService.loadUserByUsername(username);
+        }
+
+        Number version = claims.get(JwtUtil.CLAIM_TOKEN_VERSION, Number.class);
+        if (!tokenVersionCache.isCurrent(userId.longValue(), version != null ? version.intValue() : 0)) {
+            log.warn("用户 {} 的令牌已失效（用户已删除或密码、角色已修改）", username);
+            return null;
+        }
+
+        List<?> roles = claims.get(JwtUtil.CLAIM_ROLES, List.class);
+        return new AuthenticatedUser(userId.longValue(), username, null, roles == null ? List.of() : roles.stream()
+                .map(role -> new SimpleGrantedAuthority(role.toString()))
+                .collect(Collectors.toList()));
+    }
+}
@@ -1,37 +1,65 @@
 package com.example.onlineshopping.security;
 
+import com.example.onlineshopping.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class JwtUtil {
 
+    /**
+     * 用户ID、角色和令牌版本，过滤器直接用这些声明构造认证信息，不再查询用户表
+     */
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
     @Value("${jwt.secret:defaultSecretKeyForDevelopmentOnlyChangeInProductionWithMinimumLength32}")
     private String secret;
 
     @Value("${jwt.expiration:86400000}")
     private Long expiration;
 
-    private SecretKey getSigningKey() {
+    // 密钥和解析器都是线程安全的，启动时创建一次
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
         // 确保密钥长度足够
         String secretKey = secret;
         if (secretKey == null || secretKey.length() < 32) {
             log.warn("JWT密钥长度不足，使用默认开发密钥");
             secretKey = "defaultSecretKeyForDevelopmentOnlyChangeInProductionWithMinimumLength32";
         }
-        return Keys.hmacShaKeyFor(secretKey.getBytes());
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
+    /**
+     * 解析并校验令牌（签名和过期时间），只解析一次；令牌无效时抛出 JwtException
+     */
+    public Claims parseToken(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String extractUsername(String token) {
@@ -43,31 +71,30 @@ public class JwtUtil {
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseToken(token);
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        try {
-            return extractExpiration(token).before(new Date());
-        } catch (Exception e) {
-            log.error("令牌过期检查失败: {}", e.getMessage());
-            return true;
-        }
+    /**
+     * 为用户签发令牌，携带用户ID、角色和令牌版本
+     */
+    public String generateToken(User user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_ROLES, List.of(user.getRole().name()));
+        claims.put(CLAIM_TOKEN_VERSION, user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+        return createToken(claims, user.getUsername());
     }
 
+    /**
+     * 只有用户名和角色的令牌（不带用户ID，过滤器会回退到查询用户表）
+     */
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         // 添加用户角色信息
-        claims.put("roles", userDetails.getAuthorities());
+        claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList()));
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -77,14 +104,15 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
+            // 解析时已经校验了签名和过期时间
             final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+            return username.equals(userDetails.getUsername());
         } catch (Exception e) {
             log.error("令牌验证失败: {}", e.getMessage());
             return false;
@@ -99,4 +127,4 @@ public class JwtUtil {
     public Long getExpiration() {
         return expiration;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.example.onlineshopping.security;
+
+import com.example.onlineshopping.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 用户令牌版本缓存
+ *
+ * 用户被删除、修改角色或密码时令牌版本递增，之前签发的令牌随即失效。
+ * 过滤器只在缓存未命中时查询一次版本号，其余请求不访问数据库；
+ * 本实例上的修改会立即失效缓存，其他实例最多延迟一个过期时间。
+ */
+@Component
+public class TokenVersionCache implements MeterBinder {
+
+    /**
+     * 用户不存在时缓存的版本号，任何令牌都不匹配
+     */
+    private static final int MISSING_USER = -1;
+
+    private final LoadingCache<Long, Integer> versions;
+
+    public TokenVersionCache(UserRepository userRepository,
+                             @Value("${jwt.version-cache.maximum-size:100000}") long maximumSize,
+                             @Value("${jwt.version-cache.expire-after-write:60s}") Duration expireAfterWrite) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(userId -> userRepository.findTokenVersionById(userId).orElse(MISSING_USER));
+    }
+
+    /**
+     * 命中率等缓存指标（cache=jwt.versions）
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, versions, "jwt.versions");
+    }
+
+    /**
+     * 令牌中的版本是否仍是用户当前的版本
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return versions.get(userId) == tokenVersion;
+    }
+
+    /**
+     * 用户令牌版本变化或用户被删除后调用
+     */
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            versions.invalidate(userId);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.onlineshopping.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已验证令牌缓存
+ *
+ * 同一个令牌会被客户端重复使用成千上万次，验证过一次后按令牌的 SHA-256 摘要缓存解析结果，
+ * 之后的请求只需计算一次摘要，不再做 HMAC 校验和 JSON 解析。
+ * 每个条目恰好在令牌的 exp 时刻过期，缓存满时按 LRU 近似（W-TinyLFU）淘汰。
+ * 缓存的声明对象是共享的，调用方只读。
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    private final JwtUtil jwtUtil;
+    private final Cache<String, Claims> tokens;
+
+    private final Timer verificationTimer;
+
+    public VerifiedTokenCache(JwtUtil jwtUtil, MeterRegistry meterRegistry,
+                              @Value("${jwt.token-cache.maximum-size:50000}") long maximumSize) {
+        this.jwtUtil = jwtUtil;
+        this.verificationTimer = Timer.builder("security.jwt.verify")
+                .description("缓存未命中时完整校验令牌的耗时")
+                .register(meterRegistry);
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        if (claims.getExpiration() == null) {
+                            return 0;
+                        }
+                        long millis = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 命中率等缓存指标（cache.gets 等，cache=jwt.tokens）
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, tokens, "jwt.tokens");
+    }
+
+    /**
+     * 返回令牌的声明，未缓存时做完整校验；令牌无效时抛出 JwtException（不缓存失败结果）
+     */
+    public Claims verify(String token) {
+        String key = digest(token);
+        Claims claims = tokens.getIfPresent(key);
+        if (claims != null) {
+            return claims;
+        }
+
+        long start = System.nanoTime();
+        claims = jwtUtil.parseToken(token);
+        verificationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        tokens.put(key, claims);
+        return claims;
+    }
+
+    /**
+     * 命中率、条目数和完整校验耗时（校验耗时取自指标 security.jwt.verify）
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = tokens.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", tokens.estimatedSize());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("verificationCount", verificationTimer.count());
+        map.put("verificationAvgMicros", verificationTimer.mean(TimeUnit.MICROSECONDS));
+        map.put("verificationMaxMicros", verificationTimer.max(TimeUnit.MICROSECONDS));
+        return map;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
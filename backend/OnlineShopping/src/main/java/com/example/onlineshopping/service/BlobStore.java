@@ -0,0 +1,76 @@
+package com.example.onlineshopping.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 按内容寻址的上传文件存储
+ *
+ * 文件以内容的 SHA-256 为键，相同内容只保存一份。写入分两步：先 stage() 写入临时文件并计算摘要，
+ * 调用方检查内容（如识别图片格式）后再 commit() 放到最终位置。
+ * 业务数据引用或不再引用某个文件地址时调用 retain() / release()，
+ * 没有引用且超过保留期的文件由 collectGarbage() 清理。
+ */
+public interface BlobStore {
+
+    /**
+     * 把内容写入临时文件并计算摘要；调用方用完后必须 close()（已 commit 的不受影响）
+     */
+    StagedBlob stage(InputStream content) throws IOException;
+
+    /**
+     * 接管一个已经写完、摘要已知的文件（如分片上传拼好的文件），移动到临时位置而不复制内容；
+     * 文件必须与存储在同一文件系统，摘要由调用方保证正确
+     */
+    StagedBlob adopt(Path file, String hash, long size) throws IOException;
+
+    /**
+     * 把临时文件放到最终位置，文件名为 {hash}.{extension}，返回访问地址；内容已存在时不重复保存
+     */
+    String commit(StagedBlob blob, String extension) throws IOException;
+
+    /**
+     * 文件名（{hash}.{扩展名}，或同一摘要派生的 {hash}-xxx.jpg）对应的存储路径
+     */
+    Path resolve(String fileName);
+
+    /**
+     * 访问地址引用次数加一，不是本存储的地址时忽略
+     */
+    void retain(String url);
+
+    /**
+     * 访问地址引用次数减一，不是本存储的地址时忽略
+     */
+    void release(String url);
+
+    /**
+     * 按访问地址批量增减引用次数（批量导入等），减到 0 为止；不是本存储的地址时忽略
+     */
+    void adjustRefCounts(Map<String, Integer> deltas);
+
+    /**
+     * 标记-清除：按业务数据重新统计引用，删除没有引用且超过保留期的文件，返回清理结果
+     *
+     * @throws IllegalStateException 已有一次回收正在进行
+     */
+    Map<String, Object> collectGarbage() throws IOException;
+
+    /**
+     * 文件数、占用空间等统计
+     */
+    Map<String, Object> stats();
+
+    /**
+     * 已写入临时文件、尚未提交的内容
+     */
+    record StagedBlob(Path file, String hash, long size) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.repository.CartItemRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * 基于 Caffeine 的进程内购物车存储
+ *
+ * 每个用户的购物车是一个不可变快照，修改时整体替换；修改过的快照放入待落库队列，
+ * 由定时任务批量写回 cart_items 表（write-behind）。待落库的快照即使被缓存淘汰也不会丢失。
+ */
+@Slf4j
+@Component
+public class CaffeineCartStore implements CartStore {
+
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE user_id = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO cart_items (user_id, product_id, quantity, create_time, update_time) VALUES (?, ?, ?, ?, ?)";
+
+    private final CartItemRepository cartItemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Cache<Long, Map<Long, CartLine>> carts;
+
+    /**
+     * 尚未写入数据库的购物车快照（用户ID -> 快照）
+     */
+    private final Map<Long, Map<Long, CartLine>> pending = new ConcurrentHashMap<>();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Counter droppedCarts;
+
+    public CaffeineCartStore(CartItemRepository cartItemRepository,
+                             JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${cart.store.maximum-size:100000}") long maximumSize,
+                             @Value("${cart.store.expire-after-access:30m}") Duration expireAfterAccess) {
+        this.cartItemRepository = cartItemRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+        this.droppedCarts = Counter.builder("cart.store.dropped")
+                .description("因违反约束无法写入数据库而丢弃的购物车修改数")
+                .register(meterRegistry);
+        Gauge.builder("cart.store.pending", pending, Map::size)
+                .description("尚未写入数据库的购物车数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<CartLine> getLines(Long userId) {
+        return new ArrayList<>(snapshot(userId).values());
+    }
+
+    @Override
+    public Optional<CartLine> getLine(Long userId, Long productId) {
+        return Optional.ofNullable(snapshot(userId).get(productId));
+    }
+
+    @Override
+    public void putLine(Long userId, CartLine line) {
+        update(userId, lines -> {
+            Map<Long, CartLine> next = new LinkedHashMap<>(lines);
+            next.put(line.productId(), line);
+            return next;
+        });
+    }
+
+    @Override
+    public void removeLine(Long userId, Long productId) {
+        update(userId, lines -> {
+            Map<Long, CartLine> next = new LinkedHashMap<>(lines);
+            next.remove(productId);
+            return next;
+        });
+    }
+
+    @Override
+    public void clear(Long userId) {
+        update(userId, lines -> new LinkedHashMap<>());
+    }
+
+    /**
+     * 定时把待落库的购物车批量写回数据库：先按用户删除旧行，再批量插入新行
+     *
+     * 整批在一个事务中写入；失败时改为每个用户一个事务逐个重试。某个用户的数据违反约束
+     * （例如商品或用户已被删除）时丢弃该用户尚未落库的修改，缓存中的快照一并失效，下次从数据库重新加载，
+     * 避免一行坏数据让之后每一轮都失败、待落库队列无限增长。其他错误（如数据库不可用）保留快照等下一轮。
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval:2000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<Long, Map<Long, CartLine>> batch = new HashMap<>(pending);
+            try {
+                write(batch);
+                // 只移除写入期间没有再被修改的快照，被修改的留到下一轮
+                batch.forEach(pending::remove);
+                log.debug("购物车写入数据库完成，用户数: {}", batch.size());
+            } catch (RuntimeException e) {
+                log.warn("购物车批量写入数据库失败，改为逐个用户写入: {}", e.getMessage());
+                flushEach(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushEach(Map<Long, Map<Long, CartLine>> batch) {
+        for (Map.Entry<Long, Map<Long, CartLine>> entry : batch.entrySet()) {
+            Long userId = entry.getKey();
+            Map<Long, CartLine> lines = entry.getValue();
+            try {
+                write(Map.of(userId, lines));
+                pending.remove(userId, lines);
+            } catch (DataIntegrityViolationException e) {
+                log.error("用户 {} 的购物车无法写入数据库，丢弃未落库的修改: {}", userId, e.getMessage());
+                if (pending.remove(userId, lines)) {
+                    carts.asMap().remove(userId, lines);
+                    droppedCarts.increment();
+                }
+            } catch (RuntimeException e) {
+                log.error("购物车写入数据库失败: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void write(Map<Long, Map<Long, CartLine>> batch) {
+        List<Object[]> deleteArgs = new ArrayList<>();
+        List<Object[]> insertArgs = new ArrayList<>();
+        batch.forEach((userId, lines) -> {
+            deleteArgs.add(new Object[]{userId});
+            lines.values().forEach(line -> insertArgs.add(new Object[]{
+                    userId, line.productId(), line.quantity(), line.createTime(), line.updateTime()}));
+        });
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(DELETE_SQL, deleteArgs);
+            jdbcTemplate.batchUpdate(INSERT_SQL, insertArgs);
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Map<Long, CartLine> snapshot(Long userId) {
+        return carts.get(userId, this::load);
+    }
+
+    private void update(Long userId, UnaryOperator<Map<Long, CartLine>> change) {
+        carts.asMap().compute(userId, (id, current) -> {
+            Map<Long, CartLine> next = Collections.unmodifiableMap(change.apply(current != null ? current : load(id)));
+            pending.put(id, next);
+            return next;
+        });
+    }
+
+    /**
+     * 缓存未命中时加载：优先使用尚未落库的快照，否则从数据库读取
+     */
+    private Map<Long, CartLine> load(Long userId) {
+        Map<Long, CartLine> unflushed = pending.get(userId);
+        if (unflushed != null) {
+            return unflushed;
+        }
+        Map<Long, CartLine> lines = new LinkedHashMap<>();
+        cartItemRepository.findLinesByUserId(userId).forEach(line -> lines.put(line.productId(), line));
+        return Collections.unmodifiableMap(lines);
+    }
+}
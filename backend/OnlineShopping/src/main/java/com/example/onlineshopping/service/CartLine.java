@@ -0,0 +1,13 @@
+package com.example.onlineshopping.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 购物车存储中的一行（只保存商品ID和数量，商品信息在读取时再补全）
+ */
+public record CartLine(Long productId, Integer quantity, LocalDateTime createTime, LocalDateTime updateTime) {
+
+    public CartLine withQuantity(Integer newQuantity) {
+        return new CartLine(productId, newQuantity, createTime, LocalDateTime.now());
+    }
+}
@@ -1,51 +1,53 @@
 package com.example.onlineshopping.service;
 
 import com.example.onlineshopping.dto.CartItemDto;
-import com.example.onlineshopping.entity.CartItem;
-import com.example.onlineshopping.entity.Product;
-import com.example.onlineshopping.entity.User;
-import com.example.onlineshopping.repository.CartItemRepository;
-import com.example.onlineshopping.repository.ProductRepository;
-import com.example.onlineshopping.repository.UserRepository;
+import com.example.onlineshopping.dto.ProductDto;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class CartService {
 
-    private final CartItemRepository cartItemRepository;
-    private final UserRepository userRepository;
-    private final ProductRepository productRepository;
+    private final CartStore cartStore;
+    private final ProductCatalogCache productCatalogCache;
 
-    public CartService(CartItemRepository cartItemRepository, UserRepository userRepository, ProductRepository productRepository) {
-        this.cartItemRepository = cartItemRepository;
-        this.userRepository = userRepository;
-        this.productRepository = productRepository;
+    public CartService(CartStore cartStore, ProductCatalogCache productCatalogCache) {
+        this.cartStore = cartStore;
+        this.productCatalogCache = productCatalogCache;
     }
 
     /**
      * 获取用户的购物车商品列表
      */
     public List<CartItemDto> getCartItems(Long userId) {
-        List<CartItem> cartItems = cartItemRepository.findByUserId(userId);
-        return cartItems.stream().map(this::convertToDto).collect(Collectors.toList());
+        List<CartLine> lines = cartStore.getLines(userId);
+        Map<Long, ProductDto> products = loadProducts(lines);
+        return lines.stream()
+                .filter(line -> products.containsKey(line.productId()))
+                .map(line -> convertToDto(line, products.get(line.productId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取用户购物车的原始行（下单时使用）
+     */
+    public List<CartLine> getCartLines(Long userId) {
+        return cartStore.getLines(userId);
     }
 
     /**
      * 添加商品到购物车
      */
-    @Transactional
-    public CartItem addToCart(Long userId, Long productId, Integer quantity) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-        Product product = productRepository.findById(productId)
+    public CartItemDto addToCart(Long userId, Long productId, Integer quantity) {
+        ProductDto product = productCatalogCache.findById(productId)
                 .orElseThrow(() -> new RuntimeException("商品不存在"));
 
-        // 检查库存
+        // 检查库存（以缓存中的库存为准，下单时再以数据库为准）
         if (product.getStock() < quantity) {
             throw new RuntimeException("库存不足，当前库存: " + product.getStock());
         }
@@ -56,85 +58,75 @@ public class CartService {
         }
 
         // 检查是否已在购物车
-        return cartItemRepository.findByUserIdAndProductId(userId, productId)
-                .map(cartItem -> {
+        CartLine line = cartStore.getLine(userId, productId)
+                .map(existing -> {
                     // 检查更新后的数量是否超过库存
-                    int newQuantity = cartItem.getQuantity() + quantity;
+                    int newQuantity = existing.quantity() + quantity;
                     if (product.getStock() < newQuantity) {
-                        throw new RuntimeException("库存不足，当前库存: " + product.getStock() + "，购物车已有: " + cartItem.getQuantity());
+                        throw new RuntimeException("库存不足，当前库存: " + product.getStock() + "，购物车已有: " + existing.quantity());
                     }
-
-                    // 更新数量
-                    cartItem.setQuantity(newQuantity);
-                    cartItem.setUpdateTime(LocalDateTime.now());
-                    return cartItemRepository.save(cartItem);
+                    return existing.withQuantity(newQuantity);
                 })
-                .orElseGet(() -> {
-                    // 新增购物车项
-                    CartItem cartItem = new CartItem();
-                    cartItem.setUser(user);
-                    cartItem.setProduct(product);
-                    cartItem.setQuantity(quantity);
-                    cartItem.setCreateTime(LocalDateTime.now());
-                    cartItem.setUpdateTime(LocalDateTime.now());
-                    return cartItemRepository.save(cartItem);
-                });
+                .orElseGet(() -> new CartLine(productId, quantity, LocalDateTime.now(), LocalDateTime.now()));
+
+        cartStore.putLine(userId, line);
+        return convertToDto(line, product);
     }
 
     /**
      * 更新购物车商品数量
      */
-    @Transactional
-    public CartItem updateCartItemQuantity(Long userId, Long productId, Integer quantity) {
+    public CartItemDto updateCartItemQuantity(Long userId, Long productId, Integer quantity) {
         if (quantity <= 0) {
             removeFromCart(userId, productId);
             return null;
         }
 
-        CartItem cartItem = cartItemRepository.findByUserIdAndProductId(userId, productId)
+        CartLine existing = cartStore.getLine(userId, productId)
                 .orElseThrow(() -> new RuntimeException("购物车商品不存在"));
+        ProductDto product = productCatalogCache.findById(productId)
+                .orElseThrow(() -> new RuntimeException("商品不存在"));
 
         // 检查库存
-        if (cartItem.getProduct().getStock() < quantity) {
-            throw new RuntimeException("库存不足，当前库存: " + cartItem.getProduct().getStock());
+        if (product.getStock() < quantity) {
+            throw new RuntimeException("库存不足，当前库存: " + product.getStock());
         }
 
-        cartItem.setQuantity(quantity);
-        cartItem.setUpdateTime(LocalDateTime.now());
-        return cartItemRepository.save(cartItem);
+        CartLine line = existing.withQuantity(quantity);
+        cartStore.putLine(userId, line);
+        return convertToDto(line, product);
     }
 
     /**
      * 从购物车移除商品
      */
-    @Transactional
     public void removeFromCart(Long userId, Long productId) {
-        cartItemRepository.deleteByUserIdAndProductId(userId, productId);
+        cartStore.removeLine(userId, productId);
     }
 
     /**
      * 清空用户购物车
      */
-    @Transactional
     public void clearCart(Long userId) {
-        cartItemRepository.deleteByUserId(userId);
+        cartStore.clear(userId);
     }
 
     /**
      * 获取购物车商品数量
      */
     public Integer getCartItemCount(Long userId) {
-        List<CartItem> cartItems = cartItemRepository.findByUserId(userId);
-        return cartItems.stream().mapToInt(CartItem::getQuantity).sum();
+        return cartStore.getLines(userId).stream().mapToInt(CartLine::quantity).sum();
     }
 
     /**
      * 计算购物车总金额
      */
     public Double getCartTotalAmount(Long userId) {
-        List<CartItem> cartItems = cartItemRepository.findByUserId(userId);
-        return cartItems.stream()
-                .mapToDouble(item -> item.getProduct().getPrice().doubleValue() * item.getQuantity())
+        List<CartLine> lines = cartStore.getLines(userId);
+        Map<Long, ProductDto> products = loadProducts(lines);
+        return lines.stream()
+                .filter(line -> products.containsKey(line.productId()))
+                .mapToDouble(line -> products.get(line.productId()).getPrice().doubleValue() * line.quantity())
                 .sum();
     }
 
@@ -142,9 +134,11 @@ public class CartService {
      * 检查购物车商品库存
      */
     public boolean checkCartStock(Long userId) {
-        List<CartItem> cartItems = cartItemRepository.findByUserId(userId);
-        for (CartItem item : cartItems) {
-            if (item.getProduct().getStock() < item.getQuantity()) {
+        List<CartLine> lines = cartStore.getLines(userId);
+        Map<Long, ProductDto> products = loadProducts(lines);
+        for (CartLine line : lines) {
+            ProductDto product = products.get(line.productId());
+            if (product == null || product.getStock() < line.quantity()) {
                 return false;
             }
         }
@@ -152,17 +146,29 @@ public class CartService {
     }
 
     /**
-     * 转换实体为DTO
+     * 从商品目录缓存中获取购物车涉及的商品，未命中的用一次查询加载
+     */
+    private Map<Long, ProductDto> loadProducts(List<CartLine> lines) {
+        if (lines.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> productIds = lines.stream().map(CartLine::productId).collect(Collectors.toList());
+        return productCatalogCache.findAllByIds(productIds);
+    }
+
+    /**
+     * 转换为DTO
      */
-    private CartItemDto convertToDto(CartItem cartItem) {
+    private CartItemDto convertToDto(CartLine line, ProductDto product) {
         CartItemDto dto = new CartItemDto();
-        dto.setId(cartItem.getId());
-        dto.setProductId(cartItem.getProduct().getId());
-        dto.setProductName(cartItem.getProduct().getName());
-        dto.setProductImage(cartItem.getProduct().getImageUrl());
-        dto.setProductPrice(cartItem.getProduct().getPrice());
-        dto.setQuantity(cartItem.getQuantity());
-        dto.setUpdateTime(cartItem.getUpdateTime());
+        dto.setId(product.getId());
+        dto.setProductId(product.getId());
+        dto.setProductName(product.getName());
+        dto.setProductImage(product.getImageUrl());
+        dto.setProductPrice(product.getPrice());
+        dto.setQuantity(line.quantity());
+        dto.setSubtotal(product.getPrice().multiply(BigDecimal.valueOf(line.quantity())));
+        dto.setUpdateTime(line.updateTime());
         return dto;
     }
-}
\ No newline at end of file
+}
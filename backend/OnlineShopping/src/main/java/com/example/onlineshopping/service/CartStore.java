@@ -0,0 +1,41 @@
+package com.example.onlineshopping.service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 购物车存储，按用户ID保存购物车行
+ * 实现可以是进程内缓存，也可以是 Redis 等外部存储；写入异步落库到 cart_items 表
+ */
+public interface CartStore {
+
+    /**
+     * 获取用户购物车的所有行（按加入顺序）
+     */
+    List<CartLine> getLines(Long userId);
+
+    /**
+     * 获取购物车中某个商品的行
+     */
+    Optional<CartLine> getLine(Long userId, Long productId);
+
+    /**
+     * 新增或替换购物车行
+     */
+    void putLine(Long userId, CartLine line);
+
+    /**
+     * 移除购物车中的商品
+     */
+    void removeLine(Long userId, Long productId);
+
+    /**
+     * 清空用户购物车
+     */
+    void clear(Long userId);
+
+    /**
+     * 将尚未落库的修改批量写入数据库
+     */
+    void flush();
+}
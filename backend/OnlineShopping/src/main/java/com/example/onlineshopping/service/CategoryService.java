@@ -5,10 +5,17 @@ import com.example.onlineshopping.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -16,6 +23,10 @@ import java.util.Optional;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final SuggestionService suggestionService;
+    private final CategoryTree categoryTree;
 
     /**
      * 获取所有分类
@@ -65,7 +76,9 @@ public class CategoryService {
             category.setParent(parent);
         }
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        refreshTreeAfterCommit();
+        return saved;
     }
 
     /**
@@ -101,7 +114,9 @@ public class CategoryService {
                         existingCategory.setParent(null);
                     }
 
-                    return categoryRepository.save(existingCategory);
+                    Category saved = categoryRepository.save(existingCategory);
+                    refreshProductsAfterCommit();
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("分类不存在"));
     }
@@ -123,6 +138,7 @@ public class CategoryService {
 
             category.setStatus(false);
             categoryRepository.save(category);
+            refreshTreeAfterCommit();
         });
     }
 
@@ -146,60 +162,73 @@ public class CategoryService {
     }
 
     /**
-     * 获取分类树
+     * 获取分类树（只包括启用的分类），层级关系取自内存中的分类树，只查询一次数据库
      */
     public List<Category> getCategoryTree() {
-        List<Category> rootCategories = findRootCategories();
-        rootCategories.forEach(this::loadChildren);
-        return rootCategories;
+        Map<Long, Category> enabled = categoryRepository.findByStatusTrue().stream()
+                .collect(Collectors.toMap(Category::getId, Function.identity()));
+        return linkChildren(categoryTree.rootIds(), enabled);
+    }
+
+    private List<Category> linkChildren(List<Long> ids, Map<Long, Category> enabled) {
+        List<Category> categories = new ArrayList<>();
+        for (Long id : ids) {
+            Category category = enabled.get(id);
+            if (category != null) {
+                category.setChildren(linkChildren(categoryTree.childIds(id), enabled));
+                categories.add(category);
+            }
+        }
+        return categories;
     }
 
     /**
-     * 递归加载子分类
+     * 获取分类及其所有启用的子孙分类的ID，分类不存在或已禁用时返回空集合
      */
-    private void loadChildren(Category category) {
-        List<Category> children = findByParentId(category.getId());
-        category.setChildren(children);
-        children.forEach(this::loadChildren);
+    public Set<Long> findSubtreeIds(Long categoryId) {
+        return categoryTree.enabledSubtreeIds(categoryId);
     }
 
     /**
-     * 检查循环引用
+     * 检查循环引用：新的父分类是该分类本身或其子孙分类
      */
     private boolean isCircularReference(Long categoryId, Long parentId) {
-        if (categoryId.equals(parentId)) {
-            return true;
-        }
-
-        Category parent = categoryRepository.findById(parentId).orElse(null);
-        while (parent != null && parent.getParent() != null) {
-            if (parent.getParent().getId().equals(categoryId)) {
-                return true;
-            }
-            parent = parent.getParent();
-        }
-
-        return false;
+        return categoryId.equals(parentId) || categoryTree.isSelfOrDescendant(parentId, categoryId);
     }
 
     /**
      * 获取分类路径
      */
     public String getCategoryPath(Long categoryId) {
-        StringBuilder path = new StringBuilder();
-        buildCategoryPath(categoryId, path);
-        return path.toString();
+        return categoryTree.path(categoryId);
     }
 
-    private void buildCategoryPath(Long categoryId, StringBuilder path) {
-        Category category = categoryRepository.findById(categoryId).orElse(null);
-        if (category != null) {
-            if (category.getParent() != null) {
-                buildCategoryPath(category.getParent().getId(), path);
-                path.append(" > ");
+    /**
+     * 分类名称或层级变化后，商品缓存中的分类名称和搜索索引中的分类路径都要刷新
+     */
+    private void refreshProductsAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                categoryTree.rebuild();
+                productCatalogCache.invalidateAll();
+                productSearchIndex.rebuild();
+                suggestionService.markDirty();
             }
-            path.append(category.getName());
-        }
+        });
+    }
+
+    /**
+     * 分类新增或删除后，分类树和搜索建议在事务提交后重建
+     */
+    private void refreshTreeAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                categoryTree.rebuild();
+                suggestionService.markDirty();
+            }
+        });
     }
 
     /**
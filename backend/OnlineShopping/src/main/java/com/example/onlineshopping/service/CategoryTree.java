@@ -0,0 +1,268 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.repository.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 物化的分类树（进程内）
+ *
+ * 用一次查询加载所有分类（包括已禁用的），按欧拉序给每个节点编号 [enter, exit]，
+ * 子树就是编号连续的一段，判断上下级关系是 O(1)；同时预先算好每个节点的完整路径。
+ * 构建完成后不再修改，分类变化时整体重建并替换，读取方不加锁、不访问数据库。
+ */
+@Slf4j
+@Component
+public class CategoryTree {
+
+    private static final String PATH_SEPARATOR = " > ";
+
+    private final CategoryRepository categoryRepository;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), List.of(), List.of());
+
+    public CategoryTree(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * 全量重建，分类新增、修改、删除的事务提交后调用
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // 重建期间要查询数据库，不用 synchronized，避免在虚拟线程上持锁阻塞时占住载体线程
+        rebuildLock.lock();
+        try {
+            build();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void build() {
+        Map<Long, Row> rows = new HashMap<>();
+        for (Object[] row : categoryRepository.findTreeRows()) {
+            rows.put((Long) row[0], new Row((Long) row[0], (Long) row[1], (String) row[2], Boolean.TRUE.equals(row[3])));
+        }
+
+        Map<Long, List<Long>> children = new HashMap<>();
+        List<Long> roots = new ArrayList<>();
+        rows.values().stream()
+                .sorted(Comparator.comparing(Row::id))
+                .forEach(row -> {
+                    if (row.parentId == null || !rows.containsKey(row.parentId)) {
+                        roots.add(row.id);
+                    } else {
+                        children.computeIfAbsent(row.parentId, id -> new ArrayList<>()).add(row.id);
+                    }
+                });
+
+        // 先序遍历给每个节点编号
+        Map<Long, Integer> enters = new HashMap<>();
+        List<Long> order = new ArrayList<>(rows.size());
+        roots.forEach(root -> preorder(root, children, enters, order));
+        // 数据库中已经存在环时，环上的节点从任何根都走不到，单独作为根挂出来，保证每个分类都在树里
+        for (Long id : rows.keySet().stream().sorted().collect(Collectors.toList())) {
+            if (!enters.containsKey(id)) {
+                log.warn("分类 {} 的父分类链存在循环引用", id);
+                roots.add(id);
+                preorder(id, children, enters, order);
+            }
+        }
+
+        // 逆先序累加子树大小，得到每个节点的 exit
+        int[] sizes = new int[order.size()];
+        Arrays.fill(sizes, 1);
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Integer parentEnter = treeParentEnter(rows.get(order.get(i)), enters, i);
+            if (parentEnter != null) {
+                sizes[parentEnter] += sizes[i];
+            }
+        }
+
+        // 先序下父节点总在子节点之前，可以直接拼出路径
+        Map<Long, Node> nodes = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            Row row = rows.get(order.get(i));
+            Integer parentEnter = treeParentEnter(row, enters, i);
+            Node parent = parentEnter == null ? null : nodes.get(order.get(parentEnter));
+            String path = parent == null ? row.name : parent.path + PATH_SEPARATOR + row.name;
+            nodes.put(row.id, new Node(row.id, row.name, row.enabled, i, i + sizes[i] - 1, path));
+        }
+
+        snapshot = new Snapshot(nodes, List.copyOf(order), List.copyOf(roots));
+        log.debug("分类树重建完成，分类数: {}", nodes.size());
+    }
+
+    /**
+     * 迭代的深度优先遍历，分类层级很深时也不会栈溢出
+     */
+    private static void preorder(Long rootId, Map<Long, List<Long>> children, Map<Long, Integer> enters, List<Long> order) {
+        Deque<Long> stack = new ArrayDeque<>();
+        stack.push(rootId);
+        while (!stack.isEmpty()) {
+            Long id = stack.pop();
+            if (enters.putIfAbsent(id, order.size()) != null) {
+                continue;
+            }
+            order.add(id);
+            List<Long> kids = children.getOrDefault(id, List.of());
+            for (int i = kids.size() - 1; i >= 0; i--) {
+                stack.push(kids.get(i));
+            }
+        }
+    }
+
+    /**
+     * 树中父节点的编号；作为根挂出来的节点（包括环的入口）没有父节点
+     */
+    private static Integer treeParentEnter(Row row, Map<Long, Integer> enters, int enter) {
+        Integer parentEnter = row.parentId == null ? null : enters.get(row.parentId);
+        return parentEnter != null && parentEnter < enter ? parentEnter : null;
+    }
+
+    /**
+     * 分类是否存在（包括已禁用的）
+     */
+    public boolean contains(Long categoryId) {
+        return snapshot.nodes.containsKey(categoryId);
+    }
+
+    /**
+     * descendantId 是否是 ancestorId 本身或其子孙分类
+     */
+    public boolean isSelfOrDescendant(Long descendantId, Long ancestorId) {
+        Snapshot current = snapshot;
+        Node ancestor = current.nodes.get(ancestorId);
+        Node descendant = current.nodes.get(descendantId);
+        return ancestor != null && descendant != null
+                && ancestor.enter <= descendant.enter && descendant.enter <= ancestor.exit;
+    }
+
+    /**
+     * 分类及其所有子孙分类的ID（按树的先序排列，包括已禁用的），分类不存在时返回空列表
+     */
+    public List<Long> subtreeIds(Long categoryId) {
+        Snapshot current = snapshot;
+        Node node = current.nodes.get(categoryId);
+        if (node == null) {
+            return List.of();
+        }
+        return current.order.subList(node.enter, node.exit + 1);
+    }
+
+    /**
+     * 分类及其所有启用的子孙分类的ID，被禁用的分类连同其下的子树一起排除
+     */
+    public Set<Long> enabledSubtreeIds(Long categoryId) {
+        Snapshot current = snapshot;
+        Node node = current.nodes.get(categoryId);
+        Set<Long> result = new LinkedHashSet<>();
+        if (node == null || !node.enabled) {
+            return result;
+        }
+        int i = node.enter;
+        while (i <= node.exit) {
+            Node child = current.nodes.get(current.order.get(i));
+            if (child.enabled) {
+                result.add(child.id);
+                i++;
+            } else {
+                // 跳过整棵被禁用的子树
+                i = child.exit + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从根到该分类的完整路径，如 "电子产品 > 手机"，分类不存在时返回空字符串
+     */
+    public String path(Long categoryId) {
+        Node node = snapshot.nodes.get(categoryId);
+        return node == null ? "" : node.path;
+    }
+
+    /**
+     * 分类名称，分类不存在时返回 null
+     */
+    public String name(Long categoryId) {
+        Node node = snapshot.nodes.get(categoryId);
+        return node == null ? null : node.name;
+    }
+
+    /**
+     * 按名称查分类ID的表（包括已禁用的）：键为完整路径（如 "电子产品 > 手机"），
+     * 以及不重名的分类名称；批量导入时取一次，之后不再访问分类树
+     */
+    public Map<String, Long> lookupTable() {
+        Map<String, Long> byName = new HashMap<>();
+        Set<String> duplicated = new HashSet<>();
+        Map<String, Long> table = new HashMap<>();
+        for (Node node : snapshot.nodes.values()) {
+            table.put(node.path, node.id);
+            if (byName.putIfAbsent(node.name, node.id) != null) {
+                duplicated.add(node.name);
+            }
+        }
+        byName.forEach((name, id) -> {
+            if (!duplicated.contains(name)) {
+                table.putIfAbsent(name, id);
+            }
+        });
+        return Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * 根分类ID，按ID排序
+     */
+    public List<Long> rootIds() {
+        return snapshot.roots;
+    }
+
+    /**
+     * 直接子分类ID（包括已禁用的）
+     */
+    public List<Long> childIds(Long categoryId) {
+        Snapshot current = snapshot;
+        Node node = current.nodes.get(categoryId);
+        if (node == null) {
+            return List.of();
+        }
+        List<Long> result = new ArrayList<>();
+        int i = node.enter + 1;
+        while (i <= node.exit) {
+            Long childId = current.order.get(i);
+            result.add(childId);
+            i = current.nodes.get(childId).exit + 1;
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private record Row(Long id, Long parentId, String name, boolean enabled) {
+    }
+
+    private record Node(Long id, String name, boolean enabled, int enter, int exit, String path) {
+    }
+
+    private record Snapshot(Map<Long, Node> nodes, List<Long> order, List<Long> roots) {
+    }
+}
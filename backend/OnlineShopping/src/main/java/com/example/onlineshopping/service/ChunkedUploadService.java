@@ -0,0 +1,354 @@
+package com.example.onlineshopping.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 可续传的分片上传
+ *
+ * 协议：create() 声明文件大小（可附带整个文件的 SHA-256），得到会话和分片大小；
+ * 每个分片按 offset 单独 PUT 并附带该分片的 SHA-256，可以乱序、并行、重复发送；
+ * 中断后 status() 查询缺少的分片继续上传；全部收到后 complete() 交给上传文件存储。
+ *
+ * 创建会话时按声明的大小建好文件，分片直接按位置写入（FileChannel 定位写），
+ * 每个请求只用一个固定大小的缓冲区，内存占用与文件大小无关。
+ * 整个文件的摘要在按顺序收到分片时顺带计算，完成时只需要补读乱序到达的部分。
+ *
+ * 会话只保存在内存中，服务重启后客户端需要重新开始；超过 session-ttl 未活动的会话连同文件一起删除。
+ * 临时文件放在 uploads/.chunked，与上传文件存储在同一文件系统，完成时直接改名，不复制内容。
+ */
+@Slf4j
+@Service
+public class ChunkedUploadService {
+
+    private static final Path ROOT = Paths.get("uploads", ".chunked");
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BlobStore blobStore;
+    private final long chunkSize;
+    private final long maxSize;
+    private final Duration sessionTtl;
+    private final int maxSessionsPerUser;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(BlobStore blobStore,
+                                @Value("${upload.chunked.chunk-size:2MB}") DataSize chunkSize,
+                                @Value("${upload.chunked.max-size:50MB}") DataSize maxSize,
+                                @Value("${upload.chunked.session-ttl:24h}") Duration sessionTtl,
+                                @Value("${upload.chunked.max-sessions-per-user:5}") int maxSessionsPerUser) throws IOException {
+        this.blobStore = blobStore;
+        this.chunkSize = chunkSize.toBytes();
+        this.maxSize = maxSize.toBytes();
+        this.sessionTtl = sessionTtl;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        Files.createDirectories(ROOT);
+    }
+
+    /**
+     * 上传进度：offset 为从头开始连续收到的字节数，missingChunks 为还没收到的分片序号
+     */
+    public record UploadStatus(String id, long size, long chunkSize, long offset, List<Integer> missingChunks) {
+    }
+
+    /**
+     * 创建上传会话并建好目标大小的文件
+     *
+     * @param sha256 整个文件的 SHA-256（十六进制），可以为空；给出时完成上传时校验
+     */
+    public UploadStatus create(Long userId, long size, String sha256) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("文件大小不正确");
+        }
+        if (size > maxSize) {
+            throw new IllegalArgumentException("文件大小不能超过" + DataSize.ofBytes(maxSize).toMegabytes() + "MB");
+        }
+        if (sha256 != null && !sha256.matches("^[0-9a-fA-F]{64}$")) {
+            throw new IllegalArgumentException("文件校验值格式不正确");
+        }
+        long open = sessions.values().stream().filter(session -> session.userId.equals(userId)).count();
+        if (open >= maxSessionsPerUser) {
+            throw new IllegalArgumentException("未完成的上传过多，请先完成或取消之前的上传");
+        }
+
+        String id = UUID.randomUUID().toString().replace("-", "");
+        Path file = ROOT.resolve(id + PART_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(size);
+        }
+        UploadSession session = new UploadSession(id, userId, size, sha256 == null ? null : sha256.toLowerCase(),
+                file, (int) ((size + chunkSize - 1) / chunkSize));
+        sessions.put(id, session);
+        return status(session);
+    }
+
+    /**
+     * 查询进度，会话不存在（或不属于该用户）时返回空
+     */
+    public Optional<UploadStatus> status(Long userId, String id) {
+        UploadSession session = sessions.get(id);
+        if (session == null || !session.userId.equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(status(session));
+    }
+
+    /**
+     * 写入一个分片：offset 必须是分片大小的整数倍，内容长度必须等于该分片的大小，
+     * 校验值不符时不记为已收到，客户端重新发送即可；已经收到的分片直接返回当前进度
+     */
+    public UploadStatus writeChunk(Long userId, String id, long offset, String sha256, InputStream body) throws IOException {
+        UploadSession session = session(userId, id);
+        if (offset < 0 || offset >= session.size || offset % chunkSize != 0) {
+            throw new IllegalArgumentException("分片位置不正确");
+        }
+        if (sha256 == null || sha256.isBlank()) {
+            throw new IllegalArgumentException("缺少分片校验值");
+        }
+        int index = (int) (offset / chunkSize);
+        long expected = Math.min(chunkSize, session.size - offset);
+
+        // 按顺序到达的分片顺带累加整个文件的摘要；在副本上计算，分片校验失败时不影响原摘要
+        MessageDigest fileDigest;
+        synchronized (session) {
+            if (session.completing) {
+                throw new IllegalArgumentException("上传已完成");
+            }
+            if (session.received.get(index)) {
+                session.touch();
+                return status(session);
+            }
+            if (session.writing.get(index)) {
+                throw new IllegalArgumentException("该分片正在上传");
+            }
+            session.writing.set(index);
+            fileDigest = index == session.digestedChunks ? cloneDigest(session.digest) : null;
+        }
+
+        boolean accepted = false;
+        try {
+            MessageDigest chunkDigest = sha256();
+            long written = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (FileChannel channel = FileChannel.open(session.file, StandardOpenOption.WRITE)) {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    if (written + read > expected) {
+                        throw new IllegalArgumentException("分片大小不正确");
+                    }
+                    chunkDigest.update(buffer, 0, read);
+                    if (fileDigest != null) {
+                        fileDigest.update(buffer, 0, read);
+                    }
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                    while (data.hasRemaining()) {
+                        channel.write(data, offset + written + data.position());
+                    }
+                    written += read;
+                }
+            }
+            if (written != expected) {
+                throw new IllegalArgumentException("分片大小不正确");
+            }
+            if (!HexFormat.of().formatHex(chunkDigest.digest()).equalsIgnoreCase(sha256.trim())) {
+                throw new IllegalArgumentException("分片校验失败，请重新上传该分片");
+            }
+            accepted = true;
+        } finally {
+            synchronized (session) {
+                session.writing.clear(index);
+                if (accepted) {
+                    session.received.set(index);
+                    if (fileDigest != null && index == session.digestedChunks) {
+                        session.digest = fileDigest;
+                        session.digestedChunks++;
+                    }
+                }
+                session.touch();
+            }
+        }
+        synchronized (session) {
+            return status(session);
+        }
+    }
+
+    /**
+     * 所有分片收到后校验整个文件并交给上传文件存储，返回的内容由调用方提交后关闭
+     */
+    public BlobStore.StagedBlob complete(Long userId, String id) throws IOException {
+        UploadSession session = session(userId, id);
+        MessageDigest digest;
+        int digestedChunks;
+        synchronized (session) {
+            if (session.completing) {
+                throw new IllegalArgumentException("上传已完成");
+            }
+            if (session.received.cardinality() < session.chunks || !session.writing.isEmpty()) {
+                throw new IllegalArgumentException("还有分片没有上传");
+            }
+            session.completing = true;
+            digest = session.digest;
+            digestedChunks = session.digestedChunks;
+        }
+
+        try {
+            // 补读乱序到达、没有计入摘要的部分
+            long position = digestedChunks * chunkSize;
+            if (position < session.size) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                try (FileChannel channel = FileChannel.open(session.file, StandardOpenOption.READ)) {
+                    while (position < session.size) {
+                        buffer.clear();
+                        int read = channel.read(buffer, position);
+                        if (read < 0) {
+                            break;
+                        }
+                        buffer.flip();
+                        digest.update(buffer);
+                        position += read;
+                    }
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            if (session.expectedHash != null && !session.expectedHash.equals(hash)) {
+                throw new IllegalArgumentException("文件校验失败，请重新上传");
+            }
+            return blobStore.adopt(session.file, hash, session.size);
+        } finally {
+            sessions.remove(id);
+            Files.deleteIfExists(session.file);
+        }
+    }
+
+    /**
+     * 取消上传并删除临时文件
+     */
+    public void abort(Long userId, String id) throws IOException {
+        UploadSession session = session(userId, id);
+        sessions.remove(id);
+        Files.deleteIfExists(session.file);
+    }
+
+    /**
+     * 删除过期的会话，以及服务重启前留下的临时文件
+     */
+    @Scheduled(fixedDelayString = "${upload.chunked.cleanup-interval:600000}")
+    public void cleanup() {
+        long expiredBefore = System.currentTimeMillis() - sessionTtl.toMillis();
+        sessions.values().removeIf(session -> {
+            if (session.lastAccess >= expiredBefore) {
+                return false;
+            }
+            delete(session.file);
+            return true;
+        });
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(ROOT, "*" + PART_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!sessions.containsKey(name.substring(0, name.length() - PART_SUFFIX.length()))
+                        && Files.getLastModifiedTime(file).toMillis() < expiredBefore) {
+                    delete(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理分片上传临时文件失败", e);
+        }
+    }
+
+    private UploadSession session(Long userId, String id) {
+        UploadSession session = sessions.get(id);
+        if (session == null || !session.userId.equals(userId)) {
+            throw new IllegalArgumentException("上传会话不存在或已过期");
+        }
+        return session;
+    }
+
+    private UploadStatus status(UploadSession session) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = session.received.nextClearBit(0); i < session.chunks; i = session.received.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        long offset = missing.isEmpty() ? session.size : missing.get(0) * chunkSize;
+        return new UploadStatus(session.id, session.size, chunkSize, offset, missing);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除分片上传临时文件失败: {}", file, e);
+        }
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 一次上传的状态，除不可变字段外都在 synchronized (session) 中访问
+     */
+    private static final class UploadSession {
+        private final String id;
+        private final Long userId;
+        private final long size;
+        private final String expectedHash;
+        private final Path file;
+        private final int chunks;
+        private final BitSet received = new BitSet();
+        private final BitSet writing = new BitSet();
+        private MessageDigest digest = sha256();
+        private int digestedChunks;
+        private boolean completing;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        UploadSession(String id, Long userId, long size, String expectedHash, Path file, int chunks) {
+            this.id = id;
+            this.userId = userId;
+            this.size = size;
+            this.expectedHash = expectedHash;
+            this.file = file;
+            this.chunks = chunks;
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.onlineshopping.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 订单导出、商品导出和导入共用的 CSV 转义和流式查询
+ */
+final class ExportSupport {
+
+    /**
+     * 需要在前面加单引号的开头字符：表格软件会当成公式执行的字符，以及单引号本身（导入时才能准确还原）
+     */
+    private static final String GUARDED_PREFIXES = "=+-@\t\r'";
+
+    private ExportSupport() {
+    }
+
+    /**
+     * 只进游标查询。MySQL 驱动默认把整个结果集读入内存，这里把 fetch size 设为 Integer.MIN_VALUE 改为逐行流式读取，
+     * 只对这一条语句生效（连接串中的 useCursorFetch 会让所有语句都变成服务端预处理语句）；其他数据库按 fetchSize 分批读取
+     */
+    static PreparedStatement prepareStreaming(Connection con, String sql, int fetchSize) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        boolean mysql = "MySQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName());
+        ps.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+        return ps;
+    }
+
+    /**
+     * CSV 字段转义：含逗号、引号或换行时用双引号包围；以 = + - @ 制表符或回车开头的值前面加单引号，
+     * 防止用 Excel 等表格软件打开时被当成公式执行（CSV 注入）。本身以单引号开头的值也加一个，再导入时不会丢失
+     */
+    static String escapeCsv(String field) {
+        if (!field.isEmpty() && GUARDED_PREFIXES.indexOf(field.charAt(0)) >= 0) {
+            field = "'" + field;
+        }
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * escapeCsv 的逆操作：只去掉 escapeCsv 加上的单引号，导出的文件再导入时内容不变
+     */
+    static String unescapeFormula(String field) {
+        if (field != null && field.length() > 1 && field.charAt(0) == '\''
+                && GUARDED_PREFIXES.indexOf(field.charAt(1)) >= 0) {
+            return field.substring(1);
+        }
+        return field;
+    }
+}
@@ -0,0 +1,421 @@
+package com.example.onlineshopping.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地磁盘上的按内容寻址存储
+ *
+ * 文件保存在 uploads/blobs/{hash前2位}/{hash第3-4位}/{hash}.{扩展名}，两级目录各 256 个，
+ * 单个目录下的文件数不会随总量无限增长；同一摘要派生的文件（如缩放版本）放在同一目录。
+ * 上传内容经 FileChannel.transferFrom 直接写入同一文件系统上的临时文件，边写边算摘要，
+ * 提交时原子改名到最终位置，不再复制数据。
+ *
+ * 引用计数记录在 blobs 表中，由业务代码在引用变化时增减；垃圾回收先按商品图片和用户头像
+ * 重新统计引用（标记），修正漂移的计数，再删除没有引用且超过保留期的文件（清除），
+ * 保留期用于保护刚上传、还没保存到商品或用户上的文件。旧的 uploads/products、uploads/avatars
+ * 目录也按同样规则清理。
+ */
+@Slf4j
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    public static final String URL_PREFIX = "/uploads/blobs/";
+
+    private static final Path ROOT = Paths.get("uploads", "blobs");
+    private static final Path LEGACY_ROOT = Paths.get("uploads");
+    private static final List<String> LEGACY_DIRECTORIES = List.of("products", "avatars");
+
+    private static final Pattern BLOB_URL =
+            Pattern.compile("^/uploads/blobs/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})\\.[a-z0-9]{1,5}$");
+    /**
+     * 以内容摘要开头的文件名：{hash}.{扩展名} 或 {hash}-xxx.jpg
+     */
+    private static final Pattern HASH_NAME = Pattern.compile("^([0-9a-f]{64})[.-][a-z0-9.-]+$");
+    private static final long TRANSFER_CHUNK = 1 << 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration gracePeriod;
+    private final Path tempDir;
+
+    /**
+     * 提交（可能复用已有文件）与清除同一文件互斥
+     */
+    private final ReadWriteLock sweepLock = new ReentrantReadWriteLock();
+    /**
+     * 同一时间只执行一次垃圾回收；不用 synchronized，回收期间有数据库查询和文件操作，会占住虚拟线程的载体线程
+     */
+    private final ReentrantLock collectLock = new ReentrantLock();
+    private volatile Map<String, Object> lastCollection = Map.of();
+
+    public FileSystemBlobStore(JdbcTemplate jdbcTemplate,
+                               @Value("${blob-store.gc.grace-period:1h}") Duration gracePeriod) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.gracePeriod = gracePeriod;
+        this.tempDir = ROOT.resolve(".tmp");
+        Files.createDirectories(tempDir);
+    }
+
+    @Override
+    public StagedBlob stage(InputStream content) throws IOException {
+        Path temp = Files.createTempFile(tempDir, "blob-", ".tmp");
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(content, digest));
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long transferred;
+            while ((transferred = target.transferFrom(source, size, TRANSFER_CHUNK)) > 0) {
+                size += transferred;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new StagedBlob(temp, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    @Override
+    public StagedBlob adopt(Path file, String hash, long size) throws IOException {
+        Path temp = Files.createTempFile(tempDir, "blob-", ".tmp");
+        try {
+            Files.move(file, temp, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new StagedBlob(temp, hash, size);
+    }
+
+    @Override
+    public String commit(StagedBlob blob, String extension) throws IOException {
+        String fileName = blob.hash() + "." + extension;
+        Path target = resolve(fileName);
+        sweepLock.readLock().lock();
+        try {
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target)) {
+                // 内容已存在，刷新修改时间，重新开始计算保留期
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            } else {
+                Files.move(blob.file(), target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try {
+                jdbcTemplate.update("INSERT INTO blobs (hash, file_name, size, ref_count, create_time) VALUES (?, ?, ?, 0, ?)",
+                        blob.hash(), fileName, blob.size(), Timestamp.valueOf(LocalDateTime.now()));
+            } catch (DuplicateKeyException e) {
+                // 已登记过
+            }
+        } finally {
+            sweepLock.readLock().unlock();
+        }
+        return URL_PREFIX + fileName.substring(0, 2) + "/" + fileName.substring(2, 4) + "/" + fileName;
+    }
+
+    @Override
+    public Path resolve(String fileName) {
+        if (!HASH_NAME.matcher(fileName).matches()) {
+            throw new IllegalArgumentException("无效的文件名: " + fileName);
+        }
+        return ROOT.resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4)).resolve(fileName);
+    }
+
+    @Override
+    public void retain(String url) {
+        String hash = blobHash(url);
+        if (hash != null) {
+            jdbcTemplate.update("UPDATE blobs SET ref_count = ref_count + 1 WHERE hash = ?", hash);
+        }
+    }
+
+    @Override
+    public void release(String url) {
+        String hash = blobHash(url);
+        if (hash != null) {
+            jdbcTemplate.update("UPDATE blobs SET ref_count = ref_count - 1 WHERE hash = ? AND ref_count > 0", hash);
+        }
+    }
+
+    @Override
+    public void adjustRefCounts(Map<String, Integer> deltas) {
+        List<Object[]> args = new ArrayList<>();
+        deltas.forEach((url, delta) -> {
+            String hash = blobHash(url);
+            if (hash != null && delta != 0) {
+                args.add(new Object[]{delta, hash});
+            }
+        });
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE blobs SET ref_count = GREATEST(ref_count + ?, 0) WHERE hash = ?", args);
+        }
+    }
+
+    @Scheduled(cron = "${blob-store.gc.cron:0 30 3 * * *}")
+    public void scheduledCollect() {
+        try {
+            collectGarbage();
+        } catch (IllegalStateException e) {
+            log.info("上一次上传文件垃圾回收还没有结束，跳过本次");
+        } catch (Exception e) {
+            log.error("上传文件垃圾回收失败", e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> collectGarbage() throws IOException {
+        if (!collectLock.tryLock()) {
+            throw new IllegalStateException("垃圾回收正在进行中");
+        }
+        try {
+            return collect();
+        } finally {
+            collectLock.unlock();
+        }
+    }
+
+    private Map<String, Object> collect() throws IOException {
+        long start = System.currentTimeMillis();
+        Instant cutoff = Instant.now().minus(gracePeriod);
+
+        // 先取计数快照，标记之后只在计数没有变化时修正，不覆盖期间的 retain/release
+        Map<String, Integer> recorded = new HashMap<>();
+        jdbcTemplate.query("SELECT hash, ref_count FROM blobs",
+                (RowCallbackHandler) rs -> recorded.put(rs.getString(1), rs.getInt(2)));
+
+        // 标记：按内容命名的文件记摘要，旧的随机文件名记完整地址
+        Map<String, Integer> referenced = new HashMap<>();
+        Set<String> referencedUrls = new HashSet<>();
+        RowCallbackHandler mark = rs -> {
+            String url = rs.getString(1);
+            String hash = contentHash(url);
+            if (hash != null) {
+                referenced.merge(hash, 1, Integer::sum);
+            } else {
+                referencedUrls.add(url);
+            }
+        };
+        jdbcTemplate.query("SELECT image_url FROM products WHERE image_url LIKE '/uploads/%'", mark);
+        jdbcTemplate.query("SELECT avatar_url FROM users WHERE avatar_url LIKE '/uploads/%'", mark);
+
+        List<Object[]> repairs = new ArrayList<>();
+        recorded.forEach((hash, count) -> {
+            int actual = referenced.getOrDefault(hash, 0);
+            if (actual != count) {
+                repairs.add(new Object[]{actual, hash, count});
+            }
+        });
+        jdbcTemplate.batchUpdate("UPDATE blobs SET ref_count = ? WHERE hash = ? AND ref_count = ?", repairs);
+
+        // 清除
+        Sweep sweep = new Sweep(cutoff);
+        try (DirectoryStream<Path> first = Files.newDirectoryStream(ROOT, Files::isDirectory)) {
+            for (Path level1 : first) {
+                if (level1.equals(tempDir)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> second = Files.newDirectoryStream(level1, Files::isDirectory)) {
+                    for (Path shard : second) {
+                        sweepShard(shard, referenced, sweep);
+                    }
+                }
+            }
+        }
+        for (String directory : LEGACY_DIRECTORIES) {
+            sweepLegacy(directory, referenced, referencedUrls, sweep);
+        }
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(tempDir)) {
+            for (Path temp : temps) {
+                if (sweep.expired(temp)) {
+                    sweep.delete(temp);
+                }
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("time", LocalDateTime.now());
+        result.put("referencedBlobs", referenced.size());
+        result.put("repairedRefCounts", repairs.size());
+        result.put("deletedBlobs", sweep.blobs);
+        result.put("deletedFiles", sweep.files);
+        result.put("freedBytes", sweep.bytes);
+        result.put("millis", System.currentTimeMillis() - start);
+        lastCollection = result;
+        log.info("上传文件垃圾回收完成: {}", result);
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT COUNT(*), COALESCE(SUM(size), 0), "
+                        + "COALESCE(SUM(CASE WHEN ref_count = 0 THEN 1 ELSE 0 END), 0) FROM blobs",
+                (RowCallbackHandler) rs -> {
+                    stats.put("blobs", rs.getLong(1));
+                    stats.put("bytes", rs.getLong(2));
+                    stats.put("unreferencedBlobs", rs.getLong(3));
+                });
+        stats.put("lastCollection", lastCollection);
+        return stats;
+    }
+
+    /**
+     * 清除一个分片目录：按摘要分组，整组（原图和派生文件）一起删除
+     */
+    private void sweepShard(Path shard, Map<String, Integer> referenced, Sweep sweep) throws IOException {
+        Map<String, List<Path>> groups = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+            for (Path file : files) {
+                String hash = contentHash(file.getFileName().toString());
+                if (hash != null && !referenced.containsKey(hash)) {
+                    groups.computeIfAbsent(hash, key -> new ArrayList<>()).add(file);
+                }
+            }
+        }
+        for (Map.Entry<String, List<Path>> group : groups.entrySet()) {
+            if (!group.getValue().stream().allMatch(sweep::expired)) {
+                continue;
+            }
+            sweepLock.writeLock().lock();
+            try {
+                // 加锁后再确认：期间可能重新上传了相同内容，或者被引用了
+                if (!group.getValue().stream().allMatch(sweep::expired)) {
+                    continue;
+                }
+                String hash = group.getKey();
+                int deleted = jdbcTemplate.update("DELETE FROM blobs WHERE hash = ? AND ref_count = 0", hash);
+                if (deleted == 0 && jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM blobs WHERE hash = ?", Integer.class, hash) > 0) {
+                    continue;
+                }
+                for (Path file : group.getValue()) {
+                    sweep.delete(file);
+                }
+                sweep.blobs++;
+            } finally {
+                sweepLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 清除旧目录：按内容命名的文件看摘要是否被引用，随机文件名看完整地址是否被引用
+     */
+    private void sweepLegacy(String directory, Map<String, Integer> referenced, Set<String> referencedUrls,
+                             Sweep sweep) throws IOException {
+        Path dir = LEGACY_ROOT.resolve(directory);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String hash = contentHash(name);
+                boolean live = hash != null
+                        ? referenced.containsKey(hash)
+                        : referencedUrls.contains("/uploads/" + directory + "/" + name);
+                if (!live && sweep.expired(file)) {
+                    sweep.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * 本存储的访问地址中的摘要，其他地址返回 null
+     */
+    private static String blobHash(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        Matcher matcher = BLOB_URL.matcher(url);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 地址或文件名最后一段以内容摘要命名时返回摘要
+     */
+    private static String contentHash(String urlOrName) {
+        String name = urlOrName.substring(urlOrName.lastIndexOf('/') + 1);
+        Matcher matcher = HASH_NAME.matcher(name);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 一次清除的统计
+     */
+    private static final class Sweep {
+        private final Instant cutoff;
+        private long blobs;
+        private long files;
+        private long bytes;
+
+        Sweep(Instant cutoff) {
+            this.cutoff = cutoff;
+        }
+
+        boolean expired(Path file) {
+            try {
+                return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        void delete(Path file) {
+            try {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    files++;
+                    bytes += size;
+                }
+            } catch (IOException e) {
+                log.warn("删除文件失败: {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.dto.ImageVariants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传图片处理
+ *
+ * 上传时只做两件事：写入上传文件存储的临时文件（同时计算 SHA-256），按内容识别真实格式后以 {hash}.{格式} 提交，
+ * 然后立即返回。
+ * 缩放版本（thumb/list/detail，见 ImageVariants）在有界线程池中生成，与原图放在存储的同一目录，统一输出为渐进式 JPEG；
+ * 大图解码时按整数倍抽样，不会把几千万像素完整解码到内存；从大到小逐级缩放，每一级以上一级为源。
+ * 版本文件先写临时文件再原子改名，不会被读到一半；生成完成前访问版本地址会回退到原图（见 UploadServingFilter）。
+ * 线程池队列满时丢弃任务并计数，上传请求不会因此变慢；之后第一次访问缺少的版本时再重新安排生成（见 generateMissing）。
+ */
+@Slf4j
+@Service
+public class ImageProcessingService {
+
+    /**
+     * 可以识别的原图格式（ImageIO 自带的解码器）及保存时的扩展名
+     */
+    public static final List<String> ORIGINAL_EXTENSIONS = List.of("jpg", "png", "gif", "bmp", "wbmp", "tif");
+
+    private final BlobStore blobStore;
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+    private final float jpegQuality;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter rejectedCounter;
+    /**
+     * 已安排或生成失败的图片摘要，避免同一张图重复排队；失败的不再重试
+     */
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+
+    public ImageProcessingService(BlobStore blobStore, MeterRegistry meterRegistry,
+                                  @Value("${image.processing.threads:2}") int threads,
+                                  @Value("${image.processing.queue-capacity:100}") int queueCapacity,
+                                  @Value("${image.processing.max-pixels:40000000}") long maxPixels,
+                                  @Value("${image.processing.jpeg-quality:0.82}") float jpegQuality) {
+        this.blobStore = blobStore;
+        this.maxPixels = maxPixels;
+        this.jpegQuality = jpegQuality;
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> rejected(runnable));
+        this.rejectedCounter = Counter.builder("image.processing.rejected")
+                .description("队列已满而丢弃的缩放版本生成任务数")
+                .register(meterRegistry);
+        this.successTimer = processingTimer(meterRegistry, "success");
+        this.failureTimer = processingTimer(meterRegistry, "failure");
+        Gauge.builder("image.processing.queue", executor, pool -> pool.getQueue().size())
+                .description("等待生成缩放版本的图片数")
+                .register(meterRegistry);
+    }
+
+    private static Timer processingTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("image.processing")
+                .description("生成一张图片全部缩放版本的耗时")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 上传结果：原图地址和缩放版本地址
+     */
+    public record StoredImage(String url, ImageVariants variants) {
+    }
+
+    /**
+     * 保存上传的图片并安排生成缩放版本；内容相同的图片只保存一份。
+     * 返回的地址由调用方保存到商品或用户上，并调用 BlobStore.retain()
+     *
+     * @throws IllegalArgumentException 不是可识别的图片，或像素数超过上限
+     */
+    public StoredImage store(InputStream input) throws IOException {
+        try (BlobStore.StagedBlob staged = blobStore.stage(input)) {
+            return store(staged);
+        }
+    }
+
+    /**
+     * 保存已经写入存储临时文件的图片（如分片上传的结果），由调用方关闭 staged
+     */
+    public StoredImage store(BlobStore.StagedBlob staged) throws IOException {
+        String url = blobStore.commit(staged, detectFormat(staged.file()));
+        String hash = staged.hash();
+        Path original = blobStore.resolve(url.substring(url.lastIndexOf('/') + 1));
+        if (!Files.exists(blobStore.resolve(ImageVariants.variantName(hash, "detail")))) {
+            schedule(original, hash);
+        }
+        return new StoredImage(url, ImageVariants.of(url));
+    }
+
+    /**
+     * 访问缩放版本时发现还没生成（如上传时队列已满被丢弃），重新安排生成；已在队列中的不重复安排
+     */
+    public void generateMissing(Path original, String hash) {
+        schedule(original, hash);
+    }
+
+    private void schedule(Path original, String hash) {
+        if (scheduled.add(hash)) {
+            executor.execute(new VariantTask(original, hash));
+        }
+    }
+
+    private void rejected(Runnable runnable) {
+        if (runnable instanceof VariantTask task) {
+            scheduled.remove(task.hash);
+        }
+        rejectedCounter.increment();
+        log.warn("图片处理队列已满，暂不生成缩放版本");
+    }
+
+    private final class VariantTask implements Runnable {
+        private final Path original;
+        private final String hash;
+
+        VariantTask(Path original, String hash) {
+            this.original = original;
+            this.hash = hash;
+        }
+
+        @Override
+        public void run() {
+            if (generateVariants(original, hash)) {
+                scheduled.remove(hash);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 按文件内容识别图片格式并检查像素数，返回保存用的扩展名
+     */
+    private String detectFormat(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in == null ? Collections.emptyIterator() : ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("只能上传图片文件");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new IllegalArgumentException("图片尺寸过大");
+                }
+                String format = reader.getFormatName().toLowerCase();
+                return switch (format) {
+                    case "jpeg" -> "jpg";
+                    case "tiff" -> "tif";
+                    default -> ORIGINAL_EXTENSIONS.contains(format) ? format : "img";
+                };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private boolean generateVariants(Path original, String hash) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage current = decode(original);
+            // 从大到小生成，每一级以上一级的结果为源
+            List<Map.Entry<String, Integer>> sizes = new ArrayList<>(ImageVariants.SIZES.entrySet());
+            Collections.reverse(sizes);
+            for (Map.Entry<String, Integer> size : sizes) {
+                current = scale(current, size.getValue());
+                writeJpeg(current, original.resolveSibling(ImageVariants.variantName(hash, size.getKey())));
+            }
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (Exception e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.error("生成图片缩放版本失败: {}", original, e);
+            return false;
+        }
+    }
+
+    /**
+     * 解码原图，长边超过最大版本两倍以上时按整数倍抽样；透明背景铺白色
+     */
+    private BufferedImage decode(Path file) throws IOException {
+        int largest = Collections.max(ImageVariants.SIZES.values());
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = ImageIO.getImageReaders(in).next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / (largest * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage image = reader.read(0, param);
+
+                BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = rgb.createGraphics();
+                try {
+                    g.drawImage(image, 0, 0, Color.WHITE, null);
+                } finally {
+                    g.dispose();
+                }
+                return rgb;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 缩放到长边不超过 maxSide（不放大），每次最多缩小一半，避免一次缩小太多产生锯齿
+     */
+    private static BufferedImage scale(BufferedImage image, int maxSide) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int longest = Math.max(width, height);
+        if (longest <= maxSide) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) Math.round((double) width * maxSide / longest));
+        int targetHeight = Math.max(1, (int) Math.round((double) height * maxSide / longest));
+
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
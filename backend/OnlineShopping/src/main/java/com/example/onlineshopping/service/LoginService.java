@@ -0,0 +1,211 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.repository.UserRepository;
+import com.example.onlineshopping.security.JwtUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 登录服务
+ *
+ * 只按用户名查询一次用户，密码哈希在专用的有界线程池中计算，请求线程不直接做 BCrypt。
+ * 线程池和等待队列都满时立即拒绝（调用方返回 503），不让登录高峰拖垮其他接口。
+ * 登录成功时如果存储的哈希算法或强度已过时，顺便用明文重新哈希并保存。
+ * 各阶段（查询用户、排队、哈希、升级、签发令牌）的耗时记录到指标 auth.login.stage，
+ * 拒绝、失败、升级次数记录到 auth.login.rejected、auth.login.failed、auth.login.upgraded，统计接口直接读取这些指标。
+ */
+@Slf4j
+@Service
+public class LoginService {
+
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final JwtUtil jwtUtil;
+    private final ThreadPoolExecutor hashExecutor;
+    private final Duration hashTimeout;
+
+    /**
+     * 用户不存在时也做一次哈希校验，响应时间不暴露用户名是否存在
+     */
+    private final String dummyHash;
+
+    private final Map<String, Timer> stages = new LinkedHashMap<>();
+    private final Timer lookupStage;
+    private final Timer queueStage;
+    private final Timer hashStage;
+    private final Timer upgradeStage;
+    private final Timer tokenStage;
+    private final Timer totalStage;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Counter upgraded;
+
+    public LoginService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil,
+                        MeterRegistry meterRegistry,
+                        @Value("${login.hash.threads:0}") int threads,
+                        @Value("${login.hash.queue-capacity:200}") int queueCapacity,
+                        @Value("${login.hash.timeout:5s}") Duration hashTimeout) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.jwtUtil = jwtUtil;
+        this.hashTimeout = hashTimeout;
+        this.lookupStage = stage(meterRegistry, "lookup");
+        this.queueStage = stage(meterRegistry, "queue");
+        this.hashStage = stage(meterRegistry, "hash");
+        this.upgradeStage = stage(meterRegistry, "upgrade");
+        this.tokenStage = stage(meterRegistry, "token");
+        this.totalStage = stage(meterRegistry, "total");
+        this.rejected = Counter.builder("auth.login.rejected")
+                .description("哈希线程池已满或等待超时而拒绝的登录次数")
+                .register(meterRegistry);
+        this.failed = Counter.builder("auth.login.failed")
+                .description("用户名或密码错误的登录次数")
+                .register(meterRegistry);
+        this.upgraded = Counter.builder("auth.login.upgraded")
+                .description("登录时升级密码哈希的次数")
+                .register(meterRegistry);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger sequence = new AtomicInteger();
+        this.hashExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "login-hash-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.dummyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+    }
+
+    /**
+     * 校验用户名和密码并签发令牌
+     *
+     * @throws BadCredentialsException    用户名或密码错误
+     * @throws RejectedExecutionException 登录请求过多，哈希线程池已满或等待超时
+     */
+    public LoginResult login(String username, String rawPassword) {
+        long start = System.nanoTime();
+
+        Optional<User> found = lookupStage.record(() -> userRepository.findByUsername(username));
+        String encoded = found.map(User::getPassword).orElse(dummyHash);
+        HashResult result = hash(rawPassword != null ? rawPassword : "", encoded);
+
+        if (found.isEmpty() || !result.matches()) {
+            failed.increment();
+            throw new BadCredentialsException("Bad credentials");
+        }
+
+        User user = found.get();
+        if (result.upgradedHash() != null) {
+            upgradeStage.record(() -> {
+                if (userRepository.upgradePassword(user.getId(), encoded, result.upgradedHash()) > 0) {
+                    user.setPassword(result.upgradedHash());
+                    upgraded.increment();
+                    log.debug("用户 {} 的密码哈希已升级", username);
+                }
+            });
+        }
+
+        String token = tokenStage.record(() -> jwtUtil.generateToken(user));
+        totalStage.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new LoginResult(user, token);
+    }
+
+    /**
+     * 各阶段耗时以及拒绝、失败、升级次数，取自已注册的指标（maxMillis 是最近一个统计窗口内的最大值）
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        stages.forEach((name, timer) -> {
+            Map<String, Object> stage = new LinkedHashMap<>();
+            stage.put("count", timer.count());
+            stage.put("avgMillis", timer.mean(TimeUnit.MILLISECONDS));
+            stage.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+            map.put(name, stage);
+        });
+        map.put("activeThreads", hashExecutor.getActiveCount());
+        map.put("queued", hashExecutor.getQueue().size());
+        map.put("rejectedCount", (long) rejected.count());
+        map.put("failedCount", (long) failed.count());
+        map.put("upgradedCount", (long) upgraded.count());
+        return map;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+
+    private HashResult hash(String rawPassword, String encoded) {
+        long submitted = System.nanoTime();
+        Future<HashResult> future;
+        try {
+            future = hashExecutor.submit(() -> {
+                long begin = System.nanoTime();
+                queueStage.record(begin - submitted, TimeUnit.NANOSECONDS);
+                boolean matches = passwordEncoder.matches(rawPassword, encoded);
+                // 升级也要算一次哈希，放在同一个任务里，不占用请求线程
+                String upgradedHash = matches && passwordEncoder.upgradeEncoding(encoded)
+                        ? passwordEncoder.encode(rawPassword) : null;
+                hashStage.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+                return new HashResult(matches, upgradedHash);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RejectedExecutionException("登录请求过多，请稍后重试");
+        }
+
+        try {
+            return future.get(hashTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new RejectedExecutionException("登录请求过多，请稍后重试");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("登录被中断");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("密码校验失败", e.getCause());
+        }
+    }
+
+    private Timer stage(MeterRegistry meterRegistry, String name) {
+        Timer timer = Timer.builder("auth.login.stage")
+                .description("登录各阶段耗时")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        stages.put(name, timer);
+        return timer;
+    }
+
+    public record LoginResult(User user, String token) {
+    }
+
+    private record HashResult(boolean matches, String upgradedHash) {
+    }
+}
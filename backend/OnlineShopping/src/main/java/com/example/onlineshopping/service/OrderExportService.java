@@ -0,0 +1,235 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.dto.OrderDto;
+import com.example.onlineshopping.entity.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单导出服务（流式）
+ *
+ * 用只进游标（forward-only + fetch size）逐行读取订单和订单项，边读边写到输出流，
+ * 任何时候内存中最多只有一个订单，导出多少订单内存占用都不变。
+ */
+@Slf4j
+@Service
+public class OrderExportService {
+
+    /**
+     * 按创建时间、订单ID排序（订单的 create_time 索引自带主键，顺序读取），同一订单的订单项相邻
+     */
+    private static final String EXPORT_SQL =
+            "SELECT o.id, o.order_number, o.user_id, u.username, o.total_amount, o.status, o.shipping_address, " +
+            "o.payment_method, o.create_time, oi.id, oi.product_id, p.name, p.image_url, oi.quantity, oi.price, oi.subtotal " +
+            "FROM orders o JOIN users u ON u.id = o.user_id " +
+            "LEFT JOIN order_items oi ON oi.order_id = o.id " +
+            "LEFT JOIN products p ON p.id = oi.product_id " +
+            "WHERE o.create_time >= ? AND o.create_time < ? %s" +
+            "ORDER BY o.create_time, o.id, oi.id";
+
+    private static final String[] CSV_HEADER = {
+            "订单ID", "订单编号", "用户ID", "用户名", "订单金额", "订单状态", "收货地址", "支付方式", "下单时间",
+            "商品ID", "商品名称", "数量", "单价", "小计"
+    };
+
+    /**
+     * CSV 各列在查询结果中的位置（跳过订单项ID和商品图片）
+     */
+    private static final int[] CSV_COLUMNS = {1, 2, 3, 4, 5, 6, 7, 8, 9, 11, 12, 14, 15, 16};
+
+    private static final LocalDate MIN_DATE = LocalDate.of(1970, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public OrderExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                              @Value("${order.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * 导出订单
+     *
+     * @param from   起始日期（含），为空时不限
+     * @param to     截止日期（含），为空时不限
+     * @param status 订单状态，为空时不限
+     */
+    public void export(Format format, LocalDate from, LocalDate to, Order.OrderStatus status, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowCallbackHandler handler = format == Format.CSV ? new CsvWriter(writer) : new NdjsonWriter(writer);
+
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf((from != null ? from : MIN_DATE).atStartOfDay()));
+        args.add(Timestamp.valueOf((to != null ? to.plusDays(1) : MAX_DATE).atStartOfDay()));
+        String statusClause = "";
+        if (status != null) {
+            statusClause = "AND o.status = ? ";
+            args.add(status.name());
+        }
+        String sql = String.format(EXPORT_SQL, statusClause);
+
+        long start = System.currentTimeMillis();
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = ExportSupport.prepareStreaming(con, sql, fetchSize);
+                for (int i = 0; i < args.size(); i++) {
+                    ps.setObject(i + 1, args.get(i));
+                }
+                return ps;
+            }, handler);
+            if (handler instanceof NdjsonWriter ndjson) {
+                ndjson.finish();
+            }
+        } catch (UncheckedIOException e) {
+            // 客户端断开连接等写出失败，游标随查询一起关闭
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("订单导出完成，格式: {}，耗时: {}ms", format, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * CSV：每个订单项一行，订单字段在每行重复；带 BOM 以便 Excel 正确识别中文
+     */
+    private static class CsvWriter implements RowCallbackHandler {
+        private final Writer writer;
+
+        CsvWriter(Writer writer) {
+            this.writer = writer;
+            try {
+                writer.write('\uFEFF');
+                writeLine(CSV_HEADER);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            String[] fields = new String[CSV_HEADER.length];
+            for (int i = 0; i < fields.length; i++) {
+                Object value = rs.getObject(CSV_COLUMNS[i]);
+                fields[i] = value == null ? "" : value instanceof Timestamp ts ? ts.toLocalDateTime().toString() : value.toString();
+            }
+            try {
+                writeLine(fields);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeLine(String[] fields) throws IOException {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(ExportSupport.escapeCsv(fields[i]));
+            }
+            writer.write("\r\n");
+        }
+    }
+
+    /**
+     * NDJSON：每个订单一行，订单项作为数组嵌在订单中，格式与订单接口的 OrderDto 相同
+     */
+    private class NdjsonWriter implements RowCallbackHandler {
+        private final Writer writer;
+        private OrderDto current;
+
+        NdjsonWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long orderId = rs.getLong(1);
+            if (current == null || current.getId() != orderId) {
+                emit();
+                current = new OrderDto();
+                current.setId(orderId);
+                current.setOrderNumber(rs.getString(2));
+                current.setUserId(rs.getLong(3));
+                current.setUsername(rs.getString(4));
+                current.setTotalAmount(rs.getBigDecimal(5));
+                current.setStatus(rs.getString(6) != null ? Order.OrderStatus.valueOf(rs.getString(6)) : null);
+                current.setShippingAddress(rs.getString(7));
+                current.setPaymentMethod(rs.getString(8));
+                Timestamp createTime = rs.getTimestamp(9);
+                current.setCreateTime(createTime != null ? createTime.toLocalDateTime() : null);
+                current.setOrderItems(new ArrayList<>());
+            }
+            if (rs.getObject(10) != null) {
+                OrderDto.OrderItemDto item = new OrderDto.OrderItemDto();
+                item.setId(rs.getLong(10));
+                item.setProductId(rs.getLong(11));
+                item.setProductName(rs.getString(12));
+                item.setImageUrl(rs.getString(13));
+                item.setQuantity(rs.getInt(14));
+                item.setPrice(rs.getBigDecimal(15));
+                item.setSubtotal(rs.getBigDecimal(16));
+                current.getOrderItems().add(item);
+            }
+        }
+
+        void finish() {
+            emit();
+        }
+
+        private void emit() {
+            if (current == null) {
+                return;
+            }
+            try {
+                writer.write(objectMapper.writeValueAsString(current));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            current = null;
+        }
+    }
+}
@@ -1,34 +1,69 @@
 package com.example.onlineshopping.service;
 
 import com.example.onlineshopping.entity.*;
-import com.example.onlineshopping.repository.CartItemRepository;
 import com.example.onlineshopping.repository.OrderRepository;
+import com.example.onlineshopping.repository.ProductRepository;
 import com.example.onlineshopping.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class OrderService {
 
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
-    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
     private final CartService cartService;
-    private final ProductService productService;
+    private final StockReservationService stockReservationService;
+    private final SalesAnalyticsService salesAnalyticsService;
 
-    public OrderService(OrderRepository orderRepository, UserRepository userRepository, CartItemRepository cartItemRepository, CartService cartService, ProductService productService) {
+    /**
+     * 下单各阶段耗时（order.create.stage，按 stage 标签区分）
+     */
+    private final Timer loadCartStage;
+    private final Timer stockCheckStage;
+    private final Timer persistStage;
+    private final Timer stockUpdateStage;
+    private final Timer clearCartStage;
+
+    public OrderService(OrderRepository orderRepository, UserRepository userRepository, ProductRepository productRepository,
+                        CartService cartService, StockReservationService stockReservationService,
+                        SalesAnalyticsService salesAnalyticsService, MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
         this.userRepository = userRepository;
-        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
         this.cartService = cartService;
-        this.productService = productService;
+        this.stockReservationService = stockReservationService;
+        this.salesAnalyticsService = salesAnalyticsService;
+        this.loadCartStage = stageTimer(meterRegistry, "load_cart");
+        this.stockCheckStage = stageTimer(meterRegistry, "stock_check");
+        this.persistStage = stageTimer(meterRegistry, "persist");
+        this.stockUpdateStage = stageTimer(meterRegistry, "stock_update");
+        this.clearCartStage = stageTimer(meterRegistry, "clear_cart");
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("order.create.stage")
+                .description("下单各阶段耗时")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     /**
@@ -73,24 +108,35 @@ public class OrderService {
      */
     @Transactional
     public Order createOrder(Long userId, String shippingAddress, String paymentMethod) {
+        Timer.Sample sample = Timer.start();
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
 
-        List<CartItem> cartItems = cartItemRepository.findByUserId(userId);
-        if (cartItems.isEmpty()) {
+        // 从购物车存储读取购物车，一次查询加载涉及的商品
+        List<CartLine> cartLines = cartService.getCartLines(userId);
+        if (cartLines.isEmpty()) {
             throw new RuntimeException("购物车为空");
         }
+        List<Long> productIds = cartLines.stream().map(CartLine::productId).collect(Collectors.toList());
+        Map<Long, Product> products = productRepository.findAllWithCategoryByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        sample = restart(sample, loadCartStage);
 
         // 检查库存
-        for (CartItem cartItem : cartItems) {
-            if (cartItem.getProduct().getStock() < cartItem.getQuantity()) {
-                throw new RuntimeException("商品 '" + cartItem.getProduct().getName() + "' 库存不足，当前库存: " + cartItem.getProduct().getStock());
+        for (CartLine line : cartLines) {
+            Product product = products.get(line.productId());
+            if (product == null) {
+                throw new RuntimeException("商品信息异常");
+            }
+            if (product.getStock() < line.quantity()) {
+                throw new RuntimeException("商品 '" + product.getName() + "' 库存不足，当前库存: " + product.getStock());
             }
         }
+        sample = restart(sample, stockCheckStage);
 
         // 计算总金额
-        BigDecimal totalAmount = cartItems.stream()
-                .map(item -> item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+        BigDecimal totalAmount = cartLines.stream()
+                .map(line -> products.get(line.productId()).getPrice().multiply(BigDecimal.valueOf(line.quantity())))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         // 创建订单
@@ -104,37 +150,48 @@ public class OrderService {
         order.setCreateTime(LocalDateTime.now());
         order.setUpdateTime(LocalDateTime.now());
 
-        // 添加订单项并更新库存
-        for (CartItem cartItem : cartItems) {
+        // 添加订单项
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartLine line : cartLines) {
+            Product product = products.get(line.productId());
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(order);
-            orderItem.setProduct(cartItem.getProduct());
-            orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setPrice(cartItem.getProduct().getPrice());
-            orderItem.setSubtotal(cartItem.getProduct().getPrice().multiply(BigDecimal.valueOf(cartItem.getQuantity())));
+            orderItem.setProduct(product);
+            orderItem.setQuantity(line.quantity());
+            orderItem.setPrice(product.getPrice());
+            orderItem.setSubtotal(product.getPrice().multiply(BigDecimal.valueOf(line.quantity())));
             order.getOrderItems().add(orderItem);
+            quantities.merge(product.getId(), line.quantity(), Integer::sum);
+        }
 
-            // 更新商品库存
-            Product product = productService.findById(cartItem.getProduct().getId())
-                    .orElseThrow(() -> new RuntimeException("商品信息异常"));
+        // 保存订单（订单项按批次插入）
+        Order savedOrder = orderRepository.saveAndFlush(order);
+        sample = restart(sample, persistStage);
 
-            product.setStock(product.getStock() - cartItem.getQuantity());
-            // 更新销量
-            product.setSales((product.getSales() == null ? 0 : product.getSales()) + cartItem.getQuantity());
+        // 最后再原子扣减库存（同时累加销量、库存为0时自动下架），缩短持有商品行锁的时间
+        stockReservationService.reserve(quantities);
+        salesAnalyticsService.orderCreated(savedOrder);
+        restart(sample, stockUpdateStage);
 
-            if (product.getStock() == 0) {
-                product.setStatus(false); // 库存为0时自动下架
+        // 事务提交后再清空购物车，下单失败时购物车保持不变
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                clearCartStage.record(() -> cartService.clearCart(userId));
             }
-            productService.save(product);
-        }
-
-        // 保存订单并清空购物车
-        Order savedOrder = orderRepository.save(order);
-        cartService.clearCart(userId);
+        });
 
         return savedOrder;
     }
 
+    /**
+     * 结束上一阶段的计时并开始下一阶段；抛出异常时当前阶段不计入
+     */
+    private static Timer.Sample restart(Timer.Sample sample, Timer stage) {
+        sample.stop(stage);
+        return Timer.start();
+    }
+
     /**
      * 更新订单状态
      */
@@ -150,6 +207,7 @@ public class OrderService {
                     if (status == Order.OrderStatus.CANCELLED && oldStatus != Order.OrderStatus.CANCELLED) {
                         restoreStock(order);
                     }
+                    salesAnalyticsService.orderStatusChanged(order, oldStatus, status);
 
                     return orderRepository.save(order);
                 })
@@ -178,7 +236,9 @@ public class OrderService {
         order.setStatus(Order.OrderStatus.PAID);
         order.setUpdateTime(LocalDateTime.now());
         
-        System.out.println("订单 " + orderId + " 支付成功，状态更新为: PAID");
+        salesAnalyticsService.orderStatusChanged(order, Order.OrderStatus.PENDING, Order.OrderStatus.PAID);
+
+        log.debug("订单 {} 支付成功，状态更新为: PAID", orderId);
         return orderRepository.save(order);
     }
 
@@ -204,6 +264,7 @@ public class OrderService {
         }
 
         orderRepository.delete(order);
+        salesAnalyticsService.orderDeleted(order);
     }
 
     /**
@@ -239,14 +300,12 @@ public class OrderService {
      * 恢复库存（订单取消时调用）
      */
     private void restoreStock(Order order) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
         for (OrderItem orderItem : order.getOrderItems()) {
-            Product product = orderItem.getProduct();
-            product.setStock(product.getStock() + orderItem.getQuantity());
-            if (!product.getStatus() && product.getStock() > 0) {
-                product.setStatus(true); // 如果之前因为库存为0下架，现在恢复上架
-            }
-            productService.save(product);
+            quantities.merge(orderItem.getProduct().getId(), orderItem.getQuantity(), Integer::sum);
         }
+        // 归还库存，如果之前因为库存为0下架，现在恢复上架
+        stockReservationService.release(quantities);
     }
 
     /**
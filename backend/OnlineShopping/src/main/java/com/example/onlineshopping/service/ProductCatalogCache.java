@@ -0,0 +1,191 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.dto.ProductDto;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 商品目录缓存（读穿透）
+ *
+ * 单个商品按ID缓存为 ProductDto，商品列表只缓存商品ID，读取时再从单品缓存中补全。
+ * 每个商品有一个版本号，写入时先递增版本再失效缓存；读取方加载完成后发现版本变化就丢弃结果，
+ * 保证并发写入时不会把旧数据放回缓存。缓存中的 ProductDto 是共享对象，调用方不要修改。
+ */
+@Component
+public class ProductCatalogCache implements MeterBinder {
+
+    private static final String ALL_PRODUCTS = "all";
+    private static final String CATEGORY_PREFIX = "category:";
+
+    private final ProductRepository productRepository;
+    private final Cache<Long, ProductDto> products;
+    private final Cache<String, List<Long>> listings;
+
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLong listingVersion = new AtomicLong();
+
+    public ProductCatalogCache(ProductRepository productRepository,
+                               @Value("${catalog.cache.maximum-size:10000}") long maximumSize,
+                               @Value("${catalog.cache.expire-after-write:10m}") Duration expireAfterWrite,
+                               @Value("${catalog.cache.listing-expire-after-write:1m}") Duration listingExpireAfterWrite) {
+        this.productRepository = productRepository;
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.listings = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(listingExpireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 命中率等缓存指标（cache=catalog.products / catalog.listings）
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, products, "catalog.products");
+        CaffeineCacheMetrics.monitor(registry, listings, "catalog.listings");
+    }
+
+    /**
+     * 根据ID获取商品（包括已下架的商品，由调用方决定是否过滤）
+     */
+    public Optional<ProductDto> findById(Long id) {
+        return Optional.ofNullable(findAllByIds(List.of(id)).get(id));
+    }
+
+    /**
+     * 批量获取商品，未命中的商品用一次查询加载
+     */
+    public Map<Long, ProductDto> findAllByIds(Collection<Long> ids) {
+        Map<Long, ProductDto> result = new HashMap<>(products.getAllPresent(ids));
+        List<Long> missing = ids.stream()
+                .filter(id -> !result.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, Long> stamps = new HashMap<>();
+        missing.forEach(id -> stamps.put(id, version(id).get()));
+        for (Product product : productRepository.findAllWithCategoryByIdIn(missing)) {
+            ProductDto dto = ProductDto.fromEntity(product);
+            result.put(product.getId(), dto);
+            products.put(product.getId(), dto);
+            // 加载期间商品被修改过，丢弃刚放入的旧数据
+            if (version(product.getId()).get() != stamps.get(product.getId())) {
+                products.invalidate(product.getId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取所有上架商品
+     */
+    public List<ProductDto> findAll() {
+        return listing(ALL_PRODUCTS, productRepository::findActiveIds);
+    }
+
+    /**
+     * 获取分类下的上架商品
+     */
+    public List<ProductDto> findByCategoryId(Long categoryId) {
+        return listing(CATEGORY_PREFIX + categoryId, () -> productRepository.findActiveIdsByCategoryId(categoryId));
+    }
+
+    /**
+     * 商品信息或库存变化后失效该商品
+     */
+    public void invalidate(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        version(productId).incrementAndGet();
+        products.invalidate(productId);
+    }
+
+    /**
+     * 商品新增、上下架或分类变化后失效所有列表
+     */
+    public void invalidateListings() {
+        listingVersion.incrementAndGet();
+        listings.invalidateAll();
+    }
+
+    /**
+     * 分类名称等影响所有商品的数据变化后失效整个缓存
+     */
+    public void invalidateAll() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        products.invalidateAll();
+        invalidateListings();
+    }
+
+    /**
+     * 缓存命中/未命中/淘汰统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("products", toMap(products.stats(), products.estimatedSize()));
+        stats.put("listings", toMap(listings.stats(), listings.estimatedSize()));
+        return stats;
+    }
+
+    private List<ProductDto> listing(String key, Supplier<List<Long>> loader) {
+        List<Long> ids = listings.getIfPresent(key);
+        if (ids == null) {
+            long stamp = listingVersion.get();
+            ids = List.copyOf(loader.get());
+            listings.put(key, ids);
+            if (listingVersion.get() != stamp) {
+                listings.invalidate(key);
+            }
+        }
+
+        // 列表缓存期间商品可能因库存售罄下架，补全时再按状态过滤
+        Map<Long, ProductDto> dtos = findAllByIds(ids);
+        return ids.stream()
+                .map(dtos::get)
+                .filter(dto -> dto != null && Boolean.TRUE.equals(dto.getStatus()))
+                .collect(Collectors.toList());
+    }
+
+    private AtomicLong version(Long productId) {
+        return versions.computeIfAbsent(productId, id -> new AtomicLong());
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", size);
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.onlineshopping.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 键集分页游标：记录上一页最后一个商品的 (排序值, ID)，以及第一页时统计的总数
+ *
+ * 对客户端是不透明的字符串，排序方式也编码在内，换了排序方式的旧游标会被拒绝。
+ */
+record ProductCursor(ProductSort sort, boolean ascending, Comparable<?> key, Long id, long total) {
+
+    private static final String SEPARATOR = "|";
+
+    String encode() {
+        String raw = String.join(SEPARATOR, sort.name(), ascending ? "asc" : "desc",
+                sort.formatKey(key), id.toString(), Long.toString(total));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ProductCursor decode(String cursor, ProductSort sort, boolean ascending) {
+        ProductCursor decoded;
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            ProductSort cursorSort = ProductSort.valueOf(parts[0]);
+            decoded = new ProductCursor(cursorSort, "asc".equals(parts[1]), cursorSort.parseKey(parts[2]),
+                    Long.valueOf(parts[3]), Long.parseLong(parts[4]));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("无效的分页游标");
+        }
+        if (decoded.sort != sort || decoded.ascending != ascending) {
+            throw new RuntimeException("分页游标与排序方式不匹配");
+        }
+        return decoded;
+    }
+}
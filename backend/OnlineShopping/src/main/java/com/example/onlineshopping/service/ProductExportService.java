@@ -0,0 +1,162 @@
+package com.example.onlineshopping.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 商品导出服务（流式）
+ *
+ * 与订单导出相同，用只进游标逐行读取、边读边写，导出整个商品库内存占用也不变。
+ * 导出的文件可以直接作为批量导入（ProductImportService）的输入：按 id 匹配回原商品。
+ */
+@Slf4j
+@Service
+public class ProductExportService {
+
+    /**
+     * 字段名：NDJSON 的键，与 CSV_HEADER 一一对应；导入时两种表头都认
+     */
+    static final String[] FIELDS = {
+            "id", "sku", "name", "description", "price", "stock", "imageUrl", "categoryId", "category", "status"
+    };
+
+    static final String[] CSV_HEADER = {
+            "商品ID", "商品编码", "商品名称", "商品描述", "价格", "库存", "图片", "分类ID", "分类", "状态"
+    };
+
+    private static final String EXPORT_SQL =
+            "SELECT id, sku, name, description, price, stock, image_url, category_id, status FROM products ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final CategoryTree categoryTree;
+    private final int fetchSize;
+
+    public ProductExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, CategoryTree categoryTree,
+                                @Value("${product.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.categoryTree = categoryTree;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 导出所有商品（包括已下架的），按商品ID排序
+     */
+    public void export(OrderExportService.Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowCallbackHandler handler = format == OrderExportService.Format.CSV ? new CsvWriter(writer) : new NdjsonWriter(writer);
+
+        long start = System.currentTimeMillis();
+        try {
+            jdbcTemplate.query(con -> ExportSupport.prepareStreaming(con, EXPORT_SQL, fetchSize), handler);
+        } catch (UncheckedIOException e) {
+            // 客户端断开连接等写出失败，游标随查询一起关闭
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("商品导出完成，格式: {}，耗时: {}ms", format, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 一行商品按 FIELDS 的顺序取值，分类路径从分类树中取
+     */
+    private Object[] values(ResultSet rs) throws SQLException {
+        Long categoryId = rs.getObject(8) == null ? null : rs.getLong(8);
+        return new Object[]{
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getString(4),
+                rs.getBigDecimal(5),
+                rs.getObject(6) == null ? null : rs.getInt(6),
+                rs.getString(7),
+                categoryId,
+                categoryId == null ? null : categoryTree.path(categoryId),
+                rs.getObject(9) == null ? null : rs.getBoolean(9)
+        };
+    }
+
+    /**
+     * CSV：表头为中文，带 BOM 以便 Excel 正确识别中文
+     */
+    private class CsvWriter implements RowCallbackHandler {
+        private final Writer writer;
+
+        CsvWriter(Writer writer) {
+            this.writer = writer;
+            try {
+                writer.write('\uFEFF');
+                writeLine(CSV_HEADER);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            Object[] values = values(rs);
+            String[] fields = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                fields[i] = values[i] == null ? "" : values[i].toString();
+            }
+            try {
+                writeLine(fields);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeLine(String[] fields) throws IOException {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(ExportSupport.escapeCsv(fields[i]));
+            }
+            writer.write("\r\n");
+        }
+    }
+
+    /**
+     * NDJSON：每个商品一行，键为 FIELDS
+     */
+    private class NdjsonWriter implements RowCallbackHandler {
+        private final Writer writer;
+
+        NdjsonWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            Object[] values = values(rs);
+            Map<String, Object> product = new LinkedHashMap<>();
+            for (int i = 0; i < FIELDS.length; i++) {
+                product.put(FIELDS[i], values[i]);
+            }
+            try {
+                writer.write(objectMapper.writeValueAsString(product));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.onlineshopping.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+/**
+ * 商品列表筛选条件，为空的条件不生效
+ *
+ * @param categoryIds 分类及其所有子分类的ID
+ */
+public record ProductFilter(BigDecimal minPrice, BigDecimal maxPrice, Collection<Long> categoryIds, boolean inStock) {
+}
@@ -0,0 +1,856 @@
+package com.example.onlineshopping.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 商品批量导入（CSV / NDJSON）
+ *
+ * 上传的内容先原样写入临时文件，请求立即返回，之后在后台线程中处理：
+ * 单线程顺序解析，每 chunk-size 行一块交给线程池并行校验（字段格式，分类名称换成ID），
+ * 再按原顺序逐块写入：每块先用 IN 查询找出已存在的商品，然后分别批量 INSERT / UPDATE，一块一个事务。
+ * 批量写入失败时回滚该块并逐行重试，只有出错的行记为失败。
+ * 每块提交后按新旧图片地址批量调整上传文件的引用计数（与 ProductService 逐个 retain / release 的效果相同）。
+ *
+ * 匹配规则：有 id 时按 id 更新（id 不存在记为错误）；否则有 sku 时按 sku 更新，找不到则新增；都没有时新增。
+ * 更新时可选字段留空表示不修改。分类可以给分类ID，也可以给完整路径（"电子产品 > 手机"）或不重名的分类名称，
+ * 分类表在任务开始时从分类树取一次。
+ *
+ * 同一时间只运行一个导入任务，进度和出错的行（最多 max-errors 条）通过 status() 查询。
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO products (sku, name, description, price, stock, image_url, category_id, status, sales, create_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, ?)";
+
+    private static final String UPDATE_SQL =
+            "UPDATE products SET sku = COALESCE(?, sku), name = ?, description = COALESCE(?, description), price = ?, " +
+            "stock = COALESCE(?, stock), image_url = COALESCE(?, image_url), category_id = COALESCE(?, category_id), " +
+            "status = COALESCE(?, status) WHERE id = ?";
+
+    private static final int NAME_MAX_LENGTH = 255;
+    private static final int SKU_MAX_LENGTH = 64;
+    private static final int IMAGE_URL_MAX_LENGTH = 500;
+    /**
+     * DECIMAL(10,2)
+     */
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+
+    /**
+     * 各字段在 ProductExportService.FIELDS 中的下标
+     */
+    private static final int ID = 0;
+    private static final int SKU = 1;
+    private static final int NAME = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int PRICE = 4;
+    private static final int STOCK = 5;
+    private static final int IMAGE_URL = 6;
+    private static final int CATEGORY_ID = 7;
+    private static final int CATEGORY = 8;
+    private static final int STATUS = 9;
+
+    /**
+     * 表头（忽略大小写）到字段下标：ProductExportService 的 NDJSON 键、中文表头，以及常见写法
+     */
+    private static final Map<String, Integer> HEADER_ALIASES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < ProductExportService.FIELDS.length; i++) {
+            HEADER_ALIASES.put(ProductExportService.FIELDS[i].toLowerCase(Locale.ROOT), i);
+            HEADER_ALIASES.put(ProductExportService.CSV_HEADER[i].toLowerCase(Locale.ROOT), i);
+        }
+        HEADER_ALIASES.put("image_url", IMAGE_URL);
+        HEADER_ALIASES.put("category_id", CATEGORY_ID);
+    }
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final CategoryTree categoryTree;
+    private final ProductCatalogCache productCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final SuggestionService suggestionService;
+    private final StockReservationService stockReservationService;
+    private final BlobStore blobStore;
+
+    private final int chunkSize;
+    private final int threads;
+    private final int maxErrors;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>());
+    private volatile String phase = "idle";
+    private volatile String error;
+    private volatile boolean dryRun;
+    private volatile LocalDateTime startTime;
+    private volatile LocalDateTime finishTime;
+
+    public ProductImportService(DataSource dataSource, ObjectMapper objectMapper, CategoryTree categoryTree,
+                                ProductCatalogCache productCatalogCache, ProductSearchIndex productSearchIndex,
+                                SuggestionService suggestionService, StockReservationService stockReservationService,
+                                BlobStore blobStore,
+                                @Value("${product.import.chunk-size:1000}") int chunkSize,
+                                @Value("${product.import.threads:4}") int threads,
+                                @Value("${product.import.max-errors:1000}") int maxErrors) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.categoryTree = categoryTree;
+        this.productCatalogCache = productCatalogCache;
+        this.productSearchIndex = productSearchIndex;
+        this.suggestionService = suggestionService;
+        this.stockReservationService = stockReservationService;
+        this.blobStore = blobStore;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * 出错的行：line 为该行（CSV 记录的第一行）在文件中的行号
+     */
+    public record RowError(long line, String message) {
+    }
+
+    /**
+     * 保存上传内容并在后台线程中开始导入，已经在导入时抛出 IllegalStateException
+     *
+     * @param gzip   上传内容是否经过 gzip 压缩
+     * @param dryRun 只解析和校验，不写数据库
+     */
+    public void start(InputStream content, OrderExportService.Format format, boolean gzip, boolean dryRun) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("商品导入正在进行中");
+        }
+        Path file = null;
+        try {
+            file = Files.createTempFile("product-import-", "." + format.getExtension() + (gzip ? ".gz" : ""));
+            Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            running.set(false);
+            throw e;
+        }
+        Path spooled = file;
+
+        rowsRead.set(0);
+        inserted.set(0);
+        updated.set(0);
+        failed.set(0);
+        skipped.set(0);
+        errors.clear();
+        error = null;
+        phase = "importing";
+        this.dryRun = dryRun;
+        startTime = LocalDateTime.now();
+        finishTime = null;
+
+        Thread thread = new Thread(() -> {
+            try {
+                run(spooled, format, gzip, dryRun);
+                phase = "done";
+            } catch (Exception e) {
+                log.error("商品导入失败", e);
+                error = e.getMessage();
+                phase = "failed";
+            } finally {
+                finishTime = LocalDateTime.now();
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("删除导入临时文件失败: {}", spooled, e);
+                }
+                running.set(false);
+            }
+        }, "product-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 当前阶段、已读取和已写入的行数，以及出错的行
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("phase", phase);
+        status.put("dryRun", dryRun);
+        status.put("startTime", startTime);
+        status.put("finishTime", finishTime);
+        status.put("error", error);
+        status.put("rowsRead", rowsRead.get());
+        status.put("inserted", inserted.get());
+        status.put("updated", updated.get());
+        status.put("failed", failed.get());
+        status.put("skipped", skipped.get());
+        synchronized (errors) {
+            status.put("errors", new ArrayList<>(errors));
+        }
+        return status;
+    }
+
+    private void run(Path file, OrderExportService.Format format, boolean gzip, boolean dryRun) throws Exception {
+        long begin = System.currentTimeMillis();
+        Map<String, Long> categories = categoryTree.lookupTable();
+        Set<Long> categoryIds = new HashSet<>(categories.values());
+
+        AtomicInteger sequence = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "product-import-validate-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 已提交校验、等待按顺序写入的块；数量有上限，解析不会跑到写入前面太远
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        try (InputStream raw = Files.newInputStream(file);
+             InputStream in = gzip ? new GZIPInputStream(raw, 64 * 1024) : raw;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            RecordReader records = format == OrderExportService.Format.CSV ? new CsvRecordReader(reader) : new NdjsonRecordReader(reader);
+            List<RawRecord> batch = new ArrayList<>(chunkSize);
+            RawRecord record;
+            while ((record = records.next()) != null) {
+                batch.add(record);
+                rowsRead.incrementAndGet();
+                if (batch.size() == chunkSize) {
+                    List<RawRecord> rows = batch;
+                    pending.add(executor.submit(() -> validate(rows, categories, categoryIds)));
+                    batch = new ArrayList<>(chunkSize);
+                    while (pending.size() > threads * 2) {
+                        write(pending.poll().get(), dryRun);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<RawRecord> rows = batch;
+                pending.add(executor.submit(() -> validate(rows, categories, categoryIds)));
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll().get(), dryRun);
+            }
+        } finally {
+            executor.shutdownNow();
+            // 中途失败时前面的块已经提交，同样要刷新
+            if (!dryRun && inserted.get() + updated.get() > 0) {
+                refresh();
+            }
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - begin);
+        log.info("商品导入完成：读取 {} 行，新增 {}，更新 {}，失败 {}，耗时 {} s（{} 行/秒）", rowsRead.get(), inserted.get(),
+                updated.get(), failed.get(), elapsed / 1000.0, rowsRead.get() * 1000 / elapsed);
+    }
+
+    /**
+     * 导入写入了数据库后刷新库存计数、商品缓存、搜索索引和搜索建议；
+     * 刷新失败只记录日志，不掩盖导入本身的结果
+     */
+    private void refresh() {
+        phase = "rebuild";
+        try {
+            stockReservationService.evictAll();
+            productCatalogCache.invalidateAll();
+            productSearchIndex.rebuild();
+            suggestionService.markDirty();
+        } catch (RuntimeException e) {
+            log.error("商品导入后刷新缓存失败", e);
+        }
+    }
+
+    // ---------------------------------------------------------------- 校验
+
+    /**
+     * 解析后尚未校验的一行：CSV 已按表头排成 FIELDS 的顺序（values），NDJSON 为原始文本（json）
+     */
+    private record RawRecord(long line, String[] values, String json) {
+    }
+
+    /**
+     * 校验通过的一行，可选字段为空表示不修改（新增时取默认值）
+     */
+    private record ProductRow(long line, Long id, String sku, String name, String description, BigDecimal price,
+                              Integer stock, String imageUrl, Long categoryId, Boolean status) {
+    }
+
+    private record Chunk(List<ProductRow> rows, List<RowError> errors) {
+    }
+
+    private Chunk validate(List<RawRecord> records, Map<String, Long> categories, Set<Long> categoryIds) {
+        List<ProductRow> rows = new ArrayList<>(records.size());
+        List<RowError> rowErrors = new ArrayList<>();
+        for (RawRecord record : records) {
+            try {
+                String[] values = record.values() != null ? record.values() : jsonValues(record.json());
+                rows.add(toRow(record.line(), values, categories, categoryIds));
+            } catch (IllegalArgumentException e) {
+                rowErrors.add(new RowError(record.line(), e.getMessage()));
+            }
+        }
+        return new Chunk(rows, rowErrors);
+    }
+
+    private String[] jsonValues(String json) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("不是有效的 JSON");
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("每行必须是一个 JSON 对象");
+        }
+        String[] values = new String[ProductExportService.FIELDS.length];
+        for (int i = 0; i < values.length; i++) {
+            JsonNode value = node.get(ProductExportService.FIELDS[i]);
+            if (value == null || value.isNull()) {
+                continue;
+            }
+            if (!value.isValueNode()) {
+                throw new IllegalArgumentException(ProductExportService.FIELDS[i] + " 格式不正确");
+            }
+            values[i] = value.asText();
+        }
+        return values;
+    }
+
+    private static ProductRow toRow(long line, String[] values, Map<String, Long> categories, Set<Long> categoryIds) {
+        Long id = parseLong(values[ID], "商品ID");
+        if (id != null && id <= 0) {
+            throw new IllegalArgumentException("商品ID不正确");
+        }
+        String sku = text(values[SKU]);
+        if (sku != null && sku.length() > SKU_MAX_LENGTH) {
+            throw new IllegalArgumentException("商品编码不能超过" + SKU_MAX_LENGTH + "个字符");
+        }
+        String name = text(values[NAME]);
+        if (name == null) {
+            throw new IllegalArgumentException("商品名称不能为空");
+        }
+        if (name.length() > NAME_MAX_LENGTH) {
+            throw new IllegalArgumentException("商品名称不能超过" + NAME_MAX_LENGTH + "个字符");
+        }
+        String price = text(values[PRICE]);
+        if (price == null) {
+            throw new IllegalArgumentException("价格不能为空");
+        }
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(price);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("价格格式不正确: " + price);
+        }
+        if (amount.signum() < 0 || amount.compareTo(MAX_PRICE) > 0 || amount.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("价格必须在0到" + MAX_PRICE + "之间，最多两位小数");
+        }
+        Long stock = parseLong(values[STOCK], "库存");
+        if (stock != null && (stock < 0 || stock > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("库存不正确");
+        }
+        String imageUrl = text(values[IMAGE_URL]);
+        if (imageUrl != null && imageUrl.length() > IMAGE_URL_MAX_LENGTH) {
+            throw new IllegalArgumentException("图片地址不能超过" + IMAGE_URL_MAX_LENGTH + "个字符");
+        }
+
+        Long categoryId = parseLong(values[CATEGORY_ID], "分类ID");
+        if (categoryId != null && !categoryIds.contains(categoryId)) {
+            throw new IllegalArgumentException("分类不存在: " + categoryId);
+        }
+        String category = text(values[CATEGORY]);
+        if (categoryId == null && category != null) {
+            categoryId = categories.get(normalizePath(category));
+            if (categoryId == null) {
+                throw new IllegalArgumentException("分类不存在或重名，请使用完整路径: " + category);
+            }
+        }
+
+        return new ProductRow(line, id, sku, name, text(values[DESCRIPTION]), amount,
+                stock == null ? null : stock.intValue(), imageUrl, categoryId, parseStatus(values[STATUS]));
+    }
+
+    private static String text(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static Long parseLong(String value, String field) {
+        String trimmed = text(value);
+        if (trimmed == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(trimmed);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + "格式不正确: " + trimmed);
+        }
+    }
+
+    private static Boolean parseStatus(String value) {
+        String trimmed = text(value);
+        if (trimmed == null) {
+            return null;
+        }
+        return switch (trimmed.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "上架" -> true;
+            case "false", "0", "下架" -> false;
+            default -> throw new IllegalArgumentException("状态格式不正确: " + trimmed);
+        };
+    }
+
+    /**
+     * 分类路径统一成 CategoryTree 的写法："a>b" → "a > b"
+     */
+    private static String normalizePath(String path) {
+        String[] parts = path.split(">");
+        StringBuilder normalized = new StringBuilder();
+        for (String part : parts) {
+            if (normalized.length() > 0) {
+                normalized.append(" > ");
+            }
+            normalized.append(part.trim());
+        }
+        return normalized.toString();
+    }
+
+    // ---------------------------------------------------------------- 写入
+
+    private void write(Chunk chunk, boolean dryRun) throws SQLException {
+        chunk.errors().forEach(this::recordError);
+        if (dryRun || chunk.rows().isEmpty()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                Plan plan = plan(connection, chunk.rows());
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL);
+                     PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+                    for (ProductRow row : plan.inserts) {
+                        bindInsert(insert, row);
+                        insert.addBatch();
+                    }
+                    for (Map.Entry<ProductRow, Long> entry : plan.updates.entrySet()) {
+                        bindUpdate(update, entry.getKey(), entry.getValue());
+                        update.addBatch();
+                    }
+                    if (!plan.inserts.isEmpty()) {
+                        insert.executeBatch();
+                    }
+                    if (!plan.updates.isEmpty()) {
+                        update.executeBatch();
+                    }
+                }
+                connection.commit();
+                adjustImageRefs(plan);
+                inserted.addAndGet(plan.inserts.size());
+                updated.addAndGet(plan.updates.size());
+                skipped.addAndGet(plan.superseded);
+                plan.errors.forEach(this::recordError);
+            } catch (SQLException e) {
+                connection.rollback();
+                log.debug("批量写入失败，逐行重试: {}", e.getMessage());
+                writeRowByRow(connection, chunk.rows());
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * 逐行写入（每行单独提交），找出具体出错的行
+     */
+    private void writeRowByRow(Connection connection, List<ProductRow> rows) throws SQLException {
+        connection.setAutoCommit(true);
+        for (ProductRow row : rows) {
+            try {
+                Plan plan = plan(connection, List.of(row));
+                if (!plan.errors.isEmpty()) {
+                    plan.errors.forEach(this::recordError);
+                } else if (!plan.inserts.isEmpty()) {
+                    try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                        bindInsert(insert, row);
+                        insert.executeUpdate();
+                    }
+                    adjustImageRefs(plan);
+                    inserted.incrementAndGet();
+                } else {
+                    try (PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+                        bindUpdate(update, row, plan.updates.get(row));
+                        update.executeUpdate();
+                    }
+                    adjustImageRefs(plan);
+                    updated.incrementAndGet();
+                }
+            } catch (SQLException e) {
+                recordError(new RowError(row.line(), "写入失败: " + e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * 提交后调整图片的引用计数：新增的行引用其图片；更新的行换了图片时引用新的、释放旧的（图片留空表示不修改）。
+     * 失败只记日志，引用计数在下次垃圾回收时按商品数据修正
+     */
+    private void adjustImageRefs(Plan plan) {
+        Map<String, Integer> deltas = new HashMap<>();
+        for (ProductRow row : plan.inserts) {
+            if (row.imageUrl() != null) {
+                deltas.merge(row.imageUrl(), 1, Integer::sum);
+            }
+        }
+        // 同一块中可能多行更新同一个商品，按顺序以前一行的图片为旧值
+        Map<Long, String> current = new HashMap<>(plan.imageUrls);
+        plan.updates.forEach((row, id) -> {
+            String old = current.get(id);
+            if (row.imageUrl() != null && !row.imageUrl().equals(old)) {
+                deltas.merge(row.imageUrl(), 1, Integer::sum);
+                if (old != null) {
+                    deltas.merge(old, -1, Integer::sum);
+                }
+                current.put(id, row.imageUrl());
+            }
+        });
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            blobStore.adjustRefCounts(deltas);
+        } catch (RuntimeException e) {
+            log.warn("调整导入商品的图片引用计数失败", e);
+        }
+    }
+
+    /**
+     * 一块中各行是新增还是更新（行 → 商品ID），以及要更新的商品当前的图片地址
+     */
+    private static final class Plan {
+        private final List<ProductRow> inserts = new ArrayList<>();
+        private final Map<ProductRow, Long> updates = new LinkedHashMap<>();
+        private final Map<Long, String> imageUrls = new HashMap<>();
+        private final List<RowError> errors = new ArrayList<>();
+        private int superseded;
+    }
+
+    /**
+     * 用两次 IN 查询确定每行的去向；同一块中 sku 相同的新商品只保留最后一行，前面的行记为跳过
+     */
+    private static Plan plan(Connection connection, List<ProductRow> rows) throws SQLException {
+        Set<Long> ids = new HashSet<>();
+        Set<String> skus = new HashSet<>();
+        for (ProductRow row : rows) {
+            if (row.id() != null) {
+                ids.add(row.id());
+            } else if (row.sku() != null) {
+                skus.add(row.sku());
+            }
+        }
+        Plan plan = new Plan();
+        Map<String, Long> idsBySku = new HashMap<>();
+        if (!ids.isEmpty()) {
+            query(connection, "SELECT id, image_url FROM products WHERE id IN (%s)", ids,
+                    rs -> plan.imageUrls.put(rs.getLong(1), rs.getString(2)));
+        }
+        if (!skus.isEmpty()) {
+            query(connection, "SELECT id, sku, image_url FROM products WHERE sku IN (%s)", skus, rs -> {
+                idsBySku.put(rs.getString(2), rs.getLong(1));
+                plan.imageUrls.put(rs.getLong(1), rs.getString(3));
+            });
+        }
+
+        Map<String, ProductRow> newBySku = new LinkedHashMap<>();
+        for (ProductRow row : rows) {
+            if (row.id() != null) {
+                if (plan.imageUrls.containsKey(row.id())) {
+                    plan.updates.put(row, row.id());
+                } else {
+                    plan.errors.add(new RowError(row.line(), "商品不存在: " + row.id()));
+                }
+            } else if (row.sku() != null && idsBySku.containsKey(row.sku())) {
+                plan.updates.put(row, idsBySku.get(row.sku()));
+            } else if (row.sku() != null) {
+                if (newBySku.put(row.sku(), row) != null) {
+                    plan.superseded++;
+                }
+            } else {
+                plan.inserts.add(row);
+            }
+        }
+        plan.inserts.addAll(newBySku.values());
+        return plan;
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private static void query(Connection connection, String sql, Collection<?> values, RowHandler handler) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(values.size(), "?"));
+        try (PreparedStatement statement = connection.prepareStatement(String.format(sql, placeholders))) {
+            int index = 1;
+            for (Object value : values) {
+                statement.setObject(index++, value);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    private static void bindInsert(PreparedStatement statement, ProductRow row) throws SQLException {
+        statement.setString(1, row.sku());
+        statement.setString(2, row.name());
+        statement.setString(3, row.description());
+        statement.setBigDecimal(4, row.price());
+        statement.setInt(5, row.stock() != null ? row.stock() : 0);
+        statement.setString(6, row.imageUrl());
+        setLong(statement, 7, row.categoryId());
+        statement.setBoolean(8, row.status() == null || row.status());
+        statement.setTimestamp(9, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private static void bindUpdate(PreparedStatement statement, ProductRow row, Long id) throws SQLException {
+        statement.setString(1, row.sku());
+        statement.setString(2, row.name());
+        statement.setString(3, row.description());
+        statement.setBigDecimal(4, row.price());
+        if (row.stock() != null) {
+            statement.setInt(5, row.stock());
+        } else {
+            statement.setNull(5, Types.INTEGER);
+        }
+        statement.setString(6, row.imageUrl());
+        setLong(statement, 7, row.categoryId());
+        if (row.status() != null) {
+            statement.setBoolean(8, row.status());
+        } else {
+            statement.setNull(8, Types.BOOLEAN);
+        }
+        statement.setLong(9, id);
+    }
+
+    private static void setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value != null) {
+            statement.setLong(index, value);
+        } else {
+            statement.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private void recordError(RowError rowError) {
+        failed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < maxErrors) {
+                errors.add(rowError);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 解析
+
+    private interface RecordReader {
+        /**
+         * 下一行，文件结束时返回 null
+         */
+        RawRecord next() throws IOException;
+    }
+
+    /**
+     * NDJSON：每个非空行一个商品，JSON 在校验线程中解析
+     */
+    private static final class NdjsonRecordReader implements RecordReader {
+        private final BufferedReader reader;
+        private long line;
+
+        NdjsonRecordReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public RawRecord next() throws IOException {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (!text.isBlank()) {
+                    return new RawRecord(line, null, text);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * CSV（RFC 4180）：第一行为表头，字段可以用双引号包围，引号内可以有逗号和换行，"" 表示一个引号；
+     * 导出时为防公式加在开头的单引号会去掉。认不出的列忽略，缺少商品名称或价格列时整个文件失败
+     */
+    private static final class CsvRecordReader implements RecordReader {
+        private final Reader reader;
+        private final int[] columns;
+        private long line = 1;
+        private int pushedBack = -2;
+
+        CsvRecordReader(Reader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readFields();
+            if (header == null) {
+                throw new IllegalArgumentException("文件为空");
+            }
+            columns = new int[header.size()];
+            Set<Integer> present = new HashSet<>();
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).trim();
+                if (i == 0 && name.startsWith("\uFEFF")) {
+                    name = name.substring(1);
+                }
+                Integer field = HEADER_ALIASES.get(name.toLowerCase(Locale.ROOT));
+                columns[i] = field == null ? -1 : field;
+                if (field != null) {
+                    present.add(field);
+                }
+            }
+            if (!present.contains(NAME) || !present.contains(PRICE)) {
+                throw new IllegalArgumentException("表头缺少商品名称（name）或价格（price）列");
+            }
+        }
+
+        @Override
+        public RawRecord next() throws IOException {
+            while (true) {
+                long start = line;
+                List<String> fields = readFields();
+                if (fields == null) {
+                    return null;
+                }
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    continue;
+                }
+                String[] values = new String[ProductExportService.FIELDS.length];
+                for (int i = 0; i < fields.size() && i < columns.length; i++) {
+                    if (columns[i] >= 0) {
+                        values[columns[i]] = ExportSupport.unescapeFormula(fields.get(i));
+                    }
+                }
+                return new RawRecord(start, values, null);
+            }
+        }
+
+        /**
+         * 读取一条记录的所有字段，文件结束时返回 null
+         */
+        private List<String> readFields() throws IOException {
+            long start = line;
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean fieldStart = true;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IllegalArgumentException("第 " + start + " 行的引号没有闭合");
+                    }
+                    if (c == '"') {
+                        int next = read();
+                        if (next != '"') {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c == -1 || c == '\n') {
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        pushedBack = next;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    fieldStart = true;
+                    c = read();
+                    continue;
+                } else if (c == '"' && fieldStart) {
+                    quoted = true;
+                } else {
+                    field.append((char) c);
+                }
+                fieldStart = false;
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            int c = reader.read();
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.entity.Category;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 商品搜索倒排索引（进程内）
+ *
+ * 索引商品名称、描述和分类路径三个字段。拉丁文字按单词切分，中日韩文字切成单字和二元组（bigram），
+ * 查询时多个词之间是"与"的关系，最后一个拉丁单词按前缀匹配，按 BM25 打分排序。
+ * 启动时全量构建，商品增删改时增量更新，分类变化时重建。
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex {
+
+    private static final int NAME = 0;
+    private static final int DESCRIPTION = 1;
+    private static final int CATEGORY = 2;
+    private static final int FIELD_COUNT = 3;
+
+    /**
+     * 字段权重：名称 > 分类 > 描述
+     */
+    private static final double[] FIELD_BOOSTS = {3.0, 1.5, 1.0};
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 单个前缀最多展开的词数
+     */
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+
+    private final ProductRepository productRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private Index index = new Index();
+
+    /**
+     * 重建期间的增量修改，重建完成后在新索引上重放
+     */
+    private List<Consumer<Index>> replay;
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * 全量重建索引，构建期间旧索引照常提供查询
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // 重建期间要查询数据库，不用 synchronized，避免在虚拟线程上持锁阻塞时占住载体线程
+        rebuildLock.lock();
+        try {
+            build();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void build() {
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // 构建失败时保留旧索引继续提供查询，只丢弃重放记录
+        Index fresh = new Index();
+        boolean built = false;
+        try {
+            for (Product product : productRepository.findAllWithCategory()) {
+                fresh.put(product.getId(), fields(product));
+            }
+            built = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (built) {
+                    replay.forEach(change -> change.accept(fresh));
+                    index = fresh;
+                }
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("商品搜索索引构建完成，商品数: {}，词项数: {}", fresh.docs.size(), fresh.postings.size());
+    }
+
+    /**
+     * 商品新增或修改后更新索引
+     */
+    public void update(Long productId) {
+        List<Product> products = productRepository.findAllWithCategoryByIdIn(List.of(productId));
+        if (products.isEmpty()) {
+            remove(productId);
+            return;
+        }
+        String[] fields = fields(products.get(0));
+        apply(target -> target.put(productId, fields));
+    }
+
+    /**
+     * 从索引中移除商品
+     */
+    public void remove(Long productId) {
+        apply(target -> target.remove(productId));
+    }
+
+    /**
+     * 搜索商品，返回按相关度排序的全部商品ID（包括已下架的商品，由调用方过滤）
+     */
+    public List<Long> search(String query) {
+        List<Set<String>> groups = parseQuery(query);
+        if (groups.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            return index.search(groups);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (replay != null) {
+                replay.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把查询切成词组：每组是一个查询词可以匹配的索引词（前缀展开后可能有多个）
+     */
+    private List<Set<String>> parseQuery(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = tokenize(query, true);
+        boolean prefixLast = !tokens.isEmpty()
+                && !Character.isWhitespace(query.charAt(query.length() - 1))
+                && !isCjk(tokens.get(tokens.size() - 1).codePointAt(0));
+
+        List<Set<String>> groups = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            Set<String> group = new LinkedHashSet<>();
+            group.add(tokens.get(i));
+            if (prefixLast && i == tokens.size() - 1) {
+                group.addAll(expandPrefix(tokens.get(i)));
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    private List<String> expandPrefix(String prefix) {
+        lock.readLock().lock();
+        try {
+            return index.postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet().stream()
+                    .limit(MAX_PREFIX_EXPANSIONS)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String[] fields(Product product) {
+        String[] fields = new String[FIELD_COUNT];
+        fields[NAME] = product.getName();
+        fields[DESCRIPTION] = product.getDescription();
+        fields[CATEGORY] = categoryPath(product.getCategory());
+        return fields;
+    }
+
+    private static String categoryPath(Category category) {
+        StringBuilder path = new StringBuilder();
+        Set<Long> visited = new HashSet<>();
+        while (category != null && visited.add(category.getId())) {
+            path.append(category.getName()).append(' ');
+            category = category.getParent();
+        }
+        return path.toString();
+    }
+
+    /**
+     * 分词：拉丁字母和数字按单词切分；中日韩文字建索引时切成单字和二元组，
+     * 查询时单字查单字、两个字以上只查二元组
+     */
+    static List<String> tokenize(String text, boolean forQuery) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        List<String> cjkRun = new ArrayList<>();
+
+        int i = 0;
+        while (i < lower.length()) {
+            int codePoint = lower.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isCjk(codePoint)) {
+                flushWord(word, tokens);
+                cjkRun.add(new String(Character.toChars(codePoint)));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                flushCjk(cjkRun, tokens, forQuery);
+                word.appendCodePoint(codePoint);
+            } else {
+                flushWord(word, tokens);
+                flushCjk(cjkRun, tokens, forQuery);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjk(cjkRun, tokens, forQuery);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(List<String> run, List<String> tokens, boolean forQuery) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (!forQuery || run.size() == 1) {
+            tokens.addAll(run);
+        }
+        for (int i = 0; i + 1 < run.size(); i++) {
+            tokens.add(run.get(i) + run.get(i + 1));
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 索引数据本身，读写由外层的读写锁保护
+     */
+    private static class Index {
+        /**
+         * 词项 -> (商品ID -> 各字段词频)，有序以支持前缀展开
+         */
+        private final TreeMap<String, Map<Long, int[]>> postings = new TreeMap<>();
+        private final Map<Long, Doc> docs = new HashMap<>();
+        private final long[] totalLengths = new long[FIELD_COUNT];
+
+        void put(Long productId, String[] fields) {
+            remove(productId);
+
+            int[] lengths = new int[FIELD_COUNT];
+            Map<String, int[]> frequencies = new HashMap<>();
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                List<String> tokens = tokenize(fields[field], false);
+                lengths[field] = tokens.size();
+                totalLengths[field] += tokens.size();
+                for (String token : tokens) {
+                    frequencies.computeIfAbsent(token, t -> new int[FIELD_COUNT])[field]++;
+                }
+            }
+            frequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(productId, tf));
+            docs.put(productId, new Doc(lengths, Set.copyOf(frequencies.keySet())));
+        }
+
+        void remove(Long productId) {
+            Doc doc = docs.remove(productId);
+            if (doc == null) {
+                return;
+            }
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                totalLengths[field] -= doc.lengths[field];
+            }
+            for (String term : doc.terms) {
+                Map<Long, int[]> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(productId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        List<Long> search(List<Set<String>> groups) {
+            Map<Long, Double> scores = null;
+            for (Set<String> group : groups) {
+                Map<Long, Double> groupScores = scoreGroup(group);
+                if (scores == null) {
+                    scores = groupScores;
+                } else {
+                    // 所有查询词都要命中
+                    scores.keySet().retainAll(groupScores.keySet());
+                    Map<Long, Double> merged = scores;
+                    groupScores.forEach((id, score) -> merged.computeIfPresent(id, (k, v) -> v + score));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.<Long, Double>comparingByKey()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * 一个查询词的得分：展开出的多个索引词中取每个商品的最高分
+         */
+        private Map<Long, Double> scoreGroup(Collection<String> terms) {
+            Map<Long, Double> scores = new HashMap<>();
+            int docCount = docs.size();
+            for (String term : terms) {
+                Map<Long, int[]> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((productId, tf) -> {
+                    double score = idf * fieldScore(tf, docs.get(productId).lengths, docCount);
+                    scores.merge(productId, score, Math::max);
+                });
+            }
+            return scores;
+        }
+
+        private double fieldScore(int[] tf, int[] lengths, int docCount) {
+            double score = 0;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (tf[field] == 0) {
+                    continue;
+                }
+                double averageLength = Math.max(1.0, (double) totalLengths[field] / docCount);
+                double norm = K1 * (1 - B + B * lengths[field] / averageLength);
+                score += FIELD_BOOSTS[field] * tf[field] * (K1 + 1) / (tf[field] + norm);
+            }
+            return score;
+        }
+    }
+
+    private record Doc(int[] lengths, Set<String> terms) {
+    }
+}
@@ -1,19 +1,44 @@
 package com.example.onlineshopping.service;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
+import com.example.onlineshopping.dto.ProductDto;
+import com.example.onlineshopping.dto.ProductPageDto;
 import com.example.onlineshopping.entity.Product;
 import com.example.onlineshopping.repository.ProductRepository;
 
 @Service
 public class ProductService {
+    private static final int SEARCH_RESOLVE_BATCH = 100;
+
     private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final ProductCatalogCache productCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final SuggestionService suggestionService;
+    private final CategoryService categoryService;
+    private final BlobStore blobStore;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, StockReservationService stockReservationService,
+                          ProductCatalogCache productCatalogCache, ProductSearchIndex productSearchIndex,
+                          SuggestionService suggestionService, CategoryService categoryService,
+                          BlobStore blobStore) {
         this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
+        this.productCatalogCache = productCatalogCache;
+        this.productSearchIndex = productSearchIndex;
+        this.suggestionService = suggestionService;
+        this.categoryService = categoryService;
+        this.blobStore = blobStore;
     }
 
     public List<Product> findAll() {
@@ -25,19 +50,33 @@ public class ProductService {
     }
 
     public Product save(Product product) {
-        return productRepository.save(product);
+        boolean isNew = product.getId() == null;
+        Product saved = productRepository.save(product);
+        if (isNew) {
+            blobStore.retain(saved.getImageUrl());
+        }
+        afterWrite(saved.getId());
+        return saved;
     }
 
     public Product update(Long id, Product product) {
         return productRepository.findById(id)
                 .map(existingProduct -> {
+                    String oldImageUrl = existingProduct.getImageUrl();
                     existingProduct.setName(product.getName());
                     existingProduct.setDescription(product.getDescription());
                     existingProduct.setPrice(product.getPrice());
                     existingProduct.setStock(product.getStock());
                     existingProduct.setImageUrl(product.getImageUrl());
                     existingProduct.setCategory(product.getCategory());
-                    return productRepository.save(existingProduct);
+                    Product saved = productRepository.save(existingProduct);
+                    // 图片文件的引用计数
+                    if (!Objects.equals(oldImageUrl, saved.getImageUrl())) {
+                        blobStore.retain(saved.getImageUrl());
+                        blobStore.release(oldImageUrl);
+                    }
+                    afterWrite(id);
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Product not found"));
     }
@@ -46,6 +85,7 @@ public class ProductService {
         productRepository.findById(id).ifPresent(product -> {
             product.setStatus(false);
             productRepository.save(product);
+            afterWrite(id);
         });
     }
 
@@ -53,7 +93,88 @@ public class ProductService {
         return productRepository.findByCategoryIdAndStatusTrue(categoryId);
     }
 
-    public List<Product> searchProducts(String keyword) {
-        return productRepository.searchProducts(keyword);
+    /**
+     * 通过倒排索引搜索上架商品，按相关度排序分页
+     */
+    public List<ProductDto> searchProducts(String keyword, int page, int size) {
+        List<Long> ranked = productSearchIndex.search(keyword);
+        // 页码很大时 page * size 会超出 int，按 long 计算；超过命中数的页直接返回空
+        long offset = (long) page * size;
+        if (offset >= ranked.size()) {
+            return List.of();
+        }
+        int wanted = (int) Math.min(offset + size, ranked.size());
+        List<ProductDto> active = new ArrayList<>();
+
+        // 按相关度顺序分批补全商品信息，跳过已下架的商品，凑够当前页为止
+        for (int from = 0; from < ranked.size() && active.size() < wanted; from += SEARCH_RESOLVE_BATCH) {
+            List<Long> batch = ranked.subList(from, Math.min(from + SEARCH_RESOLVE_BATCH, ranked.size()));
+            Map<Long, ProductDto> products = productCatalogCache.findAllByIds(batch);
+            for (Long id : batch) {
+                ProductDto product = products.get(id);
+                if (product != null && Boolean.TRUE.equals(product.getStatus())) {
+                    active.add(product);
+                }
+            }
+        }
+
+        int from = (int) Math.min(offset, active.size());
+        return active.subList(from, Math.min(from + size, active.size()));
+    }
+
+    /**
+     * 键集分页查询上架商品：按 (排序字段, id) 定位到上一页末尾继续读取，翻页代价与页码无关
+     *
+     * @param categoryId 分类ID，包括其所有子分类下的商品
+     * @param cursor     上一页返回的游标，第一页传 null
+     */
+    public ProductPageDto findPage(ProductSort sort, boolean ascending, BigDecimal minPrice, BigDecimal maxPrice,
+                                   Long categoryId, boolean inStock, String cursor, int size) {
+        ProductCursor after = cursor == null || cursor.isBlank() ? null : ProductCursor.decode(cursor, sort, ascending);
+
+        Collection<Long> categoryIds = null;
+        if (categoryId != null) {
+            categoryIds = categoryService.findSubtreeIds(categoryId);
+            if (categoryIds.isEmpty()) {
+                return new ProductPageDto(List.of(), null, 0L);
+            }
+        }
+        ProductFilter filter = new ProductFilter(minPrice, maxPrice, categoryIds, inStock);
+
+        // 总数只在第一页统计一次，之后随游标传递
+        long total = after != null ? after.total() : productRepository.countActive(filter, sort);
+
+        // 多取一条判断是否还有下一页
+        List<Object[]> rows = productRepository.seekActive(filter, sort, ascending,
+                after != null ? after.key() : null, after != null ? after.id() : null, size + 1);
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+
+        List<Long> ids = rows.stream().map(row -> (Long) row[0]).collect(Collectors.toList());
+        Map<Long, ProductDto> products = productCatalogCache.findAllByIds(ids);
+        List<ProductDto> items = ids.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            Object[] last = rows.get(rows.size() - 1);
+            nextCursor = new ProductCursor(sort, ascending, (Comparable<?>) last[1], (Long) last[0], total).encode();
+        }
+        return new ProductPageDto(items, nextCursor, total);
+    }
+
+    /**
+     * 商品被直接修改后，丢弃内存库存计数器、失效目录缓存、更新搜索索引并标记搜索建议待重建
+     */
+    private void afterWrite(Long productId) {
+        stockReservationService.evict(productId);
+        productCatalogCache.invalidate(productId);
+        productCatalogCache.invalidateListings();
+        productSearchIndex.update(productId);
+        suggestionService.markDirty();
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.example.onlineshopping.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 商品列表的排序字段，同时负责分页游标中排序值的序列化
+ */
+public enum ProductSort {
+    PRICE("price") {
+        @Override
+        Comparable<?> parseKey(String value) {
+            return new BigDecimal(value);
+        }
+    },
+    SALES("sales") {
+        @Override
+        Comparable<?> parseKey(String value) {
+            return Integer.valueOf(value);
+        }
+    },
+    CREATE_TIME("createTime") {
+        @Override
+        Comparable<?> parseKey(String value) {
+            return LocalDateTime.parse(value);
+        }
+    };
+
+    private final String property;
+
+    ProductSort(String property) {
+        this.property = property;
+    }
+
+    /**
+     * 实体属性名，也是接口参数中的排序名
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    abstract Comparable<?> parseKey(String value);
+
+    String formatKey(Object key) {
+        return key instanceof BigDecimal decimal ? decimal.toPlainString() : key.toString();
+    }
+
+    public static ProductSort fromProperty(String property) {
+        for (ProductSort sort : values()) {
+            if (sort.property.equals(property)) {
+                return sort;
+            }
+        }
+        throw new RuntimeException("不支持的排序字段: " + property);
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.entity.Order;
+import com.example.onlineshopping.entity.OrderItem;
+import com.example.onlineshopping.entity.User;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 销售统计汇总服务
+ *
+ * 订单和用户的变化在事务提交后累加到内存中的增量计数器，定时批量合并进 analytics_rollups 表，
+ * 下单路径上不会争抢热点汇总行。统计接口只读取汇总表（加上尚未写入的内存增量），与订单数量无关。
+ * 汇总表为空时（首次启动）从订单、用户表按天/月分组重建一次，之后只做增量更新。
+ *
+ * 重建以一个整秒时间点为分界：之前提交的变化由重建统计，之后的只计入增量。分界点保存在汇总表中，
+ * 各实例写入增量时在同一事务中读取（加锁，与重建互斥），丢弃分界点之前记录的增量，多实例部署时也不会重复计算。
+ */
+@Slf4j
+@Service
+public class SalesAnalyticsService {
+
+    /**
+     * 每日销售额，桶为日期（yyyy-MM-dd），不含已取消的订单
+     */
+    public static final String DAILY_SALES = "daily_sales";
+
+    /**
+     * 订单状态分布，桶为状态名
+     */
+    public static final String ORDER_STATUS = "order_status";
+
+    /**
+     * 每月新增用户，桶为月份（yyyy-MM）
+     */
+    public static final String MONTHLY_USERS = "monthly_users";
+
+    /**
+     * 分类销售额（来自订单项），桶为分类ID，数量为售出件数，不含已取消的订单
+     */
+    public static final String CATEGORY_SALES = "category_sales";
+
+    /**
+     * 汇总表中保存重建分界点的行（item_count 为 epoch 秒），不是统计指标
+     */
+    private static final String REBUILD_CUTOFF = "rebuild_cutoff";
+
+    private static final String CUTOFF_SQL =
+            "SELECT item_count FROM analytics_rollups WHERE metric = '" + REBUILD_CUTOFF + "' FOR UPDATE";
+
+    private static final String CUTOFF_UPSERT_SQL =
+            "INSERT INTO analytics_rollups (metric, bucket, item_count, amount) VALUES ('" + REBUILD_CUTOFF + "', '', ?, 0) " +
+            "ON DUPLICATE KEY UPDATE item_count = VALUES(item_count)";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO analytics_rollups (metric, bucket, item_count, amount) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE item_count = item_count + VALUES(item_count), amount = amount + VALUES(amount)";
+
+    private static final String SELECT_SQL =
+            "SELECT bucket, item_count, amount FROM analytics_rollups WHERE metric = ? AND bucket >= ?";
+
+    private static final String REBUILD_DAILY_SALES_SQL =
+            "SELECT CAST(create_time AS DATE), COUNT(*), SUM(total_amount) FROM orders " +
+            "WHERE status <> 'CANCELLED' AND create_time < ? GROUP BY CAST(create_time AS DATE)";
+
+    private static final String REBUILD_ORDER_STATUS_SQL =
+            "SELECT status, COUNT(*) FROM orders WHERE status IS NOT NULL " +
+            "AND (create_time IS NULL OR create_time < ?) GROUP BY status";
+
+    private static final String REBUILD_MONTHLY_USERS_SQL =
+            "SELECT YEAR(create_time), MONTH(create_time), COUNT(*) FROM users " +
+            "WHERE create_time < ? GROUP BY YEAR(create_time), MONTH(create_time)";
+
+    private static final String REBUILD_CATEGORY_SALES_SQL =
+            "SELECT p.category_id, SUM(oi.quantity), SUM(oi.subtotal) FROM order_items oi " +
+            "JOIN orders o ON o.id = oi.order_id JOIN products p ON p.id = oi.product_id " +
+            "WHERE o.status <> 'CANCELLED' AND (o.create_time IS NULL OR o.create_time < ?) " +
+            "AND p.category_id IS NOT NULL GROUP BY p.category_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * 重建的几条统计查询在同一个一致性快照中执行
+     */
+    private final TransactionTemplate rebuildTemplate;
+
+    /**
+     * 尚未写入数据库的增量，按记录时间（秒）分开；记录增量时持有读锁（可并发），切换新的增量表时持有写锁
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile Map<Slot, Delta> pending = new ConcurrentHashMap<>();
+    private volatile Map<Slot, Delta> flushing = Map.of();
+    /**
+     * 已知的重建分界点（epoch 秒），在此之前记录的增量已经包含在重建结果中
+     */
+    private volatile long cutoff;
+
+    public SalesAnalyticsService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.rebuildTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.rebuildTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * 订单创建
+     */
+    public void orderCreated(Order order) {
+        List<Change> changes = new ArrayList<>();
+        changes.add(new Change(ORDER_STATUS, order.getStatus().name(), 1, BigDecimal.ZERO));
+        addSales(changes, order, 1);
+        afterCommit(changes);
+    }
+
+    /**
+     * 订单状态变化，取消订单时从销售额中扣除
+     */
+    public void orderStatusChanged(Order order, Order.OrderStatus oldStatus, Order.OrderStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        List<Change> changes = new ArrayList<>();
+        if (oldStatus != null) {
+            changes.add(new Change(ORDER_STATUS, oldStatus.name(), -1, BigDecimal.ZERO));
+        }
+        changes.add(new Change(ORDER_STATUS, newStatus.name(), 1, BigDecimal.ZERO));
+        if (newStatus == Order.OrderStatus.CANCELLED) {
+            addSales(changes, order, -1);
+        } else if (oldStatus == Order.OrderStatus.CANCELLED) {
+            addSales(changes, order, 1);
+        }
+        afterCommit(changes);
+    }
+
+    /**
+     * 订单删除（只有已取消的订单可以删除，销售额在取消时已经扣除）
+     */
+    public void orderDeleted(Order order) {
+        afterCommit(List.of(new Change(ORDER_STATUS, order.getStatus().name(), -1, BigDecimal.ZERO)));
+    }
+
+    /**
+     * 新用户注册
+     */
+    public void userRegistered(User user) {
+        LocalDateTime createTime = user.getCreateTime() != null ? user.getCreateTime() : LocalDateTime.now();
+        afterCommit(List.of(new Change(MONTHLY_USERS, monthBucket(createTime.getYear(), createTime.getMonthValue()), 1, BigDecimal.ZERO)));
+    }
+
+    /**
+     * 读取指标的所有桶（按桶排序），fromBucket 为 null 时读取全部
+     */
+    public Map<String, Rollup> rollups(String metric, String fromBucket) {
+        Map<String, Rollup> result = new TreeMap<>();
+        String from = fromBucket != null ? fromBucket : "";
+        jdbcTemplate.query(SELECT_SQL, rs -> {
+            result.put(rs.getString(1), new Rollup(rs.getLong(2), rs.getBigDecimal(3)));
+        }, metric, from);
+
+        // 加上还没有写入数据库的增量
+        long known = cutoff;
+        for (Map<Slot, Delta> deltas : List.of(flushing, pending)) {
+            deltas.forEach((slot, delta) -> {
+                Key key = slot.key();
+                if (slot.second() >= known && key.metric.equals(metric) && key.bucket.compareTo(from) >= 0) {
+                    result.merge(key.bucket, delta.toRollup(), Rollup::plus);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 把内存中的增量批量写入汇总表
+     */
+    @Scheduled(fixedDelayString = "${analytics.flush-interval:5000}")
+    @PreDestroy
+    public void flush() {
+        flushLock.lock();
+        try {
+            swapLock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                flushing = pending;
+                pending = new ConcurrentHashMap<>();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            Map<Slot, Delta> batch = flushing;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // 加锁读取分界点：其他实例正在重建时等待其完成，分界点之前的增量已包含在重建结果中
+                    List<Long> cutoffs = jdbcTemplate.queryForList(CUTOFF_SQL, Long.class);
+                    long current = cutoffs.isEmpty() ? 0 : cutoffs.get(0);
+                    Map<Key, Rollup> merged = new HashMap<>();
+                    batch.forEach((slot, delta) -> {
+                        if (slot.second() >= current) {
+                            merged.merge(slot.key(), delta.toRollup(), Rollup::plus);
+                        }
+                    });
+                    List<Object[]> batchArgs = new ArrayList<>();
+                    merged.forEach((key, rollup) ->
+                            batchArgs.add(new Object[]{key.metric, key.bucket, rollup.count(), rollup.amount()}));
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+                    cutoff = current;
+                });
+            } catch (RuntimeException e) {
+                // 写入失败时把增量放回，下一轮重试
+                log.error("统计增量写入失败，稍后重试", e);
+                batch.forEach((slot, delta) -> record(slot, delta.count.sum(), delta.cents.sum()));
+            } finally {
+                flushing = Map.of();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 汇总表为空时（首次部署）从业务表重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM analytics_rollups", Long.class);
+        if (rows == null || rows == 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 从订单、订单项和用户表分组统计，全量重建汇总表（用于首次部署或人工校正）
+     *
+     * 等到下一个整秒作为分界点，只统计之前创建的订单和用户；先写入分界点（锁住该行，其他实例的增量写入等待重建完成），
+     * 再在同一个快照中执行统计查询。各实例之后只写入分界点之后记录的增量
+     */
+    public void rebuild() {
+        flushLock.lock();
+        try {
+            long rebuildCutoff = System.currentTimeMillis() / 1000 + 1;
+            long wait = rebuildCutoff * 1000 - System.currentTimeMillis();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("统计汇总表重建被中断", e);
+                }
+            }
+            Timestamp before = new Timestamp(rebuildCutoff * 1000);
+
+            rebuildTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(CUTOFF_UPSERT_SQL, rebuildCutoff);
+
+                List<Object[]> batchArgs = new ArrayList<>();
+                jdbcTemplate.query(REBUILD_DAILY_SALES_SQL, rs -> {
+                    batchArgs.add(new Object[]{DAILY_SALES, rs.getDate(1).toLocalDate().toString(), rs.getLong(2), rs.getBigDecimal(3)});
+                }, before);
+                jdbcTemplate.query(REBUILD_ORDER_STATUS_SQL, rs -> {
+                    batchArgs.add(new Object[]{ORDER_STATUS, rs.getString(1), rs.getLong(2), BigDecimal.ZERO});
+                }, before);
+                jdbcTemplate.query(REBUILD_MONTHLY_USERS_SQL, rs -> {
+                    batchArgs.add(new Object[]{MONTHLY_USERS, monthBucket(rs.getInt(1), rs.getInt(2)), rs.getLong(3), BigDecimal.ZERO});
+                }, before);
+                jdbcTemplate.query(REBUILD_CATEGORY_SALES_SQL, rs -> {
+                    batchArgs.add(new Object[]{CATEGORY_SALES, Long.toString(rs.getLong(1)), rs.getLong(2), rs.getBigDecimal(3)});
+                }, before);
+
+                jdbcTemplate.update("DELETE FROM analytics_rollups WHERE metric <> '" + REBUILD_CUTOFF + "'");
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+                log.info("统计汇总表重建完成，汇总行数: {}", batchArgs.size());
+            });
+            cutoff = rebuildCutoff;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private static void addSales(List<Change> changes, Order order, int sign) {
+        if (order.getCreateTime() != null) {
+            changes.add(new Change(DAILY_SALES, order.getCreateTime().toLocalDate().toString(), sign,
+                    order.getTotalAmount().multiply(BigDecimal.valueOf(sign))));
+        }
+        for (OrderItem item : order.getOrderItems()) {
+            if (item.getProduct() != null && item.getProduct().getCategory() != null) {
+                changes.add(new Change(CATEGORY_SALES, item.getProduct().getCategory().getId().toString(),
+                        (long) sign * item.getQuantity(), item.getSubtotal().multiply(BigDecimal.valueOf(sign))));
+            }
+        }
+    }
+
+    /**
+     * 在调用时就确定增量（实体之后可能被修改），事务提交后才计入；没有事务时立即计入
+     */
+    private void afterCommit(List<Change> changes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changes.forEach(this::apply);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changes.forEach(SalesAnalyticsService.this::apply);
+            }
+        });
+    }
+
+    private void apply(Change change) {
+        Slot slot = new Slot(new Key(change.metric, change.bucket), System.currentTimeMillis() / 1000);
+        record(slot, change.count, change.amount.movePointRight(2).longValue());
+    }
+
+    private void record(Slot slot, long count, long cents) {
+        swapLock.readLock().lock();
+        try {
+            Delta delta = pending.computeIfAbsent(slot, k -> new Delta());
+            delta.count.add(count);
+            delta.cents.add(cents);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static String monthBucket(int year, int month) {
+        return String.format("%d-%02d", year, month);
+    }
+
+    /**
+     * 一个桶的累计数量和金额
+     */
+    public record Rollup(long count, BigDecimal amount) {
+        Rollup plus(Rollup other) {
+            return new Rollup(count + other.count, amount.add(other.amount));
+        }
+    }
+
+    private record Key(String metric, String bucket) {
+    }
+
+    /**
+     * 增量按记录时间（epoch 秒）分开，写入时与重建分界点比较
+     */
+    private record Slot(Key key, long second) {
+    }
+
+    private record Change(String metric, String bucket, long count, BigDecimal amount) {
+    }
+
+    /**
+     * 金额以分为单位累加，避免并发累加 BigDecimal
+     */
+    private static class Delta {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder cents = new LongAdder();
+
+        Rollup toRollup() {
+            return new Rollup(count.sum(), BigDecimal.valueOf(cents.sum(), 2));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 库存预占服务
+ *
+ * 数据库中的库存通过带条件的原子扣减（stock >= 数量）修改，不再先读后写，避免超卖，所有商品行在一个JDBC批次中完成；
+ * 库存不足的热点商品会在内存中保留一个短期计数器，后续请求直接在内存中被拒绝，不再争抢数据库行锁。
+ * 预占在所属事务提交时生效（commit），事务回滚时自动归还（release）。
+ */
+@Slf4j
+@Service
+public class StockReservationService {
+
+    /**
+     * 内存计数器的有效期，过期后重新以数据库为准
+     */
+    private static final long COUNTER_TTL_MILLIS = 5000;
+
+    /**
+     * 带条件的原子扣减：库存足够才扣减并累加销量，库存扣完时自动下架
+     * status 写在 stock 之前，MySQL 按顺序赋值时也以扣减前的库存判断
+     */
+    private static final String DECREMENT_STOCK_SQL =
+            "UPDATE products SET status = CASE WHEN stock = ? THEN FALSE ELSE status END, " +
+            "stock = stock - ?, sales = COALESCE(sales, 0) + ? WHERE id = ? AND stock >= ?";
+
+    /**
+     * 归还库存，归还后库存大于0，恢复上架
+     */
+    private static final String INCREMENT_STOCK_SQL =
+            "UPDATE products SET stock = stock + ?, status = TRUE WHERE id = ?";
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductCatalogCache productCatalogCache;
+    private final SuggestionService suggestionService;
+
+    /**
+     * 商品ID -> 内存库存计数器，按商品分散在 ConcurrentHashMap 的各个桶中，没有全局锁
+     */
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+
+    public StockReservationService(ProductRepository productRepository, JdbcTemplate jdbcTemplate,
+                                   ProductCatalogCache productCatalogCache, SuggestionService suggestionService) {
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.productCatalogCache = productCatalogCache;
+        this.suggestionService = suggestionService;
+    }
+
+    /**
+     * 预占库存（商品ID -> 数量），任一商品库存不足时整体失败
+     * 按商品ID顺序扣减，保证并发下单时加锁顺序一致，不会互相死锁
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Map<Long, Integer> quantities) {
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        List<Hold> holds = new ArrayList<>();
+        try {
+            List<Object[]> batchArgs = new ArrayList<>();
+            for (Map.Entry<Long, Integer> line : sorted.entrySet()) {
+                Long productId = line.getKey();
+                int quantity = line.getValue();
+
+                StockCounter counter = currentCounter(productId);
+                if (counter != null) {
+                    if (!counter.tryTake(quantity)) {
+                        throw new RuntimeException("商品库存不足，商品ID: " + productId);
+                    }
+                    holds.add(new Hold(counter, quantity));
+                }
+                batchArgs.add(new Object[]{quantity, quantity, quantity, productId, quantity});
+            }
+
+            // 所有商品的扣减作为一个JDBC批次发送
+            int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, batchArgs);
+            int index = 0;
+            for (Long productId : sorted.keySet()) {
+                if (updated[index++] == 0) {
+                    // 数据库中库存不足，用当前库存重新建立计数器，后续请求直接在内存中拒绝
+                    seed(productId);
+                    throw new RuntimeException("商品库存不足，商品ID: " + productId);
+                }
+            }
+        } catch (RuntimeException e) {
+            giveBack(holds);
+            throw e;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    // 库存、销量和上下架状态都变了，失效商品缓存（售罄下架的商品在列表读取时过滤）
+                    sorted.keySet().forEach(productCatalogCache::invalidate);
+                    // 销量是搜索建议的排序权重
+                    suggestionService.markDirty();
+                } else {
+                    giveBack(holds);
+                }
+            }
+        });
+    }
+
+    /**
+     * 归还库存（订单取消时调用），事务提交后同步到内存计数器
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        List<Object[]> batchArgs = new ArrayList<>();
+        sorted.forEach((productId, quantity) -> batchArgs.add(new Object[]{quantity, productId}));
+        jdbcTemplate.batchUpdate(INCREMENT_STOCK_SQL, batchArgs);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                sorted.forEach((productId, quantity) -> {
+                    StockCounter counter = counters.get(productId);
+                    if (counter != null) {
+                        counter.available.addAndGet(quantity);
+                    }
+                    productCatalogCache.invalidate(productId);
+                });
+                // 售罄下架的商品可能重新上架
+                productCatalogCache.invalidateListings();
+                suggestionService.markDirty();
+            }
+        });
+    }
+
+    /**
+     * 丢弃商品的内存计数器（商品信息或库存被直接修改时调用）
+     */
+    public void evict(Long productId) {
+        if (productId != null) {
+            counters.remove(productId);
+        }
+    }
+
+    /**
+     * 丢弃所有内存计数器（批量导入等直接修改大量商品时调用）
+     */
+    public void evictAll() {
+        counters.clear();
+    }
+
+    private StockCounter currentCounter(Long productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter != null && counter.isExpired()) {
+            counters.remove(productId, counter);
+            return null;
+        }
+        return counter;
+    }
+
+    private void seed(Long productId) {
+        Integer stock = productRepository.findStockById(productId);
+        if (stock == null) {
+            counters.remove(productId);
+            return;
+        }
+        counters.put(productId, new StockCounter(stock));
+        log.debug("商品 {} 库存不足，建立内存库存计数器: {}", productId, stock);
+    }
+
+    private static void giveBack(List<Hold> holds) {
+        holds.forEach(hold -> hold.counter.available.addAndGet(hold.quantity));
+    }
+
+    private static class StockCounter {
+        private final AtomicInteger available;
+        private final long seededAt = System.currentTimeMillis();
+
+        StockCounter(int available) {
+            this.available = new AtomicInteger(available);
+        }
+
+        boolean tryTake(int quantity) {
+            int current;
+            do {
+                current = available.get();
+                if (current < quantity) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - quantity));
+            return true;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - seededAt > COUNTER_TTL_MILLIS;
+        }
+    }
+
+    private record Hold(StockCounter counter, int quantity) {
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.dto.SuggestionDto;
+import com.example.onlineshopping.entity.Category;
+import com.example.onlineshopping.repository.CategoryRepository;
+import com.example.onlineshopping.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 搜索建议服务（输入即搜索）
+ *
+ * 用商品名称和分类名称构建一棵前缀树，每个节点预先保存该前缀下权重（销量）最高的若干条建议，
+ * 查询只需沿前缀走到节点，耗时与商品数量无关。前缀树构建完成后不再修改，
+ * 数据变化时标记为脏，由定时任务在后台重建后整体替换，读取方从不加锁。
+ */
+@Slf4j
+@Service
+public class SuggestionService {
+
+    /**
+     * 每个节点保存的建议条数，也是单次查询的上限
+     */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+
+    private volatile Trie trie = Trie.EMPTY;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    public SuggestionService(ProductRepository productRepository, CategoryRepository categoryRepository) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * 获取前缀对应的建议，按权重从高到低
+     */
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return trie.lookup(normalize(prefix), Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    /**
+     * 商品或分类变化后调用，下一轮定时任务重建
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${suggest.rebuild-interval:30000}")
+    public void rebuildIfDirty() {
+        if (dirty.compareAndSet(true, false)) {
+            rebuild();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        TrieBuilder builder = new TrieBuilder();
+
+        for (Object[] row : productRepository.findActiveNamesAndSales()) {
+            builder.add(new SuggestionDto("product", (Long) row[0], (String) row[1], ((Number) row[2]).longValue()));
+        }
+
+        Map<Long, Long> categorySales = new HashMap<>();
+        for (Object[] row : productRepository.sumSalesByCategory()) {
+            categorySales.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        for (Category category : categoryRepository.findByStatusTrue()) {
+            builder.add(new SuggestionDto("category", category.getId(), category.getName(),
+                    categorySales.getOrDefault(category.getId(), 0L)));
+        }
+
+        trie = builder.build();
+        log.debug("搜索建议前缀树重建完成，建议数: {}", trie.suggestions.length);
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 构建完成后只读的紧凑前缀树：子节点按字符排序存放在数组中，二分查找
+     */
+    private static final class Trie {
+        private static final Trie EMPTY = new Trie(new Node(new char[0], new Node[0], new int[0]), new SuggestionDto[0]);
+
+        private final Node root;
+        private final SuggestionDto[] suggestions;
+
+        private Trie(Node root, SuggestionDto[] suggestions) {
+            this.root = root;
+            this.suggestions = suggestions;
+        }
+
+        List<SuggestionDto> lookup(String prefix, int limit) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            List<SuggestionDto> result = new ArrayList<>(Math.min(limit, node.top.length));
+            for (int i = 0; i < node.top.length && i < limit; i++) {
+                result.add(suggestions[node.top[i]]);
+            }
+            return result;
+        }
+    }
+
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final int[] top;
+
+        private Node(char[] keys, Node[] children, int[] top) {
+            this.keys = keys;
+            this.children = children;
+            this.top = top;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    /**
+     * 构建用的可变前缀树
+     */
+    private static final class TrieBuilder {
+        private final List<SuggestionDto> suggestions = new ArrayList<>();
+        private final BuilderNode root = new BuilderNode();
+
+        void add(SuggestionDto suggestion) {
+            if (suggestion.getText() == null || suggestion.getText().isBlank()) {
+                return;
+            }
+            int index = suggestions.size();
+            suggestions.add(suggestion);
+
+            // 整个名称作为一个键，名称中每个单词的开头也作为键（"pro" 可以匹配 "MacBook Pro"）
+            String text = normalize(suggestion.getText());
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(text);
+            for (int i = 1; i < text.length(); i++) {
+                if (Character.isWhitespace(text.charAt(i - 1)) && !Character.isWhitespace(text.charAt(i))) {
+                    keys.add(text.substring(i));
+                }
+            }
+            keys.forEach(key -> insert(key, index));
+        }
+
+        private void insert(String key, int index) {
+            BuilderNode node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new BuilderNode());
+            }
+            node.terminals.add(index);
+        }
+
+        Trie build() {
+            SuggestionDto[] array = suggestions.toArray(new SuggestionDto[0]);
+            Comparator<Integer> byWeight = Comparator.<Integer>comparingLong(i -> array[i].getWeight()).reversed()
+                    .thenComparing(i -> array[i].getText());
+            return new Trie(freeze(root, byWeight), array);
+        }
+
+        /**
+         * 自底向上合并子节点的建议，只保留权重最高的若干条
+         */
+        private Node freeze(BuilderNode node, Comparator<Integer> byWeight) {
+            char[] keys = new char[node.children.size()];
+            Node[] children = new Node[node.children.size()];
+            Set<Integer> candidates = new LinkedHashSet<>(node.terminals);
+
+            int i = 0;
+            for (Map.Entry<Character, BuilderNode> entry : node.children.entrySet()) {
+                keys[i] = entry.getKey();
+                children[i] = freeze(entry.getValue(), byWeight);
+                for (int index : children[i].top) {
+                    candidates.add(index);
+                }
+                i++;
+            }
+
+            int[] top = candidates.stream()
+                    .sorted(byWeight)
+                    .limit(MAX_SUGGESTIONS)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            return new Node(keys, children, top);
+        }
+    }
+
+    private static final class BuilderNode {
+        private final TreeMap<Character, BuilderNode> children = new TreeMap<>();
+        private final List<Integer> terminals = new ArrayList<>();
+    }
+}
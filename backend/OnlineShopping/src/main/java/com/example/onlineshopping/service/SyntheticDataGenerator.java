@@ -0,0 +1,554 @@
+package com.example.onlineshopping.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合成数据生成器（大规模压测数据）
+ *
+ * 批量生成用户、多层分类树、商品和历史订单。主键在生成前一次性预留，直接写入，不回读自增主键；
+ * 每条 INSERT 带多行 VALUES，再按 JDBC 批次发送，每张表按主键区间切分后多线程并行写入。
+ * 商品热度、用户活跃度按幂律分布，价格按对数正态分布，订单时间越近越密集，订单状态随下单时间推移。
+ * 生成结束后修正主键序列，回填商品销量，并重建统计汇总、分类树、搜索索引等内存结构。
+ *
+ * 只用于测试环境，且需要 data-generator.enabled=true；生成期间不要有其他写入。
+ */
+@Slf4j
+@Service
+public class SyntheticDataGenerator {
+
+    private static final String[] WORDS = {
+            "手机", "笔记本电脑", "耳机", "显示器", "键盘", "鼠标", "平板", "相机", "音箱", "手表",
+            "phone", "laptop", "headphones", "monitor", "keyboard", "mouse", "tablet", "camera", "speaker", "watch"
+    };
+    private static final String[] PAYMENT_METHODS = {"ALIPAY", "WECHAT", "CARD"};
+    private static final String[] CITIES = {"北京市", "上海市", "广州市", "深圳市", "杭州市", "成都市", "武汉市", "南京市"};
+
+    /**
+     * 订单和订单项用序列生成主键，Hibernate 每次预取 50 个
+     */
+    private static final int SEQUENCE_ALLOCATION = 50;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final CategoryTree categoryTree;
+    private final ProductCatalogCache productCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final SuggestionService suggestionService;
+
+    private final boolean enabled;
+    private final int rowsPerStatement;
+    private final int statementsPerBatch;
+    private final int rowsPerCommit;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Map<String, AtomicLong> inserted = new LinkedHashMap<>();
+    private volatile String phase = "idle";
+    private volatile String error;
+    private volatile LocalDateTime startTime;
+    private volatile LocalDateTime finishTime;
+
+    public SyntheticDataGenerator(DataSource dataSource, JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder,
+                                  SalesAnalyticsService salesAnalyticsService, CategoryTree categoryTree,
+                                  ProductCatalogCache productCatalogCache, ProductSearchIndex productSearchIndex,
+                                  SuggestionService suggestionService,
+                                  @Value("${data-generator.enabled:false}") boolean enabled,
+                                  @Value("${data-generator.rows-per-statement:500}") int rowsPerStatement,
+                                  @Value("${data-generator.statements-per-batch:10}") int statementsPerBatch,
+                                  @Value("${data-generator.rows-per-commit:50000}") int rowsPerCommit) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.salesAnalyticsService = salesAnalyticsService;
+        this.categoryTree = categoryTree;
+        this.productCatalogCache = productCatalogCache;
+        this.productSearchIndex = productSearchIndex;
+        this.suggestionService = suggestionService;
+        this.enabled = enabled;
+        this.rowsPerStatement = rowsPerStatement;
+        this.statementsPerBatch = statementsPerBatch;
+        this.rowsPerCommit = rowsPerCommit;
+        for (String table : List.of("users", "categories", "products", "orders", "order_items")) {
+            inserted.put(table, new AtomicLong());
+        }
+    }
+
+    /**
+     * 生成规模
+     *
+     * @param categoryDepth    分类树的层数
+     * @param maxItemsPerOrder 每个订单最多的商品种类数（平均约 2 种）
+     * @param days             订单和用户注册时间分布在最近多少天内
+     * @param threads          并行写入的线程数，不要超过连接池大小
+     */
+    public record Spec(int users, int categories, int categoryDepth, int products, int orders,
+                       int maxItemsPerOrder, int days, int threads, long seed) {
+    }
+
+    /**
+     * 在后台线程中开始生成，已经在生成时抛出异常
+     */
+    public void start(Spec spec) {
+        if (!enabled) {
+            throw new RuntimeException("数据生成器未启用（data-generator.enabled=false）");
+        }
+        validate(spec);
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("数据生成正在进行中");
+        }
+        inserted.values().forEach(counter -> counter.set(0));
+        error = null;
+        startTime = LocalDateTime.now();
+        finishTime = null;
+
+        Thread thread = new Thread(() -> {
+            try {
+                generate(spec);
+                phase = "done";
+            } catch (Exception e) {
+                log.error("合成数据生成失败", e);
+                error = e.getMessage();
+                phase = "failed";
+            } finally {
+                finishTime = LocalDateTime.now();
+                running.set(false);
+            }
+        }, "data-generator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 当前阶段和各表已写入的行数
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("phase", phase);
+        status.put("startTime", startTime);
+        status.put("finishTime", finishTime);
+        status.put("error", error);
+        Map<String, Long> rows = new LinkedHashMap<>();
+        inserted.forEach((table, counter) -> rows.put(table, counter.get()));
+        status.put("inserted", rows);
+        return status;
+    }
+
+    private static void validate(Spec spec) {
+        if (spec.users() < 1 || spec.products() < 1 || spec.categories() < 1 || spec.orders() < 0) {
+            throw new RuntimeException("用户、商品、分类数量至少为1，订单数量不能为负数");
+        }
+        if (spec.categoryDepth() < 1 || spec.maxItemsPerOrder() < 1 || spec.days() < 1 || spec.threads() < 1) {
+            throw new RuntimeException("分类层数、订单商品种类数、天数和线程数至少为1");
+        }
+    }
+
+    private void generate(Spec spec) throws Exception {
+        long begin = System.currentTimeMillis();
+        boolean h2 = isH2();
+        LocalDateTime now = LocalDateTime.now();
+
+        // 预留主键区间
+        long userBase = nextIdentity("users");
+        long categoryBase = nextIdentity("categories");
+        long productBase = nextIdentity("products");
+        long orderBase = reserveSequence("orders", "orders_seq", h2);
+        long itemBase = reserveSequence("order_items", "order_items_seq", h2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(spec.threads());
+        try {
+            phase = "users";
+            String passwordHash = passwordEncoder.encode("password123");
+            runPartitioned(executor, spec, spec.users(), (from, to, random, connection) -> {
+                try (MultiRowInserter users = new MultiRowInserter(connection, "users",
+                        "id, username, password, email, phone, role, token_version, create_time, update_time")) {
+                    for (long i = from; i < to; i++) {
+                        long id = userBase + i;
+                        Timestamp created = recentTime(now, spec.days(), random);
+                        users.add(id, "gen-" + id, passwordHash, "gen-" + id + "@example.com",
+                                String.format("139%08d", id % 100_000_000), "ROLE_USER", 0, created, created);
+                    }
+                }
+            });
+
+            phase = "categories";
+            int[] parents = categoryParents(spec.categories(), spec.categoryDepth(), new SplittableRandom(spec.seed()));
+            try (Connection connection = open();
+                 MultiRowInserter categories = new MultiRowInserter(connection, "categories",
+                         "id, name, description, parent_id, status, create_time")) {
+                Timestamp created = Timestamp.valueOf(now);
+                for (int i = 0; i < parents.length; i++) {
+                    categories.add(categoryBase + i, "分类-" + (categoryBase + i), "合成分类",
+                            parents[i] < 0 ? null : categoryBase + parents[i], true, created);
+                }
+                categories.close();
+                connection.commit();
+            }
+
+            phase = "products";
+            long[] priceCents = new long[spec.products()];
+            runPartitioned(executor, spec, spec.products(), (from, to, random, connection) -> {
+                try (MultiRowInserter products = new MultiRowInserter(connection, "products",
+                        "id, name, description, price, stock, sales, image_url, category_id, status, create_time")) {
+                    for (long i = from; i < to; i++) {
+                        long id = productBase + i;
+                        // 对数正态分布，中位数约 99 元
+                        long cents = Math.max(100, Math.min(100_000_000L,
+                                Math.round(Math.exp(Math.log(9900) + random.nextGaussian()))));
+                        priceCents[(int) i] = cents;
+                        int stock = random.nextInt(100) < 3 ? 0 : 1 + random.nextInt(1000);
+                        String word = WORDS[random.nextInt(WORDS.length)];
+                        products.add(id, word + " " + id, "合成商品 " + word, BigDecimal.valueOf(cents, 2),
+                                stock, 0, null, categoryBase + random.nextInt(spec.categories()), stock > 0,
+                                recentTime(now, spec.days(), random));
+                    }
+                }
+            });
+
+            phase = "orders";
+            AtomicIntegerArray sales = new AtomicIntegerArray(spec.products());
+            runPartitioned(executor, spec, spec.orders(), (from, to, random, connection) -> {
+                try (MultiRowInserter orders = new MultiRowInserter(connection, "orders",
+                        "id, order_number, user_id, total_amount, status, shipping_address, payment_method, create_time, update_time");
+                     MultiRowInserter items = new MultiRowInserter(connection, "order_items",
+                             "id, order_id, product_id, quantity, price, subtotal")) {
+                    for (long chunk = from; chunk < to; chunk += rowsPerStatement) {
+                        long chunkEnd = Math.min(to, chunk + rowsPerStatement);
+                        for (long i = chunk; i < chunkEnd; i++) {
+                            long orderId = orderBase + i;
+                            int lines = 1 + Math.min(spec.maxItemsPerOrder() - 1, geometric(random));
+                            long total = 0;
+                            for (int j = 0; j < lines; j++) {
+                                int product = skewed(spec.products(), 3, random);
+                                int quantity = random.nextInt(10) < 8 ? 1 : 2 + random.nextInt(3);
+                                long subtotal = priceCents[product] * quantity;
+                                total += subtotal;
+                                sales.addAndGet(product, quantity);
+                                items.add(itemBase + i * spec.maxItemsPerOrder() + j, orderId, productBase + product,
+                                        quantity, BigDecimal.valueOf(priceCents[product], 2),
+                                        BigDecimal.valueOf(subtotal, 2));
+                            }
+                            Timestamp created = recentTime(now, spec.days(), random);
+                            String status = orderStatus(created.toLocalDateTime(), now, random);
+                            orders.add(orderId, "GEN" + orderId, userBase + skewed(spec.users(), 2, random),
+                                    BigDecimal.valueOf(total, 2), status,
+                                    CITIES[random.nextInt(CITIES.length)] + "合成路" + random.nextInt(1000) + "号",
+                                    PAYMENT_METHODS[random.nextInt(PAYMENT_METHODS.length)], created,
+                                    Timestamp.valueOf(created.toLocalDateTime().plusHours(random.nextInt(72))));
+                        }
+                        // 订单项引用本批订单，订单必须先写入
+                        orders.flush();
+                    }
+                    orders.flush();
+                }
+            });
+
+            phase = "sales";
+            runPartitioned(executor, spec, spec.products(), (from, to, random, connection) -> {
+                try (PreparedStatement update = connection.prepareStatement("UPDATE products SET sales = sales + ? WHERE id = ?")) {
+                    int pending = 0;
+                    for (long i = from; i < to; i++) {
+                        int sold = sales.get((int) i);
+                        if (sold > 0) {
+                            update.setInt(1, sold);
+                            update.setLong(2, productBase + i);
+                            update.addBatch();
+                            if (++pending == rowsPerStatement * statementsPerBatch) {
+                                update.executeBatch();
+                                pending = 0;
+                            }
+                        }
+                    }
+                    update.executeBatch();
+                }
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+
+        phase = "sequences";
+        if (h2) {
+            restartIdentity("users", userBase + spec.users());
+            restartIdentity("categories", categoryBase + spec.categories());
+            restartIdentity("products", productBase + spec.products());
+        }
+        advanceSequence("orders_seq", orderBase + spec.orders() + SEQUENCE_ALLOCATION, h2);
+        advanceSequence("order_items_seq", itemBase + (long) spec.orders() * spec.maxItemsPerOrder() + SEQUENCE_ALLOCATION, h2);
+
+        phase = "rebuild";
+        salesAnalyticsService.rebuild();
+        categoryTree.rebuild();
+        productCatalogCache.invalidateAll();
+        productSearchIndex.rebuild();
+        suggestionService.markDirty();
+
+        log.info("合成数据生成完成：{}，耗时 {} s", status().get("inserted"), (System.currentTimeMillis() - begin) / 1000.0);
+    }
+
+    @FunctionalInterface
+    private interface PartitionTask {
+        void run(long from, long to, SplittableRandom random, Connection connection) throws SQLException;
+    }
+
+    /**
+     * 把 [0, total) 切成与线程数相同的区间并行执行，每个区间一个连接、一个随机数序列
+     */
+    private void runPartitioned(ExecutorService executor, Spec spec, long total, PartitionTask task) throws Exception {
+        int partitions = (int) Math.max(1, Math.min(spec.threads(), total));
+        long size = (total + partitions - 1) / partitions;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            long from = p * size;
+            long to = Math.min(total, from + size);
+            SplittableRandom random = new SplittableRandom(spec.seed() * 31 + p + phase.hashCode());
+            futures.add(executor.submit(() -> {
+                try (Connection connection = open()) {
+                    task.run(from, to, random, connection);
+                    connection.commit();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    /**
+     * 逐层生成分类树，返回每个分类的父分类下标（根分类为 -1）；层数不超过 depth，越深的层分类越多
+     */
+    private static int[] categoryParents(int count, int depth, SplittableRandom random) {
+        int[] parents = new int[count];
+        int roots = Math.max(1, Math.min(count, (int) Math.round(count * 0.02)));
+        Arrays.fill(parents, 0, roots, -1);
+        double fanout = depth > 1 ? Math.max(1.0, Math.pow((double) count / roots, 1.0 / (depth - 1))) : 1.0;
+
+        int levelStart = 0;
+        int levelEnd = roots;
+        int next = roots;
+        for (int level = 1; level < depth && next < count; level++) {
+            int levelSize = level == depth - 1
+                    ? count - next
+                    : (int) Math.min(count - next, Math.max(1, Math.round((levelEnd - levelStart) * fanout)));
+            for (int i = 0; i < levelSize; i++) {
+                parents[next + i] = levelStart + random.nextInt(levelEnd - levelStart);
+            }
+            levelStart = levelEnd;
+            levelEnd = next + levelSize;
+            next = levelEnd;
+        }
+        // depth 为 1 时剩下的都是根分类
+        Arrays.fill(parents, next, count, -1);
+        return parents;
+    }
+
+    /**
+     * 幂律分布的下标：越小的下标越常被选中（热门商品、活跃用户），exponent 越大越集中
+     */
+    private static int skewed(int size, int exponent, SplittableRandom random) {
+        return (int) Math.min(size - 1, (long) (size * Math.pow(random.nextDouble(), exponent)));
+    }
+
+    /**
+     * 几何分布（p = 0.5），订单的商品种类数多数是 1~2 种
+     */
+    private static int geometric(SplittableRandom random) {
+        int n = 0;
+        while (random.nextBoolean() && n < 64) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 最近 days 天内的时间，越近越密集（业务增长）
+     */
+    private static Timestamp recentTime(LocalDateTime now, int days, SplittableRandom random) {
+        long seconds = (long) (days * 86_400L * (1 - Math.sqrt(random.nextDouble())));
+        return Timestamp.valueOf(now.minusSeconds(seconds));
+    }
+
+    /**
+     * 按下单时间推算订单状态：越早的订单越可能已送达，约 5% 已取消
+     */
+    private static String orderStatus(LocalDateTime created, LocalDateTime now, SplittableRandom random) {
+        if (random.nextInt(100) < 5) {
+            return "CANCELLED";
+        }
+        long ageHours = Duration.between(created, now).toHours();
+        if (ageHours > 24 * 14) {
+            return "DELIVERED";
+        }
+        if (ageHours > 24 * 3) {
+            return random.nextBoolean() ? "SHIPPED" : "DELIVERED";
+        }
+        if (ageHours > 24) {
+            return random.nextBoolean() ? "PAID" : "SHIPPED";
+        }
+        return random.nextBoolean() ? "PENDING" : "PAID";
+    }
+
+    private boolean isH2() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "H2".equalsIgnoreCase(product);
+    }
+
+    private long nextIdentity(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max == null ? 1 : max + 1;
+    }
+
+    /**
+     * 序列主键的起点：既要大于表中已有的主键，也要越过 Hibernate 可能已经预取但还没用完的区间
+     */
+    private long reserveSequence(String table, String sequence, boolean h2) {
+        Long current = h2
+                ? jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class)
+                : jdbcTemplate.queryForObject("SELECT next_val FROM " + sequence, Long.class);
+        long fromSequence = (current == null ? 0 : current) + SEQUENCE_ALLOCATION;
+        return Math.max(fromSequence, nextIdentity(table));
+    }
+
+    private void advanceSequence(String sequence, long next, boolean h2) {
+        if (h2) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + next);
+        } else {
+            jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ?", next);
+        }
+    }
+
+    /**
+     * H2 显式写入主键后不会推进自增值；MySQL 会自动推进，不需要处理
+     */
+    private void restartIdentity(String table, long next) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+    }
+
+    /**
+     * 多行 INSERT：每条语句 rowsPerStatement 行，凑够 statementsPerBatch 条语句发送一次，
+     * 每写入 rowsPerCommit 行提交一次
+     */
+    private final class MultiRowInserter implements AutoCloseable {
+        private final Connection connection;
+        private final String table;
+        private final String columns;
+        private final int width;
+        private final PreparedStatement statement;
+        private final Object[] buffer;
+        private int rows;
+        private int batched;
+        private long uncommitted;
+
+        MultiRowInserter(Connection connection, String table, String columns) throws SQLException {
+            this.connection = connection;
+            this.table = table;
+            this.columns = columns;
+            this.width = columns.split(",").length;
+            this.statement = connection.prepareStatement(sql(rowsPerStatement));
+            this.buffer = new Object[rowsPerStatement * width];
+        }
+
+        void add(Object... values) throws SQLException {
+            System.arraycopy(values, 0, buffer, rows * width, width);
+            if (++rows == rowsPerStatement) {
+                bind(statement, rows);
+                statement.addBatch();
+                rows = 0;
+                if (++batched == statementsPerBatch) {
+                    executeBatch();
+                }
+            }
+        }
+
+        /**
+         * 把已缓冲的所有行写入数据库（不足一条语句的部分单独写）
+         */
+        void flush() throws SQLException {
+            executeBatch();
+            if (rows > 0) {
+                try (PreparedStatement partial = connection.prepareStatement(sql(rows))) {
+                    bind(partial, rows);
+                    partial.executeUpdate();
+                }
+                written(rows);
+                rows = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                statement.close();
+            }
+        }
+
+        private void executeBatch() throws SQLException {
+            if (batched > 0) {
+                statement.executeBatch();
+                written((long) batched * rowsPerStatement);
+                batched = 0;
+            }
+        }
+
+        private void written(long count) throws SQLException {
+            inserted.get(table).addAndGet(count);
+            uncommitted += count;
+            if (uncommitted >= rowsPerCommit) {
+                connection.commit();
+                uncommitted = 0;
+            }
+        }
+
+        private void bind(PreparedStatement target, int rowCount) throws SQLException {
+            for (int i = 0; i < rowCount * width; i++) {
+                target.setObject(i + 1, buffer[i]);
+            }
+        }
+
+        private String sql(int rowCount) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                    .append(" (").append(columns).append(") VALUES ");
+            String row = "(" + "?, ".repeat(width - 1) + "?)";
+            for (int i = 0; i < rowCount; i++) {
+                sql.append(i == 0 ? "" : ", ").append(row);
+            }
+            return sql.toString();
+        }
+    }
+}
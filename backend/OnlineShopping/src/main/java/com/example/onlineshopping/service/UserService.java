@@ -2,6 +2,8 @@ package com.example.onlineshopping.service;
 
 import com.example.onlineshopping.entity.User;
 import com.example.onlineshopping.repository.UserRepository;
+import com.example.onlineshopping.security.AuthenticatedUser;
+import com.example.onlineshopping.security.TokenVersionCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -14,6 +16,7 @@ import org.springframework.stereotype.Service;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -21,10 +24,18 @@ public class UserService implements UserDetailsService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final TokenVersionCache tokenVersionCache;
+    private final BlobStore blobStore;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       SalesAnalyticsService salesAnalyticsService, TokenVersionCache tokenVersionCache,
+                       BlobStore blobStore) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.salesAnalyticsService = salesAnalyticsService;
+        this.tokenVersionCache = tokenVersionCache;
+        this.blobStore = blobStore;
     }
 
     @Override
@@ -32,11 +43,7 @@ public class UserService implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
 
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .authorities(getAuthorities(user.getRole()))
-                .build();
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPassword(), getAuthorities(user.getRole()));
     }
 
     private Collection<? extends GrantedAuthority> getAuthorities(User.UserRole role) {
@@ -59,7 +66,9 @@ public class UserService implements UserDetailsService {
 
         // 使用BCrypt加密密码
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        salesAnalyticsService.userRegistered(saved);
+        return saved;
     }
 
     public List<User> findAll() {
@@ -77,24 +86,65 @@ public class UserService implements UserDetailsService {
         }
 
         // 如果是更新现有用户，检查密码是否需要重新加密
-        if (user.getId() != null) {
+        boolean isNew = user.getId() == null;
+        String oldAvatarUrl = null;
+        if (!isNew) {
             Optional<User> existingUser = userRepository.findById(user.getId());
             if (existingUser.isPresent()) {
+                User existing = existingUser.get();
+                oldAvatarUrl = existing.getAvatarUrl();
+                int tokenVersion = existing.getTokenVersion() != null ? existing.getTokenVersion() : 0;
                 // 如果密码被修改（不等于原密码），则重新加密
-                if (!user.getPassword().equals(existingUser.get().getPassword())) {
+                boolean passwordChanged = !user.getPassword().equals(existing.getPassword());
+                if (passwordChanged) {
                     user.setPassword(passwordEncoder.encode(user.getPassword()));
                 }
+                // 密码或角色变化后，之前签发的令牌失效
+                if (passwordChanged || user.getRole() != existing.getRole()) {
+                    tokenVersion++;
+                }
+                user.setTokenVersion(tokenVersion);
             }
         } else {
             // 新用户，加密密码
             user.setPassword(passwordEncoder.encode(user.getPassword()));
         }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        // 头像文件的引用计数
+        if (!Objects.equals(oldAvatarUrl, saved.getAvatarUrl())) {
+            blobStore.retain(saved.getAvatarUrl());
+            blobStore.release(oldAvatarUrl);
+        }
+        if (isNew) {
+            salesAnalyticsService.userRegistered(saved);
+        } else {
+            tokenVersionCache.invalidate(saved.getId());
+        }
+        return saved;
+    }
+
+    /**
+     * 更换头像，同时调整新旧头像文件的引用计数
+     */
+    public User updateAvatar(Long id, String avatarUrl) {
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("用户不存在"));
+        String oldAvatarUrl = user.getAvatarUrl();
+        user.setAvatarUrl(avatarUrl);
+        User saved = userRepository.save(user);
+        if (!Objects.equals(oldAvatarUrl, avatarUrl)) {
+            blobStore.retain(avatarUrl);
+            blobStore.release(oldAvatarUrl);
+        }
+        return saved;
     }
 
     public void delete(Long id) {
+        String avatarUrl = userRepository.findById(id).map(User::getAvatarUrl).orElse(null);
         userRepository.deleteById(id);
+        blobStore.release(avatarUrl);
+        tokenVersionCache.invalidate(id);
     }
 
     public Optional<User> findByUsername(String username) {
@@ -0,0 +1,62 @@
+package com.example.onlineshopping.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderSequenceInitializerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private OrderSequenceInitializer initializer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", ""));
+        // 与 ddl-auto 建出的结构相同：序列从 1 开始
+        jdbcTemplate.execute("CREATE TABLE orders (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE order_items (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE SEQUENCE orders_seq START WITH 1 INCREMENT BY 50");
+        jdbcTemplate.execute("CREATE SEQUENCE order_items_seq START WITH 1 INCREMENT BY 50");
+        initializer = new OrderSequenceInitializer(jdbcTemplate, null);
+    }
+
+    @Test
+    void emptyTablesLeaveSequencesAlone() {
+        initializer.init();
+
+        assertThat(nextValue("orders_seq")).isEqualTo(1);
+        assertThat(nextValue("order_items_seq")).isEqualTo(1);
+    }
+
+    @Test
+    void sequenceOverlappingExistingIdsIsAdvanced() {
+        jdbcTemplate.update("INSERT INTO orders (id) VALUES (1), (2), (120)");
+        jdbcTemplate.update("INSERT INTO order_items (id) VALUES (7)");
+
+        initializer.init();
+
+        // 下一个分配块 (v - 50, v] 整个在已有ID之后
+        assertThat(nextValue("orders_seq") - 50).isGreaterThanOrEqualTo(120);
+        assertThat(nextValue("order_items_seq") - 50).isGreaterThanOrEqualTo(7);
+    }
+
+    @Test
+    void sequenceAlreadyPastExistingIdsIsKept() {
+        jdbcTemplate.update("INSERT INTO orders (id) VALUES (10)");
+        jdbcTemplate.execute("ALTER SEQUENCE orders_seq RESTART WITH 1001");
+
+        initializer.init();
+
+        assertThat(nextValue("orders_seq")).isEqualTo(1001);
+    }
+
+    private long nextValue(String sequence) {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+    }
+}
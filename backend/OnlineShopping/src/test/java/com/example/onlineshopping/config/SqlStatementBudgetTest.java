@@ -0,0 +1,136 @@
+package com.example.onlineshopping.config;
+
+import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.repository.ProductRepository;
+import com.example.onlineshopping.repository.UserRepository;
+import com.example.onlineshopping.security.JwtUtil;
+import com.example.onlineshopping.service.CartStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 主要接口的 SQL 语句数回归测试：新增 N+1 或多余查询时失败
+ */
+@SpringBootTest(properties = {
+        "seed.categories=20",
+        "seed.products=300",
+        "seed.users=5",
+        "seed.carts=0"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class SqlStatementBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Test
+    void productPageRunsConstantNumberOfStatements() throws Exception {
+        String cursor;
+        try (SqlStatementCounter.Recording sql = SqlStatementCounter.start()) {
+            MvcResult result = mockMvc.perform(get("/api/products/page").param("size", "50").param("sort", "price"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            // 计数 + 键集查询 + 一次批量加载商品
+            sql.assertAtMost(3);
+            sql.assertNoRepeatsOver(1);
+            JsonNode page = objectMapper.readTree(result.getResponse().getContentAsString());
+            assertThat(page.get("items")).hasSize(50);
+            cursor = page.get("nextCursor").asText();
+        }
+
+        try (SqlStatementCounter.Recording sql = SqlStatementCounter.start()) {
+            mockMvc.perform(get("/api/products/page").param("size", "50").param("sort", "price").param("cursor", cursor))
+                    .andExpect(status().isOk());
+            // 后续页不再计数
+            sql.assertAtMost(2);
+            sql.assertNoRepeatsOver(1);
+        }
+    }
+
+    @Test
+    void cartItemsAreLoadedInOneBatch() throws Exception {
+        User user = userRepository.findByUsername(SyntheticDataSeeder.USERNAME_PREFIX + "0").orElseThrow();
+        String token = jwtUtil.generateToken(user);
+        List<Long> productIds = productRepository.findAll(PageRequest.of(0, 20)).map(product -> product.getId()).toList();
+        for (Long productId : productIds) {
+            mockMvc.perform(post("/api/cart/items").header("Authorization", "Bearer " + token)
+                            .param("productId", productId.toString()).param("quantity", "1"))
+                    .andExpect(status().isOk());
+        }
+        cartStore.flush();
+
+        try (SqlStatementCounter.Recording sql = SqlStatementCounter.start()) {
+            mockMvc.perform(get("/api/cart/items").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+            // 20 个商品不能逐个查询
+            sql.assertNoRepeatsOver(1);
+            sql.assertAtMost(3);
+        }
+    }
+
+    @Test
+    void jdbcStatementsAreCounted() {
+        try (SqlStatementCounter.Recording sql = SqlStatementCounter.start()) {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Long.class);
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products WHERE status = ?", Long.class, true);
+            jdbcTemplate.batchUpdate("UPDATE products SET sales = sales WHERE id = ?",
+                    List.of(new Object[]{1L}, new Object[]{2L}, new Object[]{3L}));
+
+            // 批量执行算一条
+            assertThat(sql.count()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void assertionsFailOnRegression() {
+        try (SqlStatementCounter.Recording outer = SqlStatementCounter.start()) {
+            try (SqlStatementCounter.Recording inner = SqlStatementCounter.start()) {
+                for (long id = 1; id <= 3; id++) {
+                    jdbcTemplate.queryForObject("SELECT name FROM products WHERE id = ?", String.class, id);
+                }
+                assertThatThrownBy(() -> inner.assertNoRepeatsOver(2)).isInstanceOf(AssertionError.class);
+                assertThatThrownBy(() -> inner.assertAtMost(2)).isInstanceOf(AssertionError.class);
+            }
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Long.class);
+
+            // 嵌套记录同时计入外层
+            assertThat(outer.count()).isEqualTo(4);
+        }
+    }
+}
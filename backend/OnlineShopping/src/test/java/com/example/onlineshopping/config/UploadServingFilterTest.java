@@ -0,0 +1,168 @@
+package com.example.onlineshopping.config;
+
+import com.example.onlineshopping.service.ImageProcessingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class UploadServingFilterTest {
+
+    private static final String NAME = "0123456789abcdef".repeat(4) + ".txt";
+    private static final String ETAG = "\"" + NAME + "\"";
+
+    private ImageProcessingService imageProcessingService;
+    private UploadServingFilter filter;
+    private Path directory;
+    private String uri;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imageProcessingService = mock(ImageProcessingService.class);
+        filter = new UploadServingFilter(new SimpleMeterRegistry(), imageProcessingService, Duration.ofDays(365),
+                Duration.ofHours(1), DataSize.ofKilobytes(48), List.of(), List.of());
+        String folder = "test-" + UUID.randomUUID();
+        directory = Files.createDirectories(Paths.get("uploads", folder));
+        Files.writeString(directory.resolve(NAME), "0123456789");
+        uri = "/uploads/" + folder + "/" + NAME;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    void singleRangeReturnsPartialContent() throws Exception {
+        MockHttpServletResponse response = get(Map.of("Range", "bytes=2-5"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-5/10");
+        assertThat(response.getContentAsString()).isEqualTo("2345");
+    }
+
+    @Test
+    void suffixAndOpenEndedRanges() throws Exception {
+        MockHttpServletResponse suffix = get(Map.of("Range", "bytes=-3"));
+        assertThat(suffix.getStatus()).isEqualTo(206);
+        assertThat(suffix.getContentAsString()).isEqualTo("789");
+
+        MockHttpServletResponse openEnded = get(Map.of("Range", "bytes=7-"));
+        assertThat(openEnded.getStatus()).isEqualTo(206);
+        assertThat(openEnded.getHeader("Content-Range")).isEqualTo("bytes 7-9/10");
+
+        // 结束位置超出文件长度时截到末尾
+        MockHttpServletResponse clamped = get(Map.of("Range", "bytes=8-100"));
+        assertThat(clamped.getContentAsString()).isEqualTo("89");
+
+        // 后缀长度超过文件长度时返回全部
+        MockHttpServletResponse longSuffix = get(Map.of("Range", "bytes=-100"));
+        assertThat(longSuffix.getStatus()).isEqualTo(206);
+        assertThat(longSuffix.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416() throws Exception {
+        for (String range : List.of("bytes=10-", "bytes=20-30", "bytes=-0")) {
+            MockHttpServletResponse response = get(Map.of("Range", range));
+
+            assertThat(response.getStatus()).as(range).isEqualTo(416);
+            assertThat(response.getHeader("Content-Range")).as(range).isEqualTo("bytes */10");
+            assertThat(response.getContentAsByteArray()).as(range).isEmpty();
+        }
+    }
+
+    @Test
+    void malformedOrMultipleRangesReturnFullContent() throws Exception {
+        for (String range : List.of("bytes=0-1,4-5", "items=0-1", "bytes=-", "bytes=5-2",
+                "bytes=99999999999999999999-")) {
+            MockHttpServletResponse response = get(Map.of("Range", range));
+
+            assertThat(response.getStatus()).as(range).isEqualTo(200);
+            assertThat(response.getHeader("Content-Range")).as(range).isNull();
+            assertThat(response.getContentAsString()).as(range).isEqualTo("0123456789");
+        }
+    }
+
+    @Test
+    void ifRangeAppliesRangeOnlyWhenEtagMatches() throws Exception {
+        MockHttpServletResponse matching = get(Map.of("Range", "bytes=0-3", "If-Range", ETAG));
+        assertThat(matching.getStatus()).isEqualTo(206);
+        assertThat(matching.getContentAsString()).isEqualTo("0123");
+
+        MockHttpServletResponse changed = get(Map.of("Range", "bytes=0-3", "If-Range", "\"other\""));
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getContentAsString()).isEqualTo("0123456789");
+
+        // If-Range 只做强比较
+        MockHttpServletResponse weak = get(Map.of("Range", "bytes=0-3", "If-Range", "W/" + ETAG));
+        assertThat(weak.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void ifNoneMatchReturns304() throws Exception {
+        MockHttpServletResponse first = get(Map.of());
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(first.getHeader("ETag")).isEqualTo(ETAG);
+        assertThat(first.getHeader("Cache-Control")).contains("immutable");
+
+        for (String ifNoneMatch : List.of(ETAG, "\"other\", W/" + ETAG, "*")) {
+            MockHttpServletResponse response = get(Map.of("If-None-Match", ifNoneMatch));
+
+            assertThat(response.getStatus()).as(ifNoneMatch).isEqualTo(304);
+            assertThat(response.getHeader("ETag")).isEqualTo(ETAG);
+            assertThat(response.getContentAsByteArray()).isEmpty();
+        }
+
+        // 不匹配时不再看 If-Modified-Since
+        MockHttpServletResponse changed = get(Map.of("If-None-Match", "\"other\"",
+                "If-Modified-Since", first.getHeader("Last-Modified")));
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void missingVariantFallsBackToOriginalAndIsRescheduled() throws Exception {
+        String hash = "fedcba9876543210".repeat(4);
+        Path original = Files.write(directory.resolve(hash + ".png"), new byte[]{1, 2, 3});
+
+        MockHttpServletResponse response = get(uri.replace(NAME, hash + "-thumb.jpg"), Map.of());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).startsWith("image/png");
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("no-cache");
+        verify(imageProcessingService).generateMissing(original.toAbsolutePath().normalize(), hash);
+    }
+
+    private MockHttpServletResponse get(Map<String, String> headers) throws Exception {
+        return get(uri, headers);
+    }
+
+    private MockHttpServletResponse get(String uri, Map<String, String> headers) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        headers.forEach(request::addHeader);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
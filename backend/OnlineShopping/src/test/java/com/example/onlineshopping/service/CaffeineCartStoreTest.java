@@ -0,0 +1,130 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.repository.CartItemRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CaffeineCartStoreTest {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO cart_items (user_id, product_id, quantity, create_time, update_time) VALUES (?, ?, ?, ?, ?)";
+
+    private CartItemRepository cartItemRepository;
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private CaffeineCartStore store;
+
+    /**
+     * 写入成功的 INSERT 参数
+     */
+    private final List<Object[]> written = new ArrayList<>();
+    /**
+     * 写入时违反外键约束的商品ID
+     */
+    private Long brokenProductId;
+    private boolean databaseDown;
+
+    @BeforeEach
+    void setUp() {
+        cartItemRepository = mock(CartItemRepository.class);
+        when(cartItemRepository.findLinesByUserId(anyLong())).thenReturn(List.of());
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(eq(INSERT_SQL), anyList())).thenAnswer(invocation -> {
+            if (databaseDown) {
+                throw new DataAccessResourceFailureException("数据库不可用");
+            }
+            List<Object[]> args = invocation.getArgument(1);
+            if (args.stream().anyMatch(row -> row[1].equals(brokenProductId))) {
+                throw new DataIntegrityViolationException("外键约束");
+            }
+            written.addAll(args);
+            return new int[args.size()];
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        store = new CaffeineCartStore(cartItemRepository, jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry,
+                1000, Duration.ofMinutes(30));
+    }
+
+    @Test
+    void flushWritesAllPendingCarts() {
+        store.putLine(1L, line(10L));
+        store.putLine(2L, line(20L));
+
+        store.flush();
+
+        assertThat(writtenUsers()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(pending()).isZero();
+    }
+
+    @Test
+    void constraintViolationOnlyDropsTheOffendingUser() {
+        brokenProductId = 99L;
+        store.putLine(1L, line(10L));
+        store.putLine(2L, line(99L));
+        store.putLine(3L, line(30L));
+
+        store.flush();
+
+        assertThat(writtenUsers()).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(pending()).isZero();
+        assertThat(meterRegistry.counter("cart.store.dropped").count()).isEqualTo(1);
+        // 丢弃的购物车从数据库重新加载
+        assertThat(store.getLines(2L)).isEmpty();
+        assertThat(store.getLines(1L)).extracting(CartLine::productId).containsExactly(10L);
+
+        // 之后的写入不再受影响
+        store.putLine(1L, line(11L));
+        store.flush();
+        assertThat(pending()).isZero();
+    }
+
+    @Test
+    void unavailableDatabaseKeepsCartsPending() {
+        databaseDown = true;
+        store.putLine(1L, line(10L));
+        store.putLine(2L, line(20L));
+
+        store.flush();
+
+        assertThat(written).isEmpty();
+        assertThat(pending()).isEqualTo(2);
+        assertThat(meterRegistry.counter("cart.store.dropped").count()).isZero();
+
+        databaseDown = false;
+        store.flush();
+        assertThat(writtenUsers()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(pending()).isZero();
+    }
+
+    private List<Long> writtenUsers() {
+        return written.stream().map(row -> (Long) row[0]).distinct().toList();
+    }
+
+    private double pending() {
+        return meterRegistry.get("cart.store.pending").gauge().value();
+    }
+
+    private static CartLine line(Long productId) {
+        LocalDateTime now = LocalDateTime.now();
+        return new CartLine(productId, 1, now, now);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.dto.CartItemDto;
+import com.example.onlineshopping.dto.ProductDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CartServiceTest {
+
+    @Test
+    void cartItemsAreIdentifiedByProduct() {
+        CartStore cartStore = mock(CartStore.class);
+        ProductCatalogCache productCatalogCache = mock(ProductCatalogCache.class);
+        LocalDateTime now = LocalDateTime.now();
+        when(cartStore.getLines(1L)).thenReturn(List.of(new CartLine(7L, 2, now, now)));
+        ProductDto product = new ProductDto();
+        product.setId(7L);
+        product.setName("耳机");
+        product.setPrice(new BigDecimal("9.50"));
+        product.setStock(10);
+        when(productCatalogCache.findAllByIds(any())).thenReturn(Map.of(7L, product));
+
+        List<CartItemDto> items = new CartService(cartStore, productCatalogCache).getCartItems(1L);
+
+        assertThat(items).singleElement().satisfies(item -> {
+            assertThat(item.getId()).isEqualTo(7L);
+            assertThat(item.getProductId()).isEqualTo(7L);
+            assertThat(item.getSubtotal()).isEqualByComparingTo("19.00");
+        });
+    }
+}
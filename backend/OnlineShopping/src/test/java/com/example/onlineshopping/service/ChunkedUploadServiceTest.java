@@ -0,0 +1,167 @@
+package com.example.onlineshopping.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChunkedUploadServiceTest {
+
+    private static final Long USER_ID = 1L;
+    // 分片大小 4 字节：三个分片 4 + 4 + 2
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    private BlobStore blobStore;
+    private ChunkedUploadService service;
+    private final AtomicReference<byte[]> adopted = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStore = mock(BlobStore.class);
+        when(blobStore.adopt(any(), anyString(), anyLong())).thenAnswer(invocation -> {
+            Path file = invocation.getArgument(0);
+            adopted.set(Files.readAllBytes(file));
+            return new BlobStore.StagedBlob(file, invocation.getArgument(1), invocation.getArgument(2));
+        });
+        service = new ChunkedUploadService(blobStore, DataSize.ofBytes(4), DataSize.ofKilobytes(1),
+                Duration.ofHours(1), 5);
+    }
+
+    @Test
+    void outOfOrderChunksAreAssembled() throws Exception {
+        String id = service.create(USER_ID, CONTENT.length, sha256(CONTENT)).id();
+
+        ChunkedUploadService.UploadStatus status = write(id, 2);
+        assertThat(status.missingChunks()).containsExactly(0, 1);
+        assertThat(status.offset()).isZero();
+        status = write(id, 0);
+        assertThat(status.missingChunks()).containsExactly(1);
+        assertThat(status.offset()).isEqualTo(4);
+        status = write(id, 1);
+        assertThat(status.missingChunks()).isEmpty();
+        assertThat(status.offset()).isEqualTo(CONTENT.length);
+
+        BlobStore.StagedBlob blob = service.complete(USER_ID, id);
+
+        assertThat(blob.hash()).isEqualTo(sha256(CONTENT));
+        assertThat(blob.size()).isEqualTo(CONTENT.length);
+        assertThat(adopted.get()).isEqualTo(CONTENT);
+        assertThat(service.status(USER_ID, id)).isEmpty();
+    }
+
+    @Test
+    void duplicateChunkIsIgnored() throws Exception {
+        String id = service.create(USER_ID, CONTENT.length, null).id();
+        write(id, 0);
+
+        // 重复发送已收到的分片不再写入，内容不同也不会覆盖
+        byte[] other = "abcd".getBytes(StandardCharsets.UTF_8);
+        ChunkedUploadService.UploadStatus status = service.writeChunk(USER_ID, id, 0, sha256(other),
+                new ByteArrayInputStream(other));
+        assertThat(status.missingChunks()).containsExactly(1, 2);
+
+        write(id, 1);
+        write(id, 1);
+        write(id, 2);
+        BlobStore.StagedBlob blob = service.complete(USER_ID, id);
+
+        assertThat(blob.hash()).isEqualTo(sha256(CONTENT));
+        assertThat(adopted.get()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void chunkWithWrongChecksumIsNotRecorded() throws Exception {
+        String id = service.create(USER_ID, CONTENT.length, sha256(CONTENT)).id();
+
+        assertThatThrownBy(() -> service.writeChunk(USER_ID, id, 0, sha256("xxxx".getBytes(StandardCharsets.UTF_8)),
+                new ByteArrayInputStream(chunk(0))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("分片校验失败");
+        assertThat(service.status(USER_ID, id).orElseThrow().missingChunks()).containsExactly(0, 1, 2);
+
+        // 校验失败的分片不计入整个文件的摘要，重新发送后照常完成
+        write(id, 0);
+        write(id, 1);
+        write(id, 2);
+        assertThat(service.complete(USER_ID, id).hash()).isEqualTo(sha256(CONTENT));
+    }
+
+    @Test
+    void chunkWithWrongSizeOrOffsetIsRejected() throws Exception {
+        String id = service.create(USER_ID, CONTENT.length, null).id();
+
+        assertThatThrownBy(() -> service.writeChunk(USER_ID, id, 2, sha256(chunk(0)), new ByteArrayInputStream(chunk(0))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("分片位置不正确");
+        byte[] shortChunk = Arrays.copyOf(chunk(0), 3);
+        assertThatThrownBy(() -> service.writeChunk(USER_ID, id, 0, sha256(shortChunk), new ByteArrayInputStream(shortChunk)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("分片大小不正确");
+        assertThatThrownBy(() -> service.writeChunk(USER_ID, id, 8, sha256(CONTENT), new ByteArrayInputStream(CONTENT)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("分片大小不正确");
+        assertThat(service.status(USER_ID, id).orElseThrow().missingChunks()).containsExactly(0, 1, 2);
+        service.abort(USER_ID, id);
+    }
+
+    @Test
+    void completeChecksWholeFileHash() throws Exception {
+        String id = service.create(USER_ID, CONTENT.length, sha256("other".getBytes(StandardCharsets.UTF_8))).id();
+
+        assertThatThrownBy(() -> service.complete(USER_ID, id))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("还有分片没有上传");
+
+        write(id, 1);
+        write(id, 0);
+        write(id, 2);
+        assertThatThrownBy(() -> service.complete(USER_ID, id))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("文件校验失败");
+        verify(blobStore, never()).adopt(any(), anyString(), anyLong());
+        assertThat(service.status(USER_ID, id)).isEmpty();
+    }
+
+    @Test
+    void sessionBelongsToItsUser() throws Exception {
+        String id = service.create(USER_ID, CONTENT.length, null).id();
+
+        assertThat(service.status(2L, id)).isEmpty();
+        assertThatThrownBy(() -> service.writeChunk(2L, id, 0, sha256(chunk(0)), new ByteArrayInputStream(chunk(0))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("上传会话不存在");
+        service.abort(USER_ID, id);
+    }
+
+    private ChunkedUploadService.UploadStatus write(String id, int index) throws Exception {
+        byte[] data = chunk(index);
+        return service.writeChunk(USER_ID, id, index * 4L, sha256(data), new ByteArrayInputStream(data));
+    }
+
+    private static byte[] chunk(int index) {
+        return Arrays.copyOfRange(CONTENT, index * 4, Math.min(CONTENT.length, index * 4 + 4));
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
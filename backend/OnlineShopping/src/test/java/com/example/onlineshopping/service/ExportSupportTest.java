@@ -0,0 +1,49 @@
+package com.example.onlineshopping.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportSupportTest {
+
+    @Test
+    void plainFieldsAreWrittenAsIs() {
+        assertThat(ExportSupport.escapeCsv("北京市海淀区")).isEqualTo("北京市海淀区");
+        assertThat(ExportSupport.escapeCsv("")).isEqualTo("");
+    }
+
+    @Test
+    void separatorsAndQuotesAreQuoted() {
+        assertThat(ExportSupport.escapeCsv("a,b")).isEqualTo("\"a,b\"");
+        assertThat(ExportSupport.escapeCsv("say \"hi\"")).isEqualTo("\"say \"\"hi\"\"\"");
+        assertThat(ExportSupport.escapeCsv("line1\nline2")).isEqualTo("\"line1\nline2\"");
+    }
+
+    @Test
+    void formulaPrefixesAreNeutralised() {
+        assertThat(ExportSupport.escapeCsv("=HYPERLINK(\"http://x\")")).isEqualTo("\"'=HYPERLINK(\"\"http://x\"\")\"");
+        assertThat(ExportSupport.escapeCsv("+1")).isEqualTo("'+1");
+        assertThat(ExportSupport.escapeCsv("-2+3")).isEqualTo("'-2+3");
+        assertThat(ExportSupport.escapeCsv("@SUM(A1)")).isEqualTo("'@SUM(A1)");
+        assertThat(ExportSupport.escapeCsv("\tcmd")).isEqualTo("'\tcmd");
+        assertThat(ExportSupport.escapeCsv("\rcmd")).isEqualTo("\"'\rcmd\"");
+        assertThat(ExportSupport.escapeCsv("'=x")).isEqualTo("''=x");
+    }
+
+    @Test
+    void unescapeRestoresExportedValues() {
+        for (String value : new String[]{"=1+1", "+1", "-2", "@x", "\tx", "plain", "'quoted", "'=x", "''", "'", ""}) {
+            String escaped = ExportSupport.escapeCsv(value);
+            String unquoted = escaped.startsWith("\"") ? escaped.substring(1, escaped.length() - 1).replace("\"\"", "\"") : escaped;
+            assertThat(ExportSupport.unescapeFormula(unquoted)).as(value).isEqualTo(value);
+        }
+        assertThat(ExportSupport.unescapeFormula(null)).isNull();
+    }
+
+    @Test
+    void unescapeLeavesOtherQuotedValuesAlone() {
+        // 不是 escapeCsv 产生的单引号开头的值原样保留
+        assertThat(ExportSupport.unescapeFormula("'quoted")).isEqualTo("'quoted");
+        assertThat(ExportSupport.unescapeFormula("'")).isEqualTo("'");
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.onlineshopping.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductImportServiceTest {
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CategoryTree categoryTree;
+    private ProductSearchIndex productSearchIndex;
+    private ProductCatalogCache productCatalogCache;
+    private BlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (id BIGINT AUTO_INCREMENT PRIMARY KEY, sku VARCHAR(64) UNIQUE, " +
+                "name VARCHAR(255) NOT NULL, description VARCHAR(255), price DECIMAL(10,2) NOT NULL, stock INT, " +
+                "image_url VARCHAR(500), category_id BIGINT, status BOOLEAN, sales INT, create_time TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO products (id, sku, name, price, stock, status, sales) VALUES " +
+                "(1, 'SKU-A', '旧商品A', 10.00, 5, TRUE, 0), (2, 'SKU-B', '旧商品B', 20.00, 5, TRUE, 0)");
+        jdbcTemplate.execute("ALTER TABLE products ALTER COLUMN id RESTART WITH 100");
+
+        categoryTree = mock(CategoryTree.class);
+        when(categoryTree.lookupTable()).thenReturn(Map.of("电子产品", 7L, "电子产品 > 手机", 8L));
+        productSearchIndex = mock(ProductSearchIndex.class);
+        productCatalogCache = mock(ProductCatalogCache.class);
+        blobStore = mock(BlobStore.class);
+    }
+
+    @Test
+    void csvWithBomCrlfAndQuotedFields() throws Exception {
+        String csv = "\uFEFF商品名称,价格,商品描述,分类,库存\r\n" +
+                "\"耳机, 蓝牙\",99.5,\"第一行\r\n第二行 \"\"加引号\"\"\",电子产品>手机,3\r\n" +
+                "'=1+1,1,,,\r\n" +
+                "坏价格,abc,,,\r\n";
+
+        Map<String, Object> status = runImport(service(1000), csv, OrderExportService.Format.CSV);
+
+        assertThat(status.get("phase")).isEqualTo("done");
+        assertThat(status.get("inserted")).isEqualTo(2L);
+        Map<String, Object> headset = product("耳机, 蓝牙");
+        assertThat(headset.get("description")).isEqualTo("第一行\r\n第二行 \"加引号\"");
+        assertThat(headset.get("category_id")).isEqualTo(8L);
+        assertThat(headset.get("stock")).isEqualTo(3);
+        assertThat(headset.get("price")).isEqualTo(new BigDecimal("99.50"));
+        // 导出时为防公式加的单引号去掉
+        assertThat(product("=1+1")).isNotNull();
+        // 带换行的记录占两行，后面的行号照常计算
+        assertThat(errors(status)).extracting(ProductImportService.RowError::line).containsExactly(5L);
+    }
+
+    @Test
+    void rowsAreMatchedByIdThenSku() throws Exception {
+        String ndjson = String.join("\n",
+                "{\"id\": 1, \"name\": \"按ID更新\", \"price\": 11}",
+                "{\"sku\": \"SKU-B\", \"name\": \"按编码更新\", \"price\": 21}",
+                "{\"id\": 999, \"name\": \"不存在\", \"price\": 1}",
+                "{\"sku\": \"NEW-1\", \"name\": \"新商品（被覆盖）\", \"price\": 1}",
+                "{\"sku\": \"NEW-1\", \"name\": \"新商品\", \"price\": 2}",
+                "",
+                "{\"name\": \"无编码新商品\", \"price\": 3}");
+
+        Map<String, Object> status = runImport(service(1000), ndjson, OrderExportService.Format.NDJSON);
+
+        assertThat(status.get("updated")).isEqualTo(2L);
+        assertThat(status.get("inserted")).isEqualTo(2L);
+        assertThat(status.get("skipped")).isEqualTo(1L);
+        assertThat(status.get("failed")).isEqualTo(1L);
+        assertThat(errors(status)).containsExactly(new ProductImportService.RowError(3, "商品不存在: 999"));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM products WHERE id = 1", String.class)).isEqualTo("按ID更新");
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM products WHERE id = 2", String.class)).isEqualTo("按编码更新");
+        // 更新时留空的可选字段保持原值
+        assertThat(jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = 2", Integer.class)).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM products WHERE sku = 'NEW-1'", String.class)).isEqualTo("新商品");
+        assertThat(product("无编码新商品")).isNotNull();
+        verify(productSearchIndex).rebuild();
+    }
+
+    @Test
+    void imageRefCountsFollowImportedRows() throws Exception {
+        jdbcTemplate.update("UPDATE products SET image_url = '/img/a.jpg' WHERE id = 1");
+        String ndjson = String.join("\n",
+                "{\"id\": 1, \"name\": \"换图片\", \"price\": 1, \"imageUrl\": \"/img/b.jpg\"}",
+                "{\"id\": 2, \"name\": \"图片留空不修改\", \"price\": 1}",
+                "{\"name\": \"新商品\", \"price\": 1, \"imageUrl\": \"/img/b.jpg\"}",
+                "{\"name\": \"新商品2\", \"price\": 1, \"imageUrl\": \"/img/c.jpg\"}",
+                "{\"id\": 1, \"name\": \"再换回来\", \"price\": 1, \"imageUrl\": \"/img/a.jpg\"}");
+
+        runImport(service(1000), ndjson, OrderExportService.Format.NDJSON);
+
+        // 商品1 先换成 b 再换回 a：a 不变，b 只被新商品引用
+        verify(blobStore).adjustRefCounts(Map.of("/img/b.jpg", 1, "/img/c.jpg", 1));
+    }
+
+    @Test
+    void failingBatchFallsBackToRowByRow() throws Exception {
+        // 同一块中两行把不同商品改成同一个编码，批量更新违反唯一约束，逐行重试后只有后一行失败
+        String ndjson = String.join("\n",
+                "{\"id\": 1, \"sku\": \"DUP\", \"name\": \"A\", \"price\": 1}",
+                "{\"id\": 2, \"sku\": \"DUP\", \"name\": \"B\", \"price\": 1}",
+                "{\"name\": \"C\", \"price\": 1}");
+
+        Map<String, Object> status = runImport(service(1000), ndjson, OrderExportService.Format.NDJSON);
+
+        assertThat(status.get("updated")).isEqualTo(1L);
+        assertThat(status.get("inserted")).isEqualTo(1L);
+        assertThat(errors(status)).extracting(ProductImportService.RowError::line).containsExactly(2L);
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM products WHERE sku = 'DUP'", String.class)).isEqualTo("A");
+    }
+
+    @Test
+    void dryRunWritesNothing() throws Exception {
+        ProductImportService service = service(1000);
+        service.start(stream("name,price\n新商品,1\n,2\n"), OrderExportService.Format.CSV, false, true);
+        Map<String, Object> status = await(service);
+
+        assertThat(status.get("rowsRead")).isEqualTo(2L);
+        assertThat(status.get("failed")).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Long.class)).isEqualTo(2L);
+        verify(productSearchIndex, never()).rebuild();
+    }
+
+    @Test
+    void cachesAreRefreshedWhenImportFailsHalfway() throws Exception {
+        DataSource failing = spy(dataSource);
+        doCallRealMethod().doThrow(new SQLException("数据库不可用")).when(failing).getConnection();
+        ProductImportService service = service(failing, 1);
+
+        Map<String, Object> status = runImport(service, "name,price\nA,1\nB,2\n", OrderExportService.Format.CSV);
+
+        assertThat(status.get("phase")).isEqualTo("failed");
+        assertThat(status.get("inserted")).isEqualTo(1L);
+        verify(productCatalogCache).invalidateAll();
+        verify(productSearchIndex).rebuild();
+    }
+
+    @Test
+    void secondImportIsRejectedWhileRunning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(categoryTree.lookupTable()).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return Map.of();
+        });
+        ProductImportService service = service(1000);
+        service.start(stream("name,price\nA,1\n"), OrderExportService.Format.CSV, false, false);
+
+        assertThatThrownBy(() -> service.start(stream("name,price\nB,1\n"), OrderExportService.Format.CSV, false, false))
+                .isInstanceOf(IllegalStateException.class);
+
+        release.countDown();
+        assertThat(await(service).get("inserted")).isEqualTo(1L);
+    }
+
+    @Test
+    void missingRequiredColumnsFailTheImport() throws Exception {
+        Map<String, Object> status = runImport(service(1000), "name,stock\nA,1\n", OrderExportService.Format.CSV);
+
+        assertThat(status.get("phase")).isEqualTo("failed");
+        assertThat((String) status.get("error")).contains("价格");
+    }
+
+    private ProductImportService service(int chunkSize) {
+        return service(dataSource, chunkSize);
+    }
+
+    private ProductImportService service(DataSource dataSource, int chunkSize) {
+        return new ProductImportService(dataSource, new ObjectMapper(), categoryTree, productCatalogCache,
+                productSearchIndex, mock(SuggestionService.class), mock(StockReservationService.class), blobStore,
+                chunkSize, 1, 100);
+    }
+
+    private Map<String, Object> runImport(ProductImportService service, String content,
+                                          OrderExportService.Format format) throws Exception {
+        service.start(stream(content), format, false, false);
+        return await(service);
+    }
+
+    private static Map<String, Object> await(ProductImportService service) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (Boolean.TRUE.equals(service.status().get("running"))) {
+            assertThat(System.currentTimeMillis()).as("导入超时").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        return service.status();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ProductImportService.RowError> errors(Map<String, Object> status) {
+        return (List<ProductImportService.RowError>) status.get("errors");
+    }
+
+    private Map<String, Object> product(String name) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT * FROM products WHERE name = ?", name);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private static ByteArrayInputStream stream(String content) throws IOException {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.entity.Category;
+import com.example.onlineshopping.entity.Product;
+import com.example.onlineshopping.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+
+    private ProductRepository productRepository;
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        index = new ProductSearchIndex(productRepository);
+    }
+
+    @Test
+    void nameMatchRanksAboveDescriptionMatch() {
+        build(product(1L, "手机壳", "适配各种蓝牙耳机"), product(2L, "蓝牙耳机", "降噪"));
+
+        assertThat(index.search("耳机")).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void shorterFieldRanksHigher() {
+        build(product(1L, "phone case cover black", null), product(2L, "phone", null));
+
+        assertThat(index.search("phone")).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void everyQueryTermMustMatch() {
+        build(product(1L, "wireless mouse", null), product(2L, "wireless keyboard", null));
+
+        assertThat(index.search("wireless mouse")).containsExactly(1L);
+        assertThat(index.search("wireless")).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void lastLatinTermMatchesAsPrefix() {
+        build(product(1L, "wireless keyboard", null));
+
+        assertThat(index.search("key")).containsExactly(1L);
+        assertThat(index.search("key ")).isEmpty();
+    }
+
+    @Test
+    void categoryPathIsIndexed() {
+        Category parent = category(1L, "电子产品", null);
+        Product product = product(1L, "Pixel 8", null);
+        product.setCategory(category(2L, "手机", parent));
+        build(product);
+
+        assertThat(index.search("电子")).containsExactly(1L);
+        assertThat(index.search("手机")).containsExactly(1L);
+    }
+
+    @Test
+    void changesDuringRebuildAreReplayedOnNewIndex() {
+        build(product(1L, "old phone", null));
+
+        Product added = product(3L, "new phone", null);
+        when(productRepository.findAllWithCategoryByIdIn(anyCollection())).thenReturn(List.of(added));
+        when(productRepository.findAllWithCategory()).thenAnswer(invocation -> {
+            // 重建读取数据库期间发生的修改
+            index.update(3L);
+            index.remove(1L);
+            return List.of(product(1L, "old phone", null), product(2L, "other phone", null));
+        });
+        index.rebuild();
+
+        assertThat(index.search("phone")).containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    @Test
+    void failedRebuildKeepsOldIndex() {
+        build(product(1L, "phone", null));
+
+        when(productRepository.findAllWithCategory()).thenThrow(new RuntimeException("数据库不可用"));
+        assertThatThrownBy(index::rebuild).hasMessage("数据库不可用");
+
+        assertThat(index.search("phone")).containsExactly(1L);
+
+        // 失败后不再记录重放，下一次重建照常生效
+        index.remove(1L);
+        build(product(2L, "phone", null));
+        assertThat(index.search("phone")).containsExactly(2L);
+    }
+
+    private void build(Product... products) {
+        doReturn(List.of(products)).when(productRepository).findAllWithCategory();
+        index.rebuild();
+    }
+
+    private static Product product(Long id, String name, String description) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setDescription(description);
+        return product;
+    }
+
+    private static Category category(Long id, String name, Category parent) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setParent(parent);
+        return category;
+    }
+}
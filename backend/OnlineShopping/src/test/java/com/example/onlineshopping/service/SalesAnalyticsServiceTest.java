@@ -0,0 +1,104 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SalesAnalyticsServiceTest {
+
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2026, 1, 15, 10, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private SalesAnalyticsService instanceA;
+    private SalesAnalyticsService instanceB;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE analytics_rollups (metric VARCHAR(32) NOT NULL, bucket VARCHAR(32) NOT NULL, " +
+                "item_count BIGINT NOT NULL DEFAULT 0, amount DECIMAL(19,2) NOT NULL DEFAULT 0, PRIMARY KEY (metric, bucket))");
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT AUTO_INCREMENT PRIMARY KEY, create_time TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE orders (id BIGINT PRIMARY KEY, status VARCHAR(20), total_amount DECIMAL(10,2), " +
+                "create_time TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, category_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE order_items (id BIGINT PRIMARY KEY, order_id BIGINT, product_id BIGINT, " +
+                "quantity INT, subtotal DECIMAL(10,2))");
+        insertUser();
+        insertUser();
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // 两个实例共用一个数据库
+        instanceA = new SalesAnalyticsService(jdbcTemplate, transactionTemplate);
+        instanceB = new SalesAnalyticsService(jdbcTemplate, transactionTemplate);
+    }
+
+    @Test
+    void deltasRecordedBeforeRebuildAreNotCountedTwice() {
+        // 两个实例各注册一个用户，增量还没有写入汇总表
+        register(instanceA);
+        register(instanceB);
+
+        instanceA.rebuild();
+        assertThat(monthlyUsers(instanceA)).isEqualTo(4);
+
+        instanceA.flush();
+        instanceB.flush();
+        assertThat(monthlyUsers(instanceA)).isEqualTo(4);
+        assertThat(monthlyUsers(instanceB)).isEqualTo(4);
+    }
+
+    @Test
+    void deltasRecordedAfterRebuildAreKept() {
+        instanceA.rebuild();
+        register(instanceA);
+        register(instanceB);
+
+        assertThat(monthlyUsers(instanceA)).isEqualTo(3);
+        instanceA.flush();
+        instanceB.flush();
+        assertThat(monthlyUsers(instanceA)).isEqualTo(4);
+    }
+
+    @Test
+    void rebuildKeepsOnlyTheCutoffRowBesidesMetrics() {
+        jdbcTemplate.update("INSERT INTO analytics_rollups (metric, bucket, item_count, amount) VALUES (?, ?, 99, 0)",
+                SalesAnalyticsService.MONTHLY_USERS, "2020-01");
+
+        instanceA.rebuild();
+        instanceA.rebuild();
+
+        assertThat(instanceA.rollups(SalesAnalyticsService.MONTHLY_USERS, null)).containsOnlyKeys("2026-01");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM analytics_rollups", Long.class)).isEqualTo(2L);
+    }
+
+    /**
+     * 没有事务时增量立即计入，相当于注册事务已经提交
+     */
+    private void register(SalesAnalyticsService instance) {
+        insertUser();
+        User user = new User();
+        user.setCreateTime(JANUARY);
+        instance.userRegistered(user);
+    }
+
+    private void insertUser() {
+        jdbcTemplate.update("INSERT INTO users (create_time) VALUES (?)", Timestamp.valueOf(JANUARY));
+    }
+
+    private long monthlyUsers(SalesAnalyticsService instance) {
+        return instance.rollups(SalesAnalyticsService.MONTHLY_USERS, null).get("2026-01").count();
+    }
+}
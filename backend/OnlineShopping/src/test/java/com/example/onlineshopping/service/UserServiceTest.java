@@ -0,0 +1,63 @@
+package com.example.onlineshopping.service;
+
+import com.example.onlineshopping.entity.User;
+import com.example.onlineshopping.repository.UserRepository;
+import com.example.onlineshopping.security.TokenVersionCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+
+    private static final String OLD_URL = "/uploads/blobs/aa/aa/" + "a".repeat(64) + ".jpg";
+    private static final String NEW_URL = "/uploads/blobs/bb/bb/" + "b".repeat(64) + ".jpg";
+
+    private UserRepository userRepository;
+    private BlobStore blobStore;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        blobStore = mock(BlobStore.class);
+        when(userRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        userService = new UserService(userRepository, mock(PasswordEncoder.class), mock(SalesAnalyticsService.class),
+                mock(TokenVersionCache.class), blobStore);
+    }
+
+    @Test
+    void updateAvatarAdjustsRefCounts() {
+        User user = new User();
+        user.setId(1L);
+        user.setAvatarUrl(OLD_URL);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        User saved = userService.updateAvatar(1L, NEW_URL);
+
+        assertThat(saved.getAvatarUrl()).isEqualTo(NEW_URL);
+        verify(blobStore).retain(NEW_URL);
+        verify(blobStore).release(OLD_URL);
+    }
+
+    @Test
+    void sameAvatarKeepsRefCounts() {
+        User user = new User();
+        user.setId(1L);
+        user.setAvatarUrl(OLD_URL);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        userService.updateAvatar(1L, OLD_URL);
+
+        verify(blobStore, never()).retain(any());
+        verify(blobStore, never()).release(any());
+    }
+}
@@ -50,10 +50,12 @@ CREATE TABLE IF NOT EXISTS categories (
 -- 4. 创建商品表
 CREATE TABLE IF NOT EXISTS products (
     id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '商品ID',
+    sku VARCHAR(64) COMMENT '商品编码（批量导入按它匹配已有商品）',
     name VARCHAR(255) NOT NULL COMMENT '商品名称',
     description TEXT COMMENT '商品描述',
     price DECIMAL(10,2) NOT NULL COMMENT '商品价格',
     stock INT DEFAULT 0 COMMENT '库存数量',
+    sales INT DEFAULT 0 COMMENT '销量',
     image_url VARCHAR(500) COMMENT '商品图片',
     category_id BIGINT COMMENT '分类ID',
     status BOOLEAN DEFAULT TRUE COMMENT '商品状态',
@@ -65,6 +67,11 @@ CREATE TABLE IF NOT EXISTS products (
     INDEX idx_status (status),
     INDEX idx_create_time (create_time),
     INDEX idx_stock (stock),
+    INDEX idx_products_status_price (status, price, id),
+    INDEX idx_products_status_sales (status, sales, id),
+    INDEX idx_products_status_create_time (status, create_time, id),
+    INDEX idx_products_sales (sales),
+    UNIQUE KEY uk_products_sku (sku),
     
     CONSTRAINT fk_product_category
         FOREIGN KEY (category_id)
@@ -155,6 +162,24 @@ CREATE TABLE IF NOT EXISTS order_items (
         ON UPDATE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='订单项表';
 
+-- 8. 订单/订单项ID序列表（Hibernate pooled 序列，每次分配50个ID，订单项可批量插入）
+-- 初始值预留一个分配步长，避免与已有的自增ID冲突；应用启动时也会检查并推进（OrderSequenceInitializer）
+CREATE TABLE IF NOT EXISTS orders_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO orders_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM orders WHERE NOT EXISTS (SELECT 1 FROM orders_seq);
+
+CREATE TABLE IF NOT EXISTS order_items_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO order_items_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM order_items WHERE NOT EXISTS (SELECT 1 FROM order_items_seq);
+
+-- 9. 统计汇总表（按指标和桶累计，由应用增量更新，为空时应用启动会从业务表重建）
+CREATE TABLE IF NOT EXISTS analytics_rollups (
+    metric VARCHAR(32) NOT NULL COMMENT '指标',
+    bucket VARCHAR(32) NOT NULL COMMENT '桶（日期、月份、状态、分类ID）',
+    item_count BIGINT NOT NULL DEFAULT 0 COMMENT '数量',
+    amount DECIMAL(19,2) NOT NULL DEFAULT 0 COMMENT '金额',
+    PRIMARY KEY (metric, bucket)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='统计汇总表';
 
 INSERT INTO users (username, password, email, role) VALUES 
 ('admin', '123456', 'admin@shop.com', 'ROLE_ADMIN'),
@@ -174,10 +199,10 @@ INSERT INTO products (name, description, price, stock, image_url, category_id) V
 ('沙发', '舒适布艺沙发', 2999.00, 20, '/images/sofa.jpg', 3),
 ('Java编程思想', '经典编程书籍', 89.00, 150, '/images/java-book.jpg', 4);
 
--- 9. 显示创建成功的表
+-- 10. 显示创建成功的表
 SHOW TABLES;
 
--- 10. 显示各表的数据统计
+-- 11. 显示各表的数据统计
 SELECT 
     'users' as table_name, 
     COUNT(*) as record_count 
@@ -193,7 +218,7 @@ SELECT
     COUNT(*) 
 FROM products;
 
--- 11. 验证数据完整性
+-- 12. 验证数据完整性
 SELECT 
     p.id, 
     p.name, 